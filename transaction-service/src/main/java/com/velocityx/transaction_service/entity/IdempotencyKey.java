@@ -5,15 +5,14 @@ import lombok.*;
 
 import java.time.Instant;
 
+// No unique key: a partitioned table (db/idempotency_keys_partitioning.sql) can only hold one that
+// includes expires_at, so IdempotencyServiceImpl dedupes on idempotency_key when it writes
 @Entity
 @Table(
     name = "idempotency_keys",
     indexes = {
         @Index(name = "idx_idempotency_key", columnList = "idempotency_key"),
         @Index(name = "idx_expires_at", columnList = "expires_at")
-    },
-    uniqueConstraints = {
-        @UniqueConstraint(name = "uk_idempotency_key", columnNames = "idempotency_key")
     }
 )
 @Getter
@@ -27,7 +26,7 @@ public class IdempotencyKey {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
     
-    @Column(name = "idempotency_key", nullable = false, unique = true, length = 255)
+    @Column(name = "idempotency_key", nullable = false, length = 255)
     private String idempotencyKey;
     
     @Column(name = "request_hash", nullable = false, length = 64)
@@ -15,6 +15,10 @@ public interface IdempotencyKeyRepository extends JpaRepository<IdempotencyKey,
     
     Optional<IdempotencyKey> findByIdempotencyKey(String idempotencyKey);
     
+    // Bounded on expires_at so a partitioned table only scans the days a live key can expire on
+    Optional<IdempotencyKey> findFirstByIdempotencyKeyAndExpiresAtBetweenOrderByExpiresAtDesc(
+            String idempotencyKey, Instant from, Instant to);
+    
     boolean existsByIdempotencyKey(String idempotencyKey);
     
     @Modifying
@@ -0,0 +1,128 @@
+package com.velocityx.transaction_service.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps idempotency_keys in daily range partitions on expires_at. Partitions are created ahead of
+ * the longest key TTL, and a day's partition is dropped once every key in it has expired, so
+ * expiry never leaves dead tuples behind for vacuum.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class IdempotencyPartitionManager {
+    
+    private static final String PARENT_TABLE = "idempotency_keys";
+    private static final String DEFAULT_PARTITION = PARENT_TABLE + "_default";
+    private static final Pattern DAILY_PARTITION = Pattern.compile("idempotency_keys_p(\\d{8})");
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.BASIC_ISO_DATE;
+    
+    private static final String SELECT_PARTITIONS =
+            "SELECT c.relname FROM pg_inherits i " +
+            "JOIN pg_class c ON c.oid = i.inhrelid JOIN pg_class p ON p.oid = i.inhparent " +
+            "WHERE p.relname = ? ORDER BY c.relname";
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    
+    @Value("${app.transaction.idempotency.partitioning.enabled:false}")
+    private boolean enabled;
+    
+    // Extra days created beyond the TTL, so a few missed runs never push keys into the default partition
+    @Value("${app.transaction.idempotency.partitioning.days-ahead:3}")
+    private int daysAhead;
+    
+    @Value("${app.transaction.idempotency.ttl-hours:24}")
+    private int ttlHours;
+    
+    private volatile boolean partitioned;
+    
+    @Scheduled(cron = "${app.transaction.idempotency.partitioning.cron:0 5 * * * *}", zone = "UTC")
+    public void maintainPartitions() {
+        if (!isPartitioned()) {
+            if (enabled) {
+                log.warn("app.transaction.idempotency.partitioning.enabled is set but {} is not partitioned; " +
+                        "run db/idempotency_keys_partitioning.sql first", PARENT_TABLE);
+            }
+            return;
+        }
+        
+        createUpcomingPartitions();
+        dropExpiredPartitions();
+    }
+    
+    public boolean isPartitioned() {
+        if (!enabled) {
+            return false;
+        }
+        if (!partitioned) {
+            Boolean exists = jdbcTemplate.queryForObject(
+                    "SELECT EXISTS (SELECT 1 FROM pg_partitioned_table pt JOIN pg_class c ON c.oid = pt.partrelid " +
+                    "WHERE c.relname = ?)", Boolean.class, PARENT_TABLE);
+            partitioned = Boolean.TRUE.equals(exists);
+        }
+        return partitioned;
+    }
+    
+    // Only rows that fell outside every daily partition need a row-level delete
+    public int deleteExpiredFromDefaultPartition(Instant now) {
+        return jdbcTemplate.update("DELETE FROM " + DEFAULT_PARTITION + " WHERE expires_at < ?", Timestamp.from(now));
+    }
+    
+    private void createUpcomingPartitions() {
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        int days = (ttlHours + 23) / 24 + daysAhead;
+        for (int i = 0; i <= days; i++) {
+            LocalDate day = today.plusDays(i);
+            jdbcTemplate.execute(String.format(
+                    "CREATE TABLE IF NOT EXISTS %s PARTITION OF %s FOR VALUES FROM ('%s') TO ('%s')",
+                    partitionName(day), PARENT_TABLE, dayStart(day), dayStart(day.plusDays(1))));
+        }
+    }
+    
+    // A partition holds keys expiring during its day, so it is droppable once that day has ended
+    private void dropExpiredPartitions() {
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        List<String> partitions = jdbcTemplate.queryForList(SELECT_PARTITIONS, String.class, PARENT_TABLE);
+        
+        for (String partition : partitions) {
+            Matcher matcher = DAILY_PARTITION.matcher(partition);
+            if (!matcher.matches() || !LocalDate.parse(matcher.group(1), PARTITION_SUFFIX).isBefore(today)) {
+                continue;
+            }
+            try {
+                transactionTemplate.execute(status -> {
+                    jdbcTemplate.execute("ALTER TABLE " + PARENT_TABLE + " DETACH PARTITION " + partition);
+                    jdbcTemplate.execute("DROP TABLE " + partition);
+                    return null;
+                });
+                log.info("Dropped expired idempotency key partition {}", partition);
+            } catch (Exception e) {
+                log.error("Failed to drop idempotency key partition {}", partition, e);
+            }
+        }
+    }
+    
+    private String partitionName(LocalDate day) {
+        return PARENT_TABLE + "_p" + day.format(PARTITION_SUFFIX);
+    }
+    
+    private String dayStart(LocalDate day) {
+        return day.atStartOfDay().atOffset(ZoneOffset.UTC).toString();
+    }
+}
@@ -2,59 +2,332 @@ package com.velocityx.transaction_service.service;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.velocityx.transaction_service.dto.response.TransactionResponse;
 import com.velocityx.transaction_service.entity.IdempotencyKey;
+import com.velocityx.transaction_service.exception.DuplicateTransactionException;
 import com.velocityx.transaction_service.repository.IdempotencyKeyRepository;
 import io.micrometer.core.instrument.Counter;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.HexFormat;
-import java.util.Optional;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Responses are looked up in a local Caffeine cache, then in the idempotencyKeys Redis cache, then
+ * in Postgres, which still has entries Redis evicted or lost. A miss reserves the key in Redis
+ * (SET NX) until the caller's transaction scope completes, so a concurrent duplicate waits for the
+ * first response instead of racing it; callers check before opening their transaction, so the wait
+ * holds no connection. Responses are published to both caches after commit and written to the
+ * idempotency_keys table in batches, each in its own transaction. The partitioned table cannot
+ * hold a unique key on idempotency_key alone, so a batch takes a transaction-scoped advisory lock
+ * per key and skips keys that already have a live row; the unique idempotency key on transactions
+ * still rejects a duplicate whose entry was lost before that write.
+ */
 @Service
 @Transactional
 @RequiredArgsConstructor
 @Slf4j
 public class IdempotencyServiceImpl implements IdempotencyService {
     
+    private static final String IN_FLIGHT_PREFIX = "idempotency:inflight:";
+    
+    // Only the holder's token may release, so a reservation that outlived its TTL is not dropped
+    // on behalf of the request that took it over
+    private static final DefaultRedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) end return 0",
+            Long.class);
+    
+    // Two-int form, with a namespace of its own (ASCII "IDEM") so the key hashes do not collide
+    // with other pg_advisory users; sorted so two flushers take overlapping keys in the same order
+    private static final String LOCK_KEYS =
+            "SELECT pg_advisory_xact_lock(1229210957, hashtext(k)) " +
+            "FROM (SELECT DISTINCT unnest(?) AS k ORDER BY k) keys";
+    
+    private static final String INSERT_KEY =
+            "INSERT INTO idempotency_keys (idempotency_key, request_hash, response_body, http_status, created_at, expires_at) " +
+            "SELECT ?, ?, ?, ?, ?::timestamptz, ?::timestamptz " +
+            "WHERE NOT EXISTS (SELECT 1 FROM idempotency_keys WHERE idempotency_key = ? AND expires_at > ?::timestamptz)";
+    
     private final IdempotencyKeyRepository idempotencyKeyRepository;
     private final ObjectMapper objectMapper;
     private final Counter idempotencyHitCounter;
+    private final CacheManager cacheManager;
+    private final StringRedisTemplate redisTemplate;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final IdempotencyPartitionManager partitionManager;
     
     @Value("${app.transaction.idempotency.ttl-hours:24}")
     private int ttlHours;
     
+    @Value("${app.transaction.idempotency.local-max-size:100000}")
+    private long localMaxSize;
+    
+    @Value("${app.transaction.idempotency.local-ttl-minutes:10}")
+    private long localTtlMinutes;
+    
+    @Value("${app.transaction.idempotency.in-flight-ttl-ms:30000}")
+    private long inFlightTtlMs;
+    
+    @Value("${app.transaction.idempotency.in-flight-wait-ms:5000}")
+    private long inFlightWaitMs;
+    
+    @Value("${app.transaction.idempotency.write-batch-size:500}")
+    private int writeBatchSize;
+    
+    @Value("${app.transaction.idempotency.max-pending-writes:100000}")
+    private int maxPendingWrites;
+    
+    private Cache<String, CachedResponse> localCache;
+    private org.springframework.cache.Cache remoteCache;
+    private BlockingQueue<CachedResponse> pendingWrites;
+    
+    @PostConstruct
+    public void init() {
+        localCache = Caffeine.newBuilder()
+                .maximumSize(localMaxSize)
+                .expireAfterWrite(Duration.ofMinutes(localTtlMinutes))
+                .build();
+        remoteCache = cacheManager.getCache("idempotencyKeys");
+        pendingWrites = new LinkedBlockingQueue<>(maxPendingWrites);
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        flushPendingWrites();
+    }
+    
+    // Joins the caller's transaction scope, which the reservation is released with
     @Override
-    @Transactional(readOnly = true)
+    @Transactional(propagation = Propagation.SUPPORTS)
     public <T> TransactionResponse getCachedResponse(String idempotencyKey, T request) {
         log.debug("Checking idempotency key: {}", idempotencyKey);
         
-        Optional<IdempotencyKey> cached = idempotencyKeyRepository.findByIdempotencyKey(idempotencyKey);
+        CachedResponse cached = lookup(idempotencyKey, true);
+        if (cached == null && !reserve(idempotencyKey)) {
+            cached = awaitInFlight(idempotencyKey);
+        }
+        return cached == null ? null : toResponse(idempotencyKey, cached, request);
+    }
+    
+    @Override
+    public <T> void cacheResponse(String idempotencyKey, T request, TransactionResponse response) {
+        log.debug("Caching response for idempotency key: {}", idempotencyKey);
         
-        if (cached.isEmpty()) {
-            return null;
+        try {
+            CachedResponse cached = new CachedResponse(idempotencyKey, hashRequest(request),
+                    objectMapper.writeValueAsString(response),
+                    Instant.now().plus(ttlHours, ChronoUnit.HOURS).toEpochMilli());
+            
+            // Published only once the transaction that produced the response has committed
+            if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        publish(cached);
+                    }
+                });
+            } else {
+                publish(cached);
+            }
+        } catch (JsonProcessingException e) {
+            log.error("Failed to serialize response for caching", e);
         }
+    }
+    
+    @Scheduled(fixedDelayString = "${app.transaction.idempotency.flush-interval-ms:200}")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void flushPendingWrites() {
+        while (!pendingWrites.isEmpty()) {
+            List<CachedResponse> batch = new ArrayList<>(writeBatchSize);
+            CachedResponse next;
+            while (batch.size() < writeBatchSize && (next = pendingWrites.poll()) != null) {
+                batch.add(next);
+            }
+            
+            try {
+                Timestamp now = Timestamp.from(Instant.now());
+                Object[] keys = batch.stream().map(CachedResponse::idempotencyKey).toArray();
+                transactionTemplate.executeWithoutResult(status -> {
+                    jdbcTemplate.query(LOCK_KEYS,
+                            ps -> ps.setArray(1, ps.getConnection().createArrayOf("text", keys)), rs -> { });
+                    jdbcTemplate.batchUpdate(INSERT_KEY, batch, batch.size(), (ps, cached) -> {
+                        ps.setString(1, cached.idempotencyKey());
+                        ps.setString(2, cached.requestHash());
+                        ps.setString(3, cached.responseBody());
+                        ps.setInt(4, 200);
+                        ps.setTimestamp(5, now);
+                        ps.setTimestamp(6, new Timestamp(cached.expiresAtMillis()));
+                        ps.setString(7, cached.idempotencyKey());
+                        ps.setTimestamp(8, now);
+                    });
+                });
+            } catch (Exception e) {
+                // Entries stay served from the caches; the batch is retried on the next run unless
+                // the queue has filled up meanwhile
+                log.error("Failed to write {} idempotency keys", batch.size(), e);
+                long dropped = batch.stream().filter(cached -> !pendingWrites.offer(cached)).count();
+                if (dropped > 0) {
+                    log.warn("Dropped {} idempotency key writes, {} are already pending", dropped, maxPendingWrites);
+                }
+                return;
+            }
+        }
+    }
+    
+    @Override
+    @Scheduled(cron = "0 0 * * * *") // Every hour
+    public void cleanupExpiredKeys() {
+        log.info("Starting cleanup of expired idempotency keys");
         
-        IdempotencyKey key = cached.get();
+        // Once partitioned, expired days are dropped whole by the partition manager
+        Instant now = Instant.now();
+        int deleted = partitionManager.isPartitioned()
+                ? partitionManager.deleteExpiredFromDefaultPartition(now)
+                : idempotencyKeyRepository.deleteExpiredKeys(now);
         
-        if (key.isExpired()) {
+        log.info("Cleaned up {} expired idempotency keys", deleted);
+    }
+    
+    // The database also covers entries Redis has evicted; a waiter polling for an in-flight response
+    // skips it, since that response reaches Redis first
+    private CachedResponse lookup(String idempotencyKey, boolean readDatabase) {
+        CachedResponse cached = localCache.getIfPresent(idempotencyKey);
+        if (cached != null) {
+            return cached;
+        }
+        
+        try {
+            cached = remoteCache.get(idempotencyKey, CachedResponse.class);
+        } catch (Exception e) {
+            log.warn("Idempotency cache unavailable, reading the database: {}", e.getMessage());
+        }
+        if (cached == null && readDatabase) {
+            Instant now = Instant.now();
+            try {
+                cached = idempotencyKeyRepository.findFirstByIdempotencyKeyAndExpiresAtBetweenOrderByExpiresAtDesc(
+                        idempotencyKey, now, now.plus(ttlHours, ChronoUnit.HOURS))
+                        .map(this::fromEntity)
+                        .orElse(null);
+            } catch (Exception e) {
+                // The unique idempotency key on transactions still rejects a repeat
+                log.warn("Idempotency table unavailable, treating the key as new: {}", e.getMessage());
+            }
+        }
+        if (cached != null) {
+            localCache.put(idempotencyKey, cached);
+        }
+        return cached;
+    }
+    
+    // Released when the caller's transaction completes; after a commit the response is already cached
+    private boolean reserve(String idempotencyKey) {
+        String token = UUID.randomUUID().toString();
+        Boolean reserved;
+        try {
+            reserved = redisTemplate.opsForValue()
+                    .setIfAbsent(IN_FLIGHT_PREFIX + idempotencyKey, token, Duration.ofMillis(inFlightTtlMs));
+        } catch (Exception e) {
+            log.warn("Idempotency reservation unavailable, proceeding without it: {}", e.getMessage());
+            return true;
+        }
+        if (!Boolean.TRUE.equals(reserved)) {
+            return false;
+        }
+        
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    release(idempotencyKey, token);
+                }
+            });
+        }
+        return true;
+    }
+    
+    private void release(String idempotencyKey, String token) {
+        try {
+            redisTemplate.execute(RELEASE_SCRIPT, List.of(IN_FLIGHT_PREFIX + idempotencyKey), token);
+        } catch (Exception e) {
+            log.warn("Failed to release idempotency reservation {}, it expires on its own", idempotencyKey, e);
+        }
+    }
+    
+    // Waits for the request holding the reservation; if it fails, the next waiter takes over
+    private CachedResponse awaitInFlight(String idempotencyKey) {
+        long deadline = System.currentTimeMillis() + inFlightWaitMs;
+        while (System.currentTimeMillis() < deadline) {
+            try {
+                TimeUnit.MILLISECONDS.sleep(25);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            
+            CachedResponse cached = lookup(idempotencyKey, false);
+            if (cached != null) {
+                return cached;
+            }
+            if (reserve(idempotencyKey)) {
+                return null;
+            }
+        }
+        throw new DuplicateTransactionException(
+                "Request with idempotency key " + idempotencyKey + " is still being processed");
+    }
+    
+    private void publish(CachedResponse cached) {
+        localCache.put(cached.idempotencyKey(), cached);
+        try {
+            remoteCache.put(cached.idempotencyKey(), cached);
+        } catch (Exception e) {
+            log.warn("Failed to cache idempotency key {} in Redis", cached.idempotencyKey(), e);
+        }
+        if (!pendingWrites.offer(cached)) {
+            log.warn("Idempotency write queue full, key {} is only cached", cached.idempotencyKey());
+        }
+        log.info("Cached response for idempotency key: {}", cached.idempotencyKey());
+    }
+    
+    private <T> TransactionResponse toResponse(String idempotencyKey, CachedResponse cached, T request) {
+        if (Instant.now().toEpochMilli() > cached.expiresAtMillis()) {
             log.debug("Idempotency key expired: {}", idempotencyKey);
-            idempotencyKeyRepository.delete(key);
+            localCache.invalidate(idempotencyKey);
             return null;
         }
         
         String requestHash = hashRequest(request);
-        if (!requestHash.equals(key.getRequestHash())) {
+        if (!requestHash.equals(cached.requestHash())) {
             log.warn("Idempotency key conflict: same key, different request");
             return null;
         }
@@ -62,45 +335,16 @@ public class IdempotencyServiceImpl implements IdempotencyService {
         try {
             idempotencyHitCounter.increment();
             log.info("Idempotency key hit: {}", idempotencyKey);
-            return objectMapper.readValue(key.getResponseBody(), TransactionResponse.class);
+            return objectMapper.readValue(cached.responseBody(), TransactionResponse.class);
         } catch (JsonProcessingException e) {
             log.error("Failed to deserialize cached response", e);
             return null;
         }
     }
     
-    @Override
-    public <T> void cacheResponse(String idempotencyKey, T request, TransactionResponse response) {
-        log.debug("Caching response for idempotency key: {}", idempotencyKey);
-        
-        try {
-            String requestHash = hashRequest(request);
-            String responseBody = objectMapper.writeValueAsString(response);
-            
-            IdempotencyKey key = IdempotencyKey.builder()
-                    .idempotencyKey(idempotencyKey)
-                    .requestHash(requestHash)
-                    .responseBody(responseBody)
-                    .httpStatus(200)
-                    .expiresAt(Instant.now().plus(ttlHours, ChronoUnit.HOURS))
-                    .build();
-            
-            idempotencyKeyRepository.save(key);
-            
-            log.info("Cached response for idempotency key: {}", idempotencyKey);
-        } catch (JsonProcessingException e) {
-            log.error("Failed to serialize response for caching", e);
-        }
-    }
-    
-    @Override
-    @Scheduled(cron = "0 0 * * * *") // Every hour
-    public void cleanupExpiredKeys() {
-        log.info("Starting cleanup of expired idempotency keys");
-        
-        int deleted = idempotencyKeyRepository.deleteExpiredKeys(Instant.now());
-        
-        log.info("Cleaned up {} expired idempotency keys", deleted);
+    private CachedResponse fromEntity(IdempotencyKey key) {
+        return new CachedResponse(key.getIdempotencyKey(), key.getRequestHash(), key.getResponseBody(),
+                key.getExpiresAt().toEpochMilli());
     }
     
     private <T> String hashRequest(T request) {
@@ -114,4 +358,9 @@ public class IdempotencyServiceImpl implements IdempotencyService {
             return "";
         }
     }
+    
+    // Epoch millis rather than an Instant so the Redis serializer needs no time module
+    public record CachedResponse(String idempotencyKey, String requestHash, String responseBody,
+                                 long expiresAtMillis) {
+    }
 }
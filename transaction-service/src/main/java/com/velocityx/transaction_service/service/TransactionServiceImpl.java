@@ -23,7 +23,9 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
 import java.time.Instant;
@@ -44,13 +46,17 @@ public class TransactionServiceImpl implements TransactionService {
     private final TransactionMapper transactionMapper;
     private final IdempotencyService idempotencyService;
     private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final TransactionTemplate transactionTemplate;
     
     private final Counter transactionCreatedCounter;
     private final Counter transactionSuccessCounter;
     private final Counter transactionFailedCounter;
     private final Timer transactionProcessingTimer;
     
+    // The idempotency check may wait on a concurrent duplicate, so it runs before the transaction
+    // opens and holds no connection while it waits
     @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     @CacheEvict(value = "transactionsByUser", key = "#request.userId")
     public TransactionResponse createTransaction(CreateTransactionRequest request) {
         log.info("Creating transaction: type={}, amount={}, userId={}", 
@@ -67,31 +73,34 @@ public class TransactionServiceImpl implements TransactionService {
                 }
             }
             
-            Transaction transaction = transactionMapper.toEntity(request);
-            transaction.setTransactionId(generateTransactionId());
-            transaction.setStatus(TransactionStatus.PENDING);
-            transaction = transactionRepository.save(transaction);
-            
-            addEvent(transaction, EventType.TRANSACTION_CREATED, 
-                    Map.of("status", "PENDING", "amount", request.getAmount()));
-            
-            transactionCreatedCounter.increment();
-            kafkaTemplate.send("transaction-events", buildEventPayload(transaction, EventType.TRANSACTION_CREATED));
-            
-            TransactionResponse response = transactionMapper.toDto(transaction);
-            
-            if (request.getIdempotencyKey() != null) {
-                idempotencyService.cacheResponse(request.getIdempotencyKey(), request, response);
-            }
-            
-            log.info("Transaction created: id={}, transactionId={}", 
-                    transaction.getId(), transaction.getTransactionId());
-            
-            return response;
+            return transactionTemplate.execute(status -> {
+                Transaction transaction = transactionMapper.toEntity(request);
+                transaction.setTransactionId(generateTransactionId());
+                transaction.setStatus(TransactionStatus.PENDING);
+                transaction = transactionRepository.save(transaction);
+                
+                addEvent(transaction, EventType.TRANSACTION_CREATED, 
+                        Map.of("status", "PENDING", "amount", request.getAmount()));
+                
+                transactionCreatedCounter.increment();
+                kafkaTemplate.send("transaction-events", buildEventPayload(transaction, EventType.TRANSACTION_CREATED));
+                
+                TransactionResponse response = transactionMapper.toDto(transaction);
+                
+                if (request.getIdempotencyKey() != null) {
+                    idempotencyService.cacheResponse(request.getIdempotencyKey(), request, response);
+                }
+                
+                log.info("Transaction created: id={}, transactionId={}", 
+                        transaction.getId(), transaction.getTransactionId());
+                
+                return response;
+            });
         });
     }
     
     @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     @CacheEvict(value = "transactionsByUser", key = "#request.userId")
     public TransactionResponse holdFunds(HoldFundsRequest request) {
         log.info("Holding funds: amount={}, walletId={}, userId={}", 
@@ -106,41 +115,43 @@ public class TransactionServiceImpl implements TransactionService {
                 }
             }
             
-            Transaction transaction = Transaction.builder()
-                    .transactionId(generateTransactionId())
-                    .idempotencyKey(request.getIdempotencyKey())
-                    .type(TransactionType.HOLD)
-                    .status(TransactionStatus.PENDING)
-                    .amount(request.getAmount())
-                    .currency(request.getCurrency())
-                    .userId(request.getUserId())
-                    .fromWalletId(request.getWalletId())
-                    .description(request.getDescription())
-                    .metadata(request.getMetadata())
-                    .holdExpiresAt(Instant.now().plus(request.getHoldDurationDays(), ChronoUnit.DAYS))
-                    .build();
-            
-            transaction = transactionRepository.save(transaction);
-            
-            transaction.setStatus(TransactionStatus.HELD);
-            transaction = transactionRepository.save(transaction);
-            
-            addEvent(transaction, EventType.TRANSACTION_HELD, 
-                    Map.of("amount", request.getAmount(), "expiresAt", transaction.getHoldExpiresAt()));
-            
-            transactionCreatedCounter.increment();
-            kafkaTemplate.send("transaction-events", buildEventPayload(transaction, EventType.TRANSACTION_HELD));
-            
-            TransactionResponse response = transactionMapper.toDto(transaction);
-            
-            if (request.getIdempotencyKey() != null) {
-                idempotencyService.cacheResponse(request.getIdempotencyKey(), request, response);
-            }
-            
-            log.info("Funds held: transactionId={}, expiresAt={}", 
-                    transaction.getTransactionId(), transaction.getHoldExpiresAt());
-            
-            return response;
+            return transactionTemplate.execute(status -> {
+                Transaction transaction = Transaction.builder()
+                        .transactionId(generateTransactionId())
+                        .idempotencyKey(request.getIdempotencyKey())
+                        .type(TransactionType.HOLD)
+                        .status(TransactionStatus.PENDING)
+                        .amount(request.getAmount())
+                        .currency(request.getCurrency())
+                        .userId(request.getUserId())
+                        .fromWalletId(request.getWalletId())
+                        .description(request.getDescription())
+                        .metadata(request.getMetadata())
+                        .holdExpiresAt(Instant.now().plus(request.getHoldDurationDays(), ChronoUnit.DAYS))
+                        .build();
+                
+                transaction = transactionRepository.save(transaction);
+                
+                transaction.setStatus(TransactionStatus.HELD);
+                transaction = transactionRepository.save(transaction);
+                
+                addEvent(transaction, EventType.TRANSACTION_HELD, 
+                        Map.of("amount", request.getAmount(), "expiresAt", transaction.getHoldExpiresAt()));
+                
+                transactionCreatedCounter.increment();
+                kafkaTemplate.send("transaction-events", buildEventPayload(transaction, EventType.TRANSACTION_HELD));
+                
+                TransactionResponse response = transactionMapper.toDto(transaction);
+                
+                if (request.getIdempotencyKey() != null) {
+                    idempotencyService.cacheResponse(request.getIdempotencyKey(), request, response);
+                }
+                
+                log.info("Funds held: transactionId={}, expiresAt={}", 
+                        transaction.getTransactionId(), transaction.getHoldExpiresAt());
+                
+                return response;
+            });
         });
     }
     
@@ -269,6 +280,7 @@ public class TransactionServiceImpl implements TransactionService {
     }
     
     @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     @CacheEvict(value = "transactionsByUser", allEntries = true)
     public TransactionResponse transferFunds(TransferRequest request) {
         log.info("Transferring funds: from={}, to={}, amount={}", 
@@ -283,43 +295,45 @@ public class TransactionServiceImpl implements TransactionService {
                 }
             }
             
-            Transaction transaction = Transaction.builder()
-                    .transactionId(generateTransactionId())
-                    .idempotencyKey(request.getIdempotencyKey())
-                    .type(TransactionType.TRANSFER)
-                    .status(TransactionStatus.PENDING)
-                    .amount(request.getAmount())
-                    .currency(request.getCurrency())
-                    .userId(request.getUserId())
-                    .fromWalletId(request.getFromWalletId())
-                    .toWalletId(request.getToWalletId())
-                    .description(request.getDescription())
-                    .metadata(request.getMetadata())
-                    .build();
-            
-            transaction = transactionRepository.save(transaction);
-            
-            transaction.setStatus(TransactionStatus.SUCCESS);
-            transaction.setCompletedAt(Instant.now());
-            transaction = transactionRepository.save(transaction);
-            
-            addEvent(transaction, EventType.TRANSACTION_SUCCESS, 
-                    Map.of("from", request.getFromWalletId(), 
-                           "to", request.getToWalletId(), 
-                           "amount", request.getAmount()));
-            
-            transactionSuccessCounter.increment();
-            kafkaTemplate.send("transaction-events", buildEventPayload(transaction, EventType.TRANSACTION_SUCCESS));
-            
-            TransactionResponse response = transactionMapper.toDto(transaction);
-            
-            if (request.getIdempotencyKey() != null) {
-                idempotencyService.cacheResponse(request.getIdempotencyKey(), request, response);
-            }
-            
-            log.info("Funds transferred: transactionId={}", transaction.getTransactionId());
-            
-            return response;
+            return transactionTemplate.execute(status -> {
+                Transaction transaction = Transaction.builder()
+                        .transactionId(generateTransactionId())
+                        .idempotencyKey(request.getIdempotencyKey())
+                        .type(TransactionType.TRANSFER)
+                        .status(TransactionStatus.PENDING)
+                        .amount(request.getAmount())
+                        .currency(request.getCurrency())
+                        .userId(request.getUserId())
+                        .fromWalletId(request.getFromWalletId())
+                        .toWalletId(request.getToWalletId())
+                        .description(request.getDescription())
+                        .metadata(request.getMetadata())
+                        .build();
+                
+                transaction = transactionRepository.save(transaction);
+                
+                transaction.setStatus(TransactionStatus.SUCCESS);
+                transaction.setCompletedAt(Instant.now());
+                transaction = transactionRepository.save(transaction);
+                
+                addEvent(transaction, EventType.TRANSACTION_SUCCESS, 
+                        Map.of("from", request.getFromWalletId(), 
+                               "to", request.getToWalletId(), 
+                               "amount", request.getAmount()));
+                
+                transactionSuccessCounter.increment();
+                kafkaTemplate.send("transaction-events", buildEventPayload(transaction, EventType.TRANSACTION_SUCCESS));
+                
+                TransactionResponse response = transactionMapper.toDto(transaction);
+                
+                if (request.getIdempotencyKey() != null) {
+                    idempotencyService.cacheResponse(request.getIdempotencyKey(), request, response);
+                }
+                
+                log.info("Funds transferred: transactionId={}", transaction.getTransactionId());
+                
+                return response;
+            });
         });
     }
     
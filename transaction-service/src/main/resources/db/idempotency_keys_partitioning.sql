@@ -0,0 +1,95 @@
+-- One-off migration: turn the idempotency_keys table that ddl-auto creates into one range-partitioned
+-- by day on expires_at (on an empty database it creates the partitioned table directly). Nothing
+-- runs it automatically; run it by hand, then restart with the flag below.
+--
+-- Afterwards set app.transaction.idempotency.partitioning.enabled=true; IdempotencyPartitionManager
+-- then creates the upcoming daily partitions and drops each one once all of its keys have
+-- expired, replacing the hourly bulk DELETE. Only keys that have not expired yet are carried
+-- over, one row per key.
+--
+-- A unique constraint on a partitioned table must include expires_at, which would not stop the
+-- same key landing twice, so there is none; IdempotencyServiceImpl writes a key only while holding
+-- its advisory lock and when no live row for it exists. The unique idempotency_key on transactions
+-- still rejects a repeated request.
+
+BEGIN;
+
+-- Partition bounds are whole UTC days
+SET LOCAL TimeZone = 'UTC';
+
+-- Moves an existing table, and the names its indexes and constraint use, out of the way
+ALTER TABLE IF EXISTS idempotency_keys RENAME TO idempotency_keys_legacy;
+ALTER INDEX IF EXISTS idx_idempotency_key RENAME TO idx_idempotency_legacy_key;
+ALTER INDEX IF EXISTS idx_expires_at RENAME TO idx_idempotency_legacy_expires_at;
+ALTER TABLE IF EXISTS idempotency_keys_legacy DROP CONSTRAINT IF EXISTS uk_idempotency_key;
+ALTER SEQUENCE IF EXISTS idempotency_keys_id_seq RENAME TO idempotency_keys_legacy_id_seq;
+
+-- Identity columns are not supported on partitioned tables before Postgres 17, so ids come from
+-- a plain sequence continuing after the legacy ids.
+CREATE SEQUENCE idempotency_keys_id_seq;
+DO $$
+BEGIN
+    IF to_regclass('idempotency_keys_legacy') IS NOT NULL THEN
+        PERFORM setval('idempotency_keys_id_seq',
+                COALESCE((SELECT MAX(id) FROM idempotency_keys_legacy), 0) + 1, false);
+    END IF;
+END $$;
+
+CREATE TABLE idempotency_keys (
+    id               BIGINT                      NOT NULL DEFAULT nextval('idempotency_keys_id_seq'),
+    idempotency_key  VARCHAR(255)                NOT NULL,
+    request_hash     VARCHAR(64)                 NOT NULL,
+    response_body    TEXT,
+    http_status      INTEGER,
+    created_at       TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    expires_at       TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    PRIMARY KEY (id, expires_at)
+) PARTITION BY RANGE (expires_at);
+
+ALTER SEQUENCE idempotency_keys_id_seq OWNED BY idempotency_keys.id;
+
+CREATE INDEX idx_idempotency_key ON idempotency_keys (idempotency_key);
+CREATE INDEX idx_expires_at ON idempotency_keys (expires_at);
+
+-- Catches keys outside every daily partition; the partition manager keeps it empty by creating
+-- partitions ahead of the key TTL, and the hourly cleanup deletes whatever expires in it.
+CREATE TABLE idempotency_keys_default PARTITION OF idempotency_keys DEFAULT;
+
+-- Daily partitions from today to a week out, which covers the default 24h TTL
+DO $$
+DECLARE
+    day_start   TIMESTAMPTZ := date_trunc('day', now());
+    last_expiry TIMESTAMPTZ := now();
+    last_day    TIMESTAMPTZ;
+BEGIN
+    IF to_regclass('idempotency_keys_legacy') IS NOT NULL THEN
+        SELECT GREATEST(now(), COALESCE(MAX(expires_at), now())) INTO last_expiry FROM idempotency_keys_legacy;
+    END IF;
+    last_day := date_trunc('day', last_expiry) + INTERVAL '7 days';
+
+    WHILE day_start <= last_day LOOP
+        EXECUTE format('CREATE TABLE idempotency_keys_p%s PARTITION OF idempotency_keys FOR VALUES FROM (%L) TO (%L)',
+                to_char(day_start, 'YYYYMMDD'), day_start, day_start + INTERVAL '1 day');
+        day_start := day_start + INTERVAL '1 day';
+    END LOOP;
+END $$;
+
+-- The legacy table may hold a key more than once if it was only unique together with expires_at;
+-- the copy keeps the row that expires last
+DO $$
+BEGIN
+    IF to_regclass('idempotency_keys_legacy') IS NOT NULL THEN
+        INSERT INTO idempotency_keys (id, idempotency_key, request_hash, response_body, http_status, created_at, expires_at)
+        SELECT DISTINCT ON (idempotency_key)
+               id, idempotency_key, request_hash, response_body, http_status, created_at, expires_at
+        FROM idempotency_keys_legacy
+        WHERE expires_at > now()
+        ORDER BY idempotency_key, expires_at DESC;
+
+        DROP TABLE idempotency_keys_legacy;
+    END IF;
+END $$;
+
+DROP SEQUENCE IF EXISTS idempotency_keys_legacy_id_seq;
+
+COMMIT;
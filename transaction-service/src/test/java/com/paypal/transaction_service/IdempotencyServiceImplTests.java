@@ -0,0 +1,210 @@
+package com.paypal.transaction_service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.velocityx.transaction_service.dto.response.TransactionResponse;
+import com.velocityx.transaction_service.entity.IdempotencyKey;
+import com.velocityx.transaction_service.repository.IdempotencyKeyRepository;
+import com.velocityx.transaction_service.service.IdempotencyPartitionManager;
+import com.velocityx.transaction_service.service.IdempotencyServiceImpl;
+import com.velocityx.transaction_service.service.IdempotencyServiceImpl.CachedResponse;
+import io.micrometer.core.instrument.Counter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.dao.InvalidDataAccessResourceUsageException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class IdempotencyServiceImplTests {
+
+    private static final String KEY = "order-42";
+    private static final Map<String, Object> REQUEST = Map.of("userId", 7, "amount", "10.00");
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    @Mock
+    private IdempotencyKeyRepository repository;
+
+    @Mock
+    private Counter hitCounter;
+
+    @Mock
+    private CacheManager cacheManager;
+
+    @Mock
+    private Cache remoteCache;
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private IdempotencyPartitionManager partitionManager;
+
+    @BeforeEach
+    void setUp() {
+        when(cacheManager.getCache("idempotencyKeys")).thenReturn(remoteCache);
+    }
+
+    @Test
+    void redisMissFallsBackToTheDatabase() {
+        CachedResponse stored = published();
+        IdempotencyServiceImpl service = newService();
+        when(repository.findFirstByIdempotencyKeyAndExpiresAtBetweenOrderByExpiresAtDesc(eq(KEY), any(), any()))
+                .thenReturn(Optional.of(entity(stored)));
+
+        TransactionResponse response = service.getCachedResponse(KEY, REQUEST);
+
+        assertNotNull(response);
+        assertEquals("TXN-42", response.getTransactionId());
+        verify(redisTemplate, never()).opsForValue();
+    }
+
+    @Test
+    void waiterPollsTheCachesWithoutReadingTheDatabaseAgain() {
+        CachedResponse inFlight = published();
+        IdempotencyServiceImpl service = newService();
+        when(repository.findFirstByIdempotencyKeyAndExpiresAtBetweenOrderByExpiresAtDesc(eq(KEY), any(), any()))
+                .thenReturn(Optional.empty());
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.setIfAbsent(anyString(), anyString(), any(Duration.class))).thenReturn(false);
+        when(remoteCache.get(KEY, CachedResponse.class)).thenReturn(null, null, inFlight);
+
+        TransactionResponse response = service.getCachedResponse(KEY, REQUEST);
+
+        assertEquals("TXN-42", response.getTransactionId());
+        verify(repository, times(1)).findFirstByIdempotencyKeyAndExpiresAtBetweenOrderByExpiresAtDesc(
+                eq(KEY), any(), any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void failedBatchIsRequeuedAndWrittenOnTheNextFlush() {
+        IdempotencyServiceImpl service = newService();
+        service.cacheResponse(KEY, REQUEST, response());
+        doThrow(new CannotCreateTransactionException("connection refused")).doAnswer(invocation -> {
+            invocation.<Consumer<TransactionStatus>>getArgument(0).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+
+        service.flushPendingWrites();
+        service.flushPendingWrites();
+        service.flushPendingWrites();
+
+        ArgumentCaptor<Collection<CachedResponse>> batch = ArgumentCaptor.forClass(Collection.class);
+        verify(transactionTemplate, times(2)).executeWithoutResult(any());
+        verify(jdbcTemplate).batchUpdate(anyString(), batch.capture(), eq(1),
+                any(ParameterizedPreparedStatementSetter.class));
+        assertEquals(KEY, batch.getValue().iterator().next().idempotencyKey());
+    }
+
+    @Test
+    void unreadableTableTreatsTheKeyAsNew() {
+        IdempotencyServiceImpl service = newService();
+        when(repository.findFirstByIdempotencyKeyAndExpiresAtBetweenOrderByExpiresAtDesc(eq(KEY), any(), any()))
+                .thenThrow(new InvalidDataAccessResourceUsageException("relation \"idempotency_keys\" does not exist"));
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.setIfAbsent(anyString(), anyString(), any(Duration.class))).thenReturn(true);
+
+        assertNull(service.getCachedResponse(KEY, REQUEST));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void pendingWritesStopAtTheCapWhileTheTableIsDown() {
+        IdempotencyServiceImpl service = newService();
+        doThrow(new CannotCreateTransactionException("connection refused")).when(transactionTemplate)
+                .executeWithoutResult(any());
+        for (int i = 0; i < 5; i++) {
+            service.cacheResponse(KEY + "-" + i, REQUEST, response());
+            service.flushPendingWrites();
+        }
+
+        doAnswer(invocation -> {
+            invocation.<Consumer<TransactionStatus>>getArgument(0).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+        service.flushPendingWrites();
+
+        ArgumentCaptor<Collection<CachedResponse>> batch = ArgumentCaptor.forClass(Collection.class);
+        verify(jdbcTemplate).batchUpdate(anyString(), batch.capture(), eq(2),
+                any(ParameterizedPreparedStatementSetter.class));
+        assertEquals(2, batch.getValue().size());
+    }
+
+    // A response as the first request publishes it, taken from the Redis write
+    private CachedResponse published() {
+        newService().cacheResponse(KEY, REQUEST, response());
+        ArgumentCaptor<CachedResponse> cached = ArgumentCaptor.forClass(CachedResponse.class);
+        verify(remoteCache).put(eq(KEY), cached.capture());
+        return cached.getValue();
+    }
+
+    private IdempotencyServiceImpl newService() {
+        IdempotencyServiceImpl service = new IdempotencyServiceImpl(repository, objectMapper, hitCounter,
+                cacheManager, redisTemplate, jdbcTemplate, transactionTemplate, partitionManager);
+        ReflectionTestUtils.setField(service, "ttlHours", 24);
+        ReflectionTestUtils.setField(service, "localMaxSize", 1_000L);
+        ReflectionTestUtils.setField(service, "localTtlMinutes", 10L);
+        ReflectionTestUtils.setField(service, "inFlightTtlMs", 30_000L);
+        ReflectionTestUtils.setField(service, "inFlightWaitMs", 5_000L);
+        ReflectionTestUtils.setField(service, "writeBatchSize", 500);
+        ReflectionTestUtils.setField(service, "maxPendingWrites", 2);
+        service.init();
+        return service;
+    }
+
+    private static TransactionResponse response() {
+        return TransactionResponse.builder().id(42L).transactionId("TXN-42").build();
+    }
+
+    private static IdempotencyKey entity(CachedResponse cached) {
+        return IdempotencyKey.builder()
+                .idempotencyKey(cached.idempotencyKey())
+                .requestHash(cached.requestHash())
+                .responseBody(cached.responseBody())
+                .httpStatus(200)
+                .expiresAt(Instant.ofEpochMilli(cached.expiresAtMillis()))
+                .build();
+    }
+}
@@ -0,0 +1,45 @@
+package com.velocityx.wallet_service.actuator;
+
+import com.velocityx.wallet_service.enums.WalletEventType;
+import com.velocityx.wallet_service.service.DlqReplayService;
+import com.velocityx.wallet_service.service.DlqReplayService.ReplayFilter;
+import com.velocityx.wallet_service.service.DlqReplayService.ReplayProgress;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+
+@Component
+@Endpoint(id = "dlqreplay")
+@RequiredArgsConstructor
+public class DlqReplayEndpoint {
+    
+    private final DlqReplayService replayService;
+    
+    @ReadOperation
+    public ReplayProgress progress() {
+        return replayService.getProgress();
+    }
+    
+    // Times are ISO-8601 instants, e.g. 2024-05-01T10:00:00Z
+    @WriteOperation
+    public ReplayProgress replay(@Nullable String eventType, @Nullable String errorClass, @Nullable String from,
+                                 @Nullable String to, @Nullable Double ratePerSecond) {
+        ReplayFilter filter = new ReplayFilter(
+                eventType == null ? null : WalletEventType.valueOf(eventType).name(),
+                errorClass,
+                from == null ? null : Instant.parse(from),
+                to == null ? null : Instant.parse(to));
+        return replayService.start(filter, ratePerSecond);
+    }
+    
+    @DeleteOperation
+    public ReplayProgress cancel() {
+        return replayService.cancel();
+    }
+}
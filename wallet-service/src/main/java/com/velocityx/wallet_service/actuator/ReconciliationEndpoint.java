@@ -0,0 +1,27 @@
+package com.velocityx.wallet_service.actuator;
+
+import com.velocityx.wallet_service.service.LedgerReconciliationService;
+import com.velocityx.wallet_service.service.LedgerReconciliationService.ReconciliationReport;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+@Component
+@Endpoint(id = "reconciliation")
+@RequiredArgsConstructor
+public class ReconciliationEndpoint {
+    
+    private final LedgerReconciliationService reconciliationService;
+    
+    @ReadOperation
+    public ReconciliationReport lastReport() {
+        return reconciliationService.getLastReport();
+    }
+    
+    @WriteOperation
+    public ReconciliationReport reconcile() {
+        return reconciliationService.reconcile();
+    }
+}
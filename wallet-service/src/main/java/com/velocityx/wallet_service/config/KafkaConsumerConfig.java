@@ -1,16 +1,26 @@
 package com.velocityx.wallet_service.config;
 
+import com.velocityx.wallet_service.kafka.consumer.KeyOrderedDispatcher;
+import com.velocityx.wallet_service.kafka.consumer.PartitionBalanceEngine;
+import com.velocityx.wallet_service.kafka.producer.WalletRetryProducer;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.clients.consumer.Consumer;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.common.TopicPartition;
 import org.apache.kafka.common.serialization.StringDeserializer;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.config.TopicBuilder;
 import org.springframework.kafka.core.ConsumerFactory;
 import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.KafkaAdmin;
+import org.springframework.kafka.listener.ConsumerAwareRebalanceListener;
 import org.springframework.kafka.listener.ContainerProperties;
 import org.springframework.kafka.support.serializer.JsonDeserializer;
 
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -23,6 +33,12 @@ public class KafkaConsumerConfig {
     @Value("${spring.kafka.consumer.group-id}")
     private String groupId;
     
+    @Value("${wallet.consumer.batch.max-poll-records:500}")
+    private int batchMaxPollRecords;
+    
+    @Value("${wallet.retry.partitions:3}")
+    private int retryPartitions;
+    
     @Bean
     public ConsumerFactory<String, Object> consumerFactory() {
         Map<String, Object> config = new HashMap<>();
@@ -40,11 +56,73 @@ public class KafkaConsumerConfig {
     }
     
     @Bean
-    public ConcurrentKafkaListenerContainerFactory<String, Object> kafkaListenerContainerFactory() {
+    public ConcurrentKafkaListenerContainerFactory<String, Object> kafkaListenerContainerFactory(
+            PartitionBalanceEngine balanceEngine, KeyOrderedDispatcher keyOrderedDispatcher) {
+        ConcurrentKafkaListenerContainerFactory<String, Object> factory = 
+                new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(consumerFactory());
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+        // Lanes acknowledge out of order; the container commits only the contiguous acknowledged prefix
+        factory.getContainerProperties().setAsyncAcks(keyOrderedDispatcher.isEnabled());
+        factory.getContainerProperties().setConsumerRebalanceListener(
+                rebalanceListeners(balanceEngine, keyOrderedDispatcher));
+        return factory;
+    }
+    
+    private static ConsumerAwareRebalanceListener rebalanceListeners(ConsumerAwareRebalanceListener... listeners) {
+        return new ConsumerAwareRebalanceListener() {
+            
+            @Override
+            public void onPartitionsRevokedBeforeCommit(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+                for (ConsumerAwareRebalanceListener listener : listeners) {
+                    listener.onPartitionsRevokedBeforeCommit(consumer, partitions);
+                }
+            }
+            
+            @Override
+            public void onPartitionsLost(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+                for (ConsumerAwareRebalanceListener listener : listeners) {
+                    listener.onPartitionsLost(consumer, partitions);
+                }
+            }
+            
+            @Override
+            public void onPartitionsAssigned(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+                for (ConsumerAwareRebalanceListener listener : listeners) {
+                    listener.onPartitionsAssigned(consumer, partitions);
+                }
+            }
+        };
+    }
+    
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, Object> batchKafkaListenerContainerFactory() {
         ConcurrentKafkaListenerContainerFactory<String, Object> factory = 
                 new ConcurrentKafkaListenerContainerFactory<>();
         factory.setConsumerFactory(consumerFactory());
+        factory.setBatchListener(true);
         factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+        factory.getContainerProperties().getKafkaConsumerProperties()
+                .setProperty(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, String.valueOf(batchMaxPollRecords));
         return factory;
     }
+    
+    // Record listener with manual acks, so a retry that is not yet due can be nacked with a pause.
+    // A nack pauses the whole consumer, so each tier container runs one consumer per partition.
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, Object> retryKafkaListenerContainerFactory() {
+        ConcurrentKafkaListenerContainerFactory<String, Object> factory = 
+                new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(consumerFactory());
+        factory.setConcurrency(retryPartitions);
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+        return factory;
+    }
+    
+    @Bean
+    public KafkaAdmin.NewTopics walletRetryTopics(WalletRetryProducer retryProducer) {
+        return new KafkaAdmin.NewTopics(retryProducer.tierTopics().stream()
+                .map(topic -> TopicBuilder.name(topic).partitions(retryPartitions).build())
+                .toArray(NewTopic[]::new));
+    }
 }
@@ -19,6 +19,15 @@ public class KafkaProducerConfig {
     @Value("${spring.kafka.bootstrap-servers}")
     private String bootstrapServers;
     
+    @Value("${wallet.kafka.producer.compression-type:lz4}")
+    private String compressionType;
+    
+    @Value("${wallet.kafka.producer.linger-ms:5}")
+    private int lingerMs;
+    
+    @Value("${wallet.kafka.producer.batch-size:65536}")
+    private int batchSize;
+    
     @Bean
     public ProducerFactory<String, Object> producerFactory() {
         Map<String, Object> config = new HashMap<>();
@@ -29,6 +38,9 @@ public class KafkaProducerConfig {
         config.put(ProducerConfig.RETRIES_CONFIG, 3);
         config.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true);
         config.put(ProducerConfig.MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION, 5);
+        config.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, compressionType);
+        config.put(ProducerConfig.LINGER_MS_CONFIG, lingerMs);
+        config.put(ProducerConfig.BATCH_SIZE_CONFIG, batchSize);
         config.put(JsonSerializer.ADD_TYPE_INFO_HEADERS, false);
         
         return new DefaultKafkaProducerFactory<>(config);
@@ -1,8 +1,16 @@
 package com.velocityx.wallet_service.controller;
 
 import com.velocityx.wallet_service.dto.request.*;
+import com.velocityx.wallet_service.dto.response.BalanceAsOfResponse;
+import com.velocityx.wallet_service.dto.response.BatchCreditResponse;
+import com.velocityx.wallet_service.dto.response.StatementResponse;
 import com.velocityx.wallet_service.dto.response.TransactionResponse;
 import com.velocityx.wallet_service.dto.response.WalletResponse;
+import com.velocityx.wallet_service.enums.TransactionStatus;
+import com.velocityx.wallet_service.service.BalanceSnapshotService;
+import com.velocityx.wallet_service.service.BatchCreditService;
+import com.velocityx.wallet_service.service.StatementService;
+import com.velocityx.wallet_service.service.StatementService.ExportFormat;
 import com.velocityx.wallet_service.service.WalletService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
@@ -10,9 +18,17 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 
 @RestController
 @RequestMapping("/api/v1/wallets")
@@ -23,6 +39,9 @@ import org.springframework.web.bind.annotation.*;
 public class WalletController {
     
     private final WalletService walletService;
+    private final StatementService statementService;
+    private final BatchCreditService batchCreditService;
+    private final BalanceSnapshotService balanceSnapshotService;
     
     @PostMapping
     @Operation(summary = "Create wallet", description = "Create a new wallet for user")
@@ -33,19 +52,39 @@ public class WalletController {
     }
     
     @PostMapping("/credit")
-    @Operation(summary = "Credit wallet", description = "Add funds to wallet")
-    public ResponseEntity<TransactionResponse> credit(@Valid @RequestBody CreditRequest request) {
+    @Operation(summary = "Credit wallet", description = "Add funds to wallet; sync=true applies small amounts immediately")
+    public ResponseEntity<TransactionResponse> credit(
+            @Valid @RequestBody CreditRequest request,
+            @RequestParam(defaultValue = "false") boolean sync) {
         log.info("REST request to credit wallet: userId={}, amount={}", request.getUserId(), request.getAmount());
-        TransactionResponse response = walletService.credit(request);
+        TransactionResponse response = walletService.credit(request, sync);
+        return ResponseEntity.status(statusFor(response)).body(response);
+    }
+    
+    @PostMapping(value = "/credit/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(summary = "Batch credit wallets", description = "Add funds to many wallets with per-item status")
+    public ResponseEntity<BatchCreditResponse> creditBatch(@Valid @RequestBody BatchCreditRequest request) {
+        log.info("REST request to batch credit wallets: items={}", request.getCredits().size());
+        BatchCreditResponse response = batchCreditService.creditBatch(request.getCredits().iterator());
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
+    }
+    
+    @PostMapping(value = "/credit/batch", consumes = "application/x-ndjson")
+    @Operation(summary = "Batch credit wallets from NDJSON", description = "Stream one credit request per line")
+    public ResponseEntity<BatchCreditResponse> creditBatchStream(InputStream body) throws IOException {
+        log.info("REST request to batch credit wallets from NDJSON stream");
+        BatchCreditResponse response = batchCreditService.creditBatch(body);
         return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
     }
     
     @PostMapping("/debit")
-    @Operation(summary = "Debit wallet", description = "Deduct funds from wallet")
-    public ResponseEntity<TransactionResponse> debit(@Valid @RequestBody DebitRequest request) {
+    @Operation(summary = "Debit wallet", description = "Deduct funds from wallet; sync=true applies small amounts immediately")
+    public ResponseEntity<TransactionResponse> debit(
+            @Valid @RequestBody DebitRequest request,
+            @RequestParam(defaultValue = "false") boolean sync) {
         log.info("REST request to debit wallet: userId={}, amount={}", request.getUserId(), request.getAmount());
-        TransactionResponse response = walletService.debit(request);
-        return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
+        TransactionResponse response = walletService.debit(request, sync);
+        return ResponseEntity.status(statusFor(response)).body(response);
     }
     
     @PostMapping("/hold")
@@ -97,6 +136,52 @@ public class WalletController {
         return ResponseEntity.ok(response);
     }
     
+    @GetMapping("/{walletId}/balance")
+    @Operation(summary = "Get historical balance", description = "Balance from entries before asOf, via the nearest daily snapshot")
+    public ResponseEntity<BalanceAsOfResponse> getBalanceAsOf(
+            @PathVariable String walletId,
+            @RequestParam Instant asOf) {
+        log.info("REST request to get balance as of: walletId={}, asOf={}", walletId, asOf);
+        BalanceAsOfResponse response = balanceSnapshotService.getBalanceAsOf(walletId, asOf);
+        return ResponseEntity.ok(response);
+    }
+    
+    @GetMapping("/{walletId}/statement")
+    @Operation(summary = "Get statement", description = "Get ledger entries newest first, paged by an opaque cursor")
+    public ResponseEntity<StatementResponse> getStatement(
+            @PathVariable String walletId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int limit) {
+        log.info("REST request to get statement: walletId={}, limit={}", walletId, limit);
+        StatementResponse response = statementService.getStatement(walletId, cursor, limit);
+        return ResponseEntity.ok(response);
+    }
+    
+    @GetMapping("/{walletId}/statement/export")
+    @Operation(summary = "Export statement", description = "Stream ledger entries in [from, to) as NDJSON or CSV")
+    public ResponseEntity<StreamingResponseBody> exportStatement(
+            @PathVariable String walletId,
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestParam(required = false) Instant from,
+            @RequestParam(required = false) Instant to) {
+        ExportFormat exportFormat = ExportFormat.parse(format);
+        if (exportFormat == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        Instant end = to != null ? to : Instant.now();
+        Instant start = from != null ? from : end.minus(365, ChronoUnit.DAYS);
+        log.info("REST request to export statement: walletId={}, from={}, to={}, format={}",
+                walletId, start, end, exportFormat);
+        
+        StreamingResponseBody body = outputStream -> statementService.export(walletId, start, end, exportFormat, outputStream);
+        return ResponseEntity.ok()
+                .contentType(exportFormat == ExportFormat.CSV
+                        ? MediaType.parseMediaType("text/csv") : MediaType.parseMediaType("application/x-ndjson"))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + walletId + "-statement."
+                        + exportFormat.name().toLowerCase() + "\"")
+                .body(body);
+    }
+    
     @GetMapping("/transaction/{transactionId}")
     @Operation(summary = "Get transaction", description = "Get transaction details")
     public ResponseEntity<TransactionResponse> getTransaction(@PathVariable String transactionId) {
@@ -104,4 +189,9 @@ public class WalletController {
         TransactionResponse response = walletService.getTransaction(transactionId);
         return ResponseEntity.ok(response);
     }
+    
+    // Requests applied on the synchronous fast path have a final status; everything else is still INIT
+    private HttpStatus statusFor(TransactionResponse response) {
+        return response.getStatus() == TransactionStatus.INIT ? HttpStatus.ACCEPTED : HttpStatus.OK;
+    }
 }
@@ -0,0 +1,20 @@
+package com.velocityx.wallet_service.dto.request;
+
+import jakarta.validation.constraints.NotEmpty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BatchCreditRequest {
+    
+    // Items are validated one by one so a bad row is reported instead of failing the whole batch
+    @NotEmpty(message = "Credits are required")
+    private List<CreditRequest> credits;
+}
@@ -1,8 +1,11 @@
 package com.velocityx.wallet_service.dto.request;
 
+import com.velocityx.wallet_service.validation.MonetaryRequest;
+import com.velocityx.wallet_service.validation.SettleableAmount;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.Size;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -15,7 +18,8 @@ import java.util.Map;
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
-public class CreditRequest {
+@SettleableAmount
+public class CreditRequest implements MonetaryRequest {
     
     @NotNull(message = "User ID is required")
     private Long userId;
@@ -24,14 +28,18 @@ public class CreditRequest {
     @Positive(message = "Amount must be positive")
     private BigDecimal amount;
     
+    @Size(min = 3, max = 3, message = "Currency must be a 3-letter code")
     @Builder.Default
     private String currency = "INR";
     
+    @Size(max = 500, message = "Description must be at most 500 characters")
     private String description;
     
+    @Size(max = 100, message = "Reference ID must be at most 100 characters")
     private String referenceId;
     
     @NotBlank(message = "Idempotency key is required")
+    @Size(max = 100, message = "Idempotency key must be at most 100 characters")
     private String idempotencyKey;
     
     private Map<String, Object> metadata;
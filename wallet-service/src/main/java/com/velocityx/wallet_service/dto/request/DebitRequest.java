@@ -1,5 +1,7 @@
 package com.velocityx.wallet_service.dto.request;
 
+import com.velocityx.wallet_service.validation.MonetaryRequest;
+import com.velocityx.wallet_service.validation.SettleableAmount;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Positive;
@@ -14,7 +16,8 @@ import java.math.BigDecimal;
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
-public class DebitRequest {
+@SettleableAmount
+public class DebitRequest implements MonetaryRequest {
     
     @NotNull(message = "User ID is required")
     private Long userId;
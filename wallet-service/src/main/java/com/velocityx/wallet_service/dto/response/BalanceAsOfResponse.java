@@ -0,0 +1,23 @@
+package com.velocityx.wallet_service.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BalanceAsOfResponse {
+    private String walletId;
+    private String currency;
+    private Instant asOf;
+    private BigDecimal balance;
+    private LocalDate snapshotDate;
+    private long entriesReplayed;
+}
@@ -0,0 +1,20 @@
+package com.velocityx.wallet_service.dto.response;
+
+import com.velocityx.wallet_service.enums.BatchItemStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BatchCreditItemResponse {
+    private int index;
+    private String idempotencyKey;
+    private BatchItemStatus status;
+    private String transactionId;
+    private String walletId;
+    private String error;
+}
@@ -0,0 +1,20 @@
+package com.velocityx.wallet_service.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BatchCreditResponse {
+    private int total;
+    private int accepted;
+    private int duplicates;
+    private int rejected;
+    private List<BatchCreditItemResponse> items;
+}
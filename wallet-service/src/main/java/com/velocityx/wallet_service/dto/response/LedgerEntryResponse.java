@@ -0,0 +1,27 @@
+package com.velocityx.wallet_service.dto.response;
+
+import com.velocityx.wallet_service.enums.LedgerEntryType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class LedgerEntryResponse {
+    private String entryId;
+    private String transactionId;
+    private String walletId;
+    private LedgerEntryType entryType;
+    private String entrySide;
+    private BigDecimal amount;
+    private BigDecimal balanceBefore;
+    private BigDecimal balanceAfter;
+    private String description;
+    private Instant createdAt;
+}
@@ -0,0 +1,18 @@
+package com.velocityx.wallet_service.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class StatementResponse {
+    private String walletId;
+    private List<LedgerEntryResponse> entries;
+    private String nextCursor;
+}
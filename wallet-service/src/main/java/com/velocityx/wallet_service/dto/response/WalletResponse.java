@@ -23,4 +23,5 @@ public class WalletResponse {
     private BigDecimal heldBalance;
     private WalletStatus status;
     private Instant createdAt;
+    private Long version;
 }
@@ -0,0 +1,43 @@
+package com.velocityx.wallet_service.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+// Closing balance of a wallet at the end of a UTC day; only written for days with ledger activity
+@Entity
+@Table(
+    name = "wallet_balance_snapshots",
+    uniqueConstraints = {
+        @UniqueConstraint(name = "uk_snapshot_wallet_date", columnNames = {"wallet_id", "snapshot_date"})
+    }
+)
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BalanceSnapshot {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "wallet_id", nullable = false, length = 50)
+    private String walletId;
+    
+    @Column(name = "snapshot_date", nullable = false)
+    private LocalDate snapshotDate;
+    
+    @Column(name = "balance", nullable = false, precision = 19, scale = 4)
+    @Convert(converter = MinorUnitsConverter.class)
+    private long balanceMinor;
+    
+    @Column(name = "entries", nullable = false)
+    private long entries;
+    
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+}
@@ -0,0 +1,39 @@
+package com.velocityx.wallet_service.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+@Entity
+@Table(
+    name = "ledger_checkpoints",
+    uniqueConstraints = {
+        @UniqueConstraint(name = "uk_checkpoint_wallet_id", columnNames = "wallet_id")
+    }
+)
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class LedgerCheckpoint {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "wallet_id", nullable = false, unique = true, length = 50)
+    private String walletId;
+    
+    // Balance derived from the ledger up to and including lastEntryId
+    @Column(name = "balance", nullable = false, precision = 19, scale = 4)
+    @Convert(converter = MinorUnitsConverter.class)
+    private long balanceMinor;
+    
+    @Column(name = "last_entry_id", nullable = false)
+    private Long lastEntryId;
+    
+    @Column(name = "checked_at", nullable = false)
+    private Instant checkedAt;
+}
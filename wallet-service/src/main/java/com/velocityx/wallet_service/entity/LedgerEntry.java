@@ -1,6 +1,7 @@
 package com.velocityx.wallet_service.entity;
 
 import com.velocityx.wallet_service.enums.LedgerEntryType;
+import com.velocityx.wallet_service.util.MinorUnits;
 import jakarta.persistence.*;
 import lombok.*;
 
@@ -12,12 +13,12 @@ import java.time.Instant;
     name = "ledger_entries",
     indexes = {
         @Index(name = "idx_ledger_transaction_id", columnList = "transaction_id"),
-        @Index(name = "idx_ledger_wallet_id", columnList = "wallet_id"),
-        @Index(name = "idx_ledger_entry_type", columnList = "entry_type"),
-        @Index(name = "idx_ledger_created_at", columnList = "created_at")
+        @Index(name = "idx_ledger_wallet_entry", columnList = "wallet_id, id"),
+        @Index(name = "idx_ledger_wallet_created", columnList = "wallet_id, created_at, id")
     },
+    // Unique keys on a partitioned table must contain the partition key (created_at)
     uniqueConstraints = {
-        @UniqueConstraint(name = "uk_ledger_entry", columnNames = {"transaction_id", "entry_side", "wallet_id"})
+        @UniqueConstraint(name = "uk_ledger_entry", columnNames = {"transaction_id", "entry_side", "wallet_id", "created_at"})
     }
 )
 @Getter
@@ -31,7 +32,7 @@ public class LedgerEntry {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
     
-    @Column(name = "entry_id", nullable = false, unique = true, length = 50)
+    @Column(name = "entry_id", nullable = false, length = 50)
     private String entryId;
     
     @ManyToOne(fetch = FetchType.LAZY)
@@ -49,13 +50,16 @@ public class LedgerEntry {
     private String entrySide;
     
     @Column(name = "amount", nullable = false, precision = 19, scale = 4)
-    private BigDecimal amount;
+    @Convert(converter = MinorUnitsConverter.class)
+    private long amountMinor;
     
     @Column(name = "balance_before", nullable = false, precision = 19, scale = 4)
-    private BigDecimal balanceBefore;
+    @Convert(converter = MinorUnitsConverter.class)
+    private long balanceBeforeMinor;
     
     @Column(name = "balance_after", nullable = false, precision = 19, scale = 4)
-    private BigDecimal balanceAfter;
+    @Convert(converter = MinorUnitsConverter.class)
+    private long balanceAfterMinor;
     
     @Column(name = "description", length = 500)
     private String description;
@@ -63,4 +67,16 @@ public class LedgerEntry {
     @Column(name = "created_at", nullable = false)
     @Builder.Default
     private Instant createdAt = Instant.now();
+    
+    public BigDecimal getAmount() {
+        return MinorUnits.toDecimal(amountMinor);
+    }
+    
+    public BigDecimal getBalanceBefore() {
+        return MinorUnits.toDecimal(balanceBeforeMinor);
+    }
+    
+    public BigDecimal getBalanceAfter() {
+        return MinorUnits.toDecimal(balanceAfterMinor);
+    }
 }
@@ -0,0 +1,21 @@
+package com.velocityx.wallet_service.entity;
+
+import com.velocityx.wallet_service.util.MinorUnits;
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+import java.math.BigDecimal;
+
+@Converter
+public class MinorUnitsConverter implements AttributeConverter<Long, BigDecimal> {
+    
+    @Override
+    public BigDecimal convertToDatabaseColumn(Long units) {
+        return units == null ? null : MinorUnits.toDecimal(units);
+    }
+    
+    @Override
+    public Long convertToEntityAttribute(BigDecimal amount) {
+        return amount == null ? null : MinorUnits.of(amount);
+    }
+}
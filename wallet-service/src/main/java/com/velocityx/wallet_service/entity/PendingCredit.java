@@ -0,0 +1,45 @@
+package com.velocityx.wallet_service.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+// A credit to a netted wallet that has been accepted but not yet applied to its balance.
+// The netting job turns each row into a ledger entry and deletes it in the same transaction.
+@Entity
+@Table(
+    name = "pending_credits",
+    indexes = {
+        @Index(name = "idx_pending_credit_wallet", columnList = "wallet_id, id")
+    }
+)
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PendingCredit {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "transaction_id", nullable = false)
+    private WalletTransaction transaction;
+    
+    @Column(name = "wallet_id", nullable = false, length = 50)
+    private String walletId;
+    
+    @Column(name = "amount", nullable = false, precision = 19, scale = 4)
+    @Convert(converter = MinorUnitsConverter.class)
+    private long amountMinor;
+    
+    @Column(name = "description", length = 500)
+    private String description;
+    
+    @Column(name = "created_at", nullable = false)
+    @Builder.Default
+    private Instant createdAt = Instant.now();
+}
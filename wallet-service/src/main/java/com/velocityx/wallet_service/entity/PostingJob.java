@@ -0,0 +1,50 @@
+package com.velocityx.wallet_service.entity;
+
+import com.velocityx.wallet_service.enums.PostingJobStatus;
+import com.velocityx.wallet_service.enums.TransactionType;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+// One fee or interest run across all wallets; the job id doubles as the idempotency key prefix
+@Entity
+@Table(
+    name = "posting_jobs",
+    uniqueConstraints = {
+        @UniqueConstraint(name = "uk_posting_job_id", columnNames = "job_id")
+    }
+)
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PostingJob {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "job_id", nullable = false, length = 50)
+    private String jobId;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(name = "transaction_type", nullable = false, length = 20)
+    private TransactionType transactionType;
+    
+    // Flat fee amount, or interest rate in basis points
+    @Column(name = "parameter", nullable = false, precision = 19, scale = 4)
+    private BigDecimal parameter;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 20)
+    private PostingJobStatus status;
+    
+    @Column(name = "started_at", nullable = false)
+    private Instant startedAt;
+    
+    @Column(name = "completed_at")
+    private Instant completedAt;
+}
@@ -0,0 +1,44 @@
+package com.velocityx.wallet_service.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+// Checkpoint of one wallet id range of a posting job, committed together with its postings
+@Entity
+@Table(
+    name = "posting_job_chunks",
+    uniqueConstraints = {
+        @UniqueConstraint(name = "uk_posting_chunk", columnNames = {"job_id", "range_start"})
+    }
+)
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PostingJobChunk {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "job_id", nullable = false, length = 50)
+    private String jobId;
+    
+    @Column(name = "range_start", nullable = false)
+    private Long rangeStart;
+    
+    @Column(name = "range_end", nullable = false)
+    private Long rangeEnd;
+    
+    @Column(name = "posted", nullable = false)
+    private int posted;
+    
+    @Column(name = "skipped", nullable = false)
+    private int skipped;
+    
+    @Column(name = "completed_at", nullable = false)
+    private Instant completedAt;
+}
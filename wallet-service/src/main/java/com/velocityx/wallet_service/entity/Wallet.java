@@ -1,6 +1,7 @@
 package com.velocityx.wallet_service.entity;
 
 import com.velocityx.wallet_service.enums.WalletStatus;
+import com.velocityx.wallet_service.util.MinorUnits;
 import jakarta.persistence.*;
 import lombok.*;
 
@@ -12,7 +13,8 @@ import java.math.BigDecimal;
     indexes = {
         @Index(name = "idx_wallet_user_id", columnList = "user_id"),
         @Index(name = "idx_wallet_wallet_id", columnList = "wallet_id"),
-        @Index(name = "idx_wallet_currency", columnList = "currency")
+        @Index(name = "idx_wallet_currency", columnList = "currency"),
+        @Index(name = "idx_wallet_updated_at", columnList = "updated_at")
     },
     uniqueConstraints = {
         @UniqueConstraint(name = "uk_wallet_id", columnNames = "wallet_id"),
@@ -41,48 +43,67 @@ public class Wallet extends BaseEntity {
     private String currency = "INR";
     
     @Column(name = "balance", nullable = false, precision = 19, scale = 4)
+    @Convert(converter = MinorUnitsConverter.class)
     @Builder.Default
-    private BigDecimal balance = BigDecimal.ZERO;
+    private long balanceMinor = 0L;
     
     @Column(name = "available_balance", nullable = false, precision = 19, scale = 4)
+    @Convert(converter = MinorUnitsConverter.class)
     @Builder.Default
-    private BigDecimal availableBalance = BigDecimal.ZERO;
+    private long availableBalanceMinor = 0L;
     
     @Column(name = "held_balance", nullable = false, precision = 19, scale = 4)
+    @Convert(converter = MinorUnitsConverter.class)
     @Builder.Default
-    private BigDecimal heldBalance = BigDecimal.ZERO;
+    private long heldBalanceMinor = 0L;
     
     @Enumerated(EnumType.STRING)
     @Column(name = "status", nullable = false, length = 20)
     @Builder.Default
     private WalletStatus status = WalletStatus.ACTIVE;
     
+    public BigDecimal getBalance() {
+        return MinorUnits.toDecimal(balanceMinor);
+    }
+    
+    public BigDecimal getAvailableBalance() {
+        return MinorUnits.toDecimal(availableBalanceMinor);
+    }
+    
+    public BigDecimal getHeldBalance() {
+        return MinorUnits.toDecimal(heldBalanceMinor);
+    }
+    
     public boolean hasAvailableBalance(BigDecimal amount) {
-        return availableBalance.compareTo(amount) >= 0;
+        return hasAvailableBalance(MinorUnits.of(amount));
+    }
+    
+    public boolean hasAvailableBalance(long amount) {
+        return availableBalanceMinor >= amount;
     }
     
-    public void credit(BigDecimal amount) {
-        this.balance = this.balance.add(amount);
-        this.availableBalance = this.availableBalance.add(amount);
+    public void credit(long amount) {
+        this.balanceMinor = MinorUnits.add(this.balanceMinor, amount);
+        this.availableBalanceMinor = MinorUnits.add(this.availableBalanceMinor, amount);
     }
     
-    public void debit(BigDecimal amount) {
-        this.balance = this.balance.subtract(amount);
-        this.availableBalance = this.availableBalance.subtract(amount);
+    public void debit(long amount) {
+        this.balanceMinor = MinorUnits.subtract(this.balanceMinor, amount);
+        this.availableBalanceMinor = MinorUnits.subtract(this.availableBalanceMinor, amount);
     }
     
-    public void holdFunds(BigDecimal amount) {
-        this.availableBalance = this.availableBalance.subtract(amount);
-        this.heldBalance = this.heldBalance.add(amount);
+    public void holdFunds(long amount) {
+        this.availableBalanceMinor = MinorUnits.subtract(this.availableBalanceMinor, amount);
+        this.heldBalanceMinor = MinorUnits.add(this.heldBalanceMinor, amount);
     }
     
-    public void releaseHold(BigDecimal amount) {
-        this.heldBalance = this.heldBalance.subtract(amount);
-        this.availableBalance = this.availableBalance.add(amount);
+    public void releaseHold(long amount) {
+        this.heldBalanceMinor = MinorUnits.subtract(this.heldBalanceMinor, amount);
+        this.availableBalanceMinor = MinorUnits.add(this.availableBalanceMinor, amount);
     }
     
-    public void captureHold(BigDecimal amount) {
-        this.heldBalance = this.heldBalance.subtract(amount);
-        this.balance = this.balance.subtract(amount);
+    public void captureHold(long amount) {
+        this.heldBalanceMinor = MinorUnits.subtract(this.heldBalanceMinor, amount);
+        this.balanceMinor = MinorUnits.subtract(this.balanceMinor, amount);
     }
 }
@@ -0,0 +1,7 @@
+package com.velocityx.wallet_service.enums;
+
+public enum BatchItemStatus {
+    ACCEPTED,
+    DUPLICATE,
+    REJECTED
+}
@@ -0,0 +1,6 @@
+package com.velocityx.wallet_service.enums;
+
+public enum PostingJobStatus {
+    RUNNING,
+    COMPLETED
+}
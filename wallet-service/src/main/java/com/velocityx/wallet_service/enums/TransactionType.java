@@ -1,5 +1,7 @@
 package com.velocityx.wallet_service.enums;
 
+// Stored as strings under a check constraint; a new value also goes into
+// db/wallet_transactions_type_check.sql, which existing databases need before it can be written
 public enum TransactionType {
     CREDIT,
     DEBIT,
@@ -8,5 +10,9 @@ public enum TransactionType {
     RELEASE,
     TRANSFER_OUT,
     TRANSFER_IN,
-    REFUND
+    REFUND,
+    CONSOLIDATION,
+    FEE,
+    INTEREST,
+    OPENING_BALANCE
 }
@@ -0,0 +1,7 @@
+package com.velocityx.wallet_service.exception;
+
+public class BalanceHistoryUnavailableException extends RuntimeException {
+    public BalanceHistoryUnavailableException(String message) {
+        super(message);
+    }
+}
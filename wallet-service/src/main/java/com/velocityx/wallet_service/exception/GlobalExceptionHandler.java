@@ -4,6 +4,7 @@ import com.velocityx.wallet_service.dto.response.ApiError;
 import io.micrometer.tracing.Tracer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.FieldError;
@@ -69,6 +70,66 @@ public class GlobalExceptionHandler {
         return ResponseEntity.badRequest().body(apiError);
     }
     
+    @ExceptionHandler(TransferLimitExceededException.class)
+    public ResponseEntity<ApiError> handleTransferLimitExceeded(TransferLimitExceededException ex, WebRequest request) {
+        ApiError apiError = ApiError.builder()
+                .timestamp(Instant.now())
+                .status(HttpStatus.UNPROCESSABLE_ENTITY.value())
+                .error("Limit Exceeded")
+                .message(ex.getMessage())
+                .path(request.getDescription(false).replace("uri=", ""))
+                .traceId(getTraceId())
+                .build();
+        
+        return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).body(apiError);
+    }
+    
+    @ExceptionHandler(InvalidCursorException.class)
+    public ResponseEntity<ApiError> handleInvalidCursor(InvalidCursorException ex, WebRequest request) {
+        ApiError apiError = ApiError.builder()
+                .timestamp(Instant.now())
+                .status(HttpStatus.BAD_REQUEST.value())
+                .error("Invalid Cursor")
+                .message(ex.getMessage())
+                .path(request.getDescription(false).replace("uri=", ""))
+                .traceId(getTraceId())
+                .build();
+        
+        return ResponseEntity.badRequest().body(apiError);
+    }
+    
+    @ExceptionHandler(BalanceHistoryUnavailableException.class)
+    public ResponseEntity<ApiError> handleBalanceHistoryUnavailable(BalanceHistoryUnavailableException ex, WebRequest request) {
+        ApiError apiError = ApiError.builder()
+                .timestamp(Instant.now())
+                .status(HttpStatus.UNPROCESSABLE_ENTITY.value())
+                .error("History Unavailable")
+                .message(ex.getMessage())
+                .path(request.getDescription(false).replace("uri=", ""))
+                .traceId(getTraceId())
+                .build();
+        
+        return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).body(apiError);
+    }
+    
+    // Mostly a retried idempotency key racing its original request; the retry after this one sees
+    // the committed transaction.
+    @ExceptionHandler(DataIntegrityViolationException.class)
+    public ResponseEntity<ApiError> handleDataIntegrityViolation(DataIntegrityViolationException ex, WebRequest request) {
+        log.warn("Data integrity violation: {}", ex.getMostSpecificCause().getMessage());
+        
+        ApiError apiError = ApiError.builder()
+                .timestamp(Instant.now())
+                .status(HttpStatus.CONFLICT.value())
+                .error("Conflict")
+                .message("Request conflicts with an existing record")
+                .path(request.getDescription(false).replace("uri=", ""))
+                .traceId(getTraceId())
+                .build();
+        
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(apiError);
+    }
+    
     @ExceptionHandler(RuntimeException.class)
     public ResponseEntity<ApiError> handleRuntimeException(RuntimeException ex, WebRequest request) {
         log.error("Runtime exception occurred", ex);
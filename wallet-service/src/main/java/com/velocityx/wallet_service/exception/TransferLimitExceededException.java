@@ -0,0 +1,7 @@
+package com.velocityx.wallet_service.exception;
+
+public class TransferLimitExceededException extends RuntimeException {
+    public TransferLimitExceededException(String message) {
+        super(message);
+    }
+}
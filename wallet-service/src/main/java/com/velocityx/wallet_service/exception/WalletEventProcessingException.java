@@ -0,0 +1,7 @@
+package com.velocityx.wallet_service.exception;
+
+public class WalletEventProcessingException extends RuntimeException {
+    public WalletEventProcessingException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
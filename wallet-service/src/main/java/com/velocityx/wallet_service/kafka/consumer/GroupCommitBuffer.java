@@ -0,0 +1,185 @@
+package com.velocityx.wallet_service.kafka.consumer;
+
+import com.velocityx.wallet_service.dto.event.WalletEvent;
+import com.velocityx.wallet_service.kafka.producer.WalletRetryProducer;
+import com.velocityx.wallet_service.metrics.EventStage;
+import com.velocityx.wallet_service.metrics.WalletMetrics;
+import com.velocityx.wallet_service.service.WalletEventProcessor;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.FlushModeType;
+import jakarta.persistence.PersistenceContext;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class GroupCommitBuffer {
+    
+    private final WalletEventProcessor eventProcessor;
+    private final WalletRetryProducer retryProducer;
+    private final TransactionTemplate transactionTemplate;
+    private final WalletMetrics walletMetrics;
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    @Value("${wallet.db-writer.enabled:false}")
+    private boolean enabled;
+    
+    @Value("${wallet.db-writer.batch-size:100}")
+    private int batchSize;
+    
+    @Value("${wallet.db-writer.max-write-rate-per-second:500}")
+    private int maxWriteRatePerSecond;
+    
+    @Value("${wallet.db-writer.flush-interval-ms:1000}")
+    private long flushIntervalMs;
+    
+    private BlockingQueue<PendingEvent> queue;
+    private ScheduledExecutorService flusher;
+    
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        
+        queue = new LinkedBlockingQueue<>(batchSize * 10);
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "wallet-group-commit"));
+        flusher.scheduleWithFixedDelay(this::drain, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        log.info("Group commit enabled: batchSize={}, flushIntervalMs={}, maxWriteRatePerSecond={}",
+                batchSize, flushIntervalMs, maxWriteRatePerSecond);
+    }
+    
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (flusher == null) {
+            return;
+        }
+        
+        flusher.execute(this::drain);
+        flusher.shutdown();
+        flusher.awaitTermination(30, TimeUnit.SECONDS);
+    }
+    
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    public void submit(WalletEvent event, Map<String, Object> payload, Acknowledgment acknowledgment) {
+        submit(event, payload, acknowledgment, failure -> { });
+    }
+    
+    public void submit(WalletEvent event, Map<String, Object> payload, Acknowledgment acknowledgment,
+                       Consumer<Exception> completion) {
+        try {
+            queue.put(new PendingEvent(event, payload, acknowledgment, completion));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while buffering wallet event: " + event.getTransactionId(), e);
+        }
+        
+        if (queue.size() >= batchSize) {
+            flusher.execute(this::drain);
+        }
+    }
+    
+    public void flushNow() {
+        if (flusher != null) {
+            flusher.execute(this::drain);
+        }
+    }
+    
+    private void drain() {
+        while (!queue.isEmpty()) {
+            List<PendingEvent> batch = new ArrayList<>(batchSize);
+            queue.drainTo(batch, batchSize);
+            
+            long startedAt = System.nanoTime();
+            flush(batch);
+            throttle(batch.size(), System.nanoTime() - startedAt);
+        }
+    }
+    
+    private void flush(List<PendingEvent> batch) {
+        Map<WalletEvent, Exception> failures;
+        long[] appliedAt = new long[1];
+        try {
+            failures = transactionTemplate.execute(status -> {
+                entityManager.setFlushMode(FlushModeType.COMMIT);
+                Map<WalletEvent, Exception> applied = eventProcessor.applyAll(batch.stream().map(PendingEvent::event).toList());
+                appliedAt[0] = System.nanoTime();
+                return applied;
+            });
+        } catch (Exception e) {
+            log.warn("Group commit of {} wallet events failed, retrying one by one", batch.size(), e);
+            batch.forEach(this::flushIndividually);
+            return;
+        }
+        walletMetrics.recordSince(EventStage.COMMIT, appliedAt[0]);
+        
+        for (PendingEvent pending : batch) {
+            Exception failure = failures.get(pending.event());
+            if (failure != null) {
+                log.error("Error processing wallet event: txnId={}", pending.event().getTransactionId(), failure);
+                retryProducer.handleFailure(pending.payload(), failure);
+            } else {
+                walletMetrics.recordSince(EventStage.END_TO_END, pending.event().getTimestamp());
+            }
+            pending.acknowledgment().acknowledge();
+            pending.completion().accept(failure);
+        }
+        
+        log.debug("Group committed {} wallet events ({} failed)", batch.size(), failures.size());
+    }
+    
+    private void flushIndividually(PendingEvent pending) {
+        Exception failure = null;
+        try {
+            eventProcessor.process(pending.event());
+        } catch (Exception e) {
+            log.error("Error processing wallet event: txnId={}", pending.event().getTransactionId(), e);
+            retryProducer.handleFailure(pending.payload(), e);
+            failure = e;
+        }
+        pending.acknowledgment().acknowledge();
+        pending.completion().accept(failure);
+    }
+    
+    private void throttle(int written, long elapsedNanos) {
+        if (maxWriteRatePerSecond <= 0) {
+            return;
+        }
+        
+        long minimumNanos = TimeUnit.SECONDS.toNanos(written) / maxWriteRatePerSecond;
+        long remainingNanos = minimumNanos - elapsedNanos;
+        if (remainingNanos > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(remainingNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+    
+    private record PendingEvent(WalletEvent event, Map<String, Object> payload, Acknowledgment acknowledgment,
+                                Consumer<Exception> completion) {
+    }
+}
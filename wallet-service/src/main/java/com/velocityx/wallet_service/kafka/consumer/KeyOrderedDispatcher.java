@@ -0,0 +1,143 @@
+package com.velocityx.wallet_service.kafka.consumer;
+
+import com.velocityx.wallet_service.dto.event.WalletEvent;
+import com.velocityx.wallet_service.kafka.producer.WalletRetryProducer;
+import com.velocityx.wallet_service.service.WalletEventProcessor;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.listener.ConsumerAwareRebalanceListener;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fans records of a partition out to a fixed set of single-threaded lanes chosen by wallet id, so
+ * events for one wallet stay in order while unrelated wallets on the same partition run in
+ * parallel. Lanes acknowledge out of order; the container runs with async acks and only commits
+ * up to the lowest offset whose predecessors have all been acknowledged, and it pauses the
+ * consumer until a poll is fully acknowledged, which bounds the work queued on the lanes.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class KeyOrderedDispatcher implements ConsumerAwareRebalanceListener {
+    
+    private final WalletEventProcessor eventProcessor;
+    private final WalletRetryProducer retryProducer;
+    
+    @Value("${wallet.consumer.key-ordered.enabled:false}")
+    private boolean enabled;
+    
+    @Value("${wallet.consumer.key-ordered.lanes:0}")
+    private int laneCount;
+    
+    @Value("${wallet.consumer.key-ordered.drain-timeout-ms:30000}")
+    private long drainTimeoutMs;
+    
+    private ExecutorService[] lanes;
+    private final Map<TopicPartition, AtomicInteger> outstanding = new ConcurrentHashMap<>();
+    
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        
+        int count = laneCount > 0 ? laneCount : Runtime.getRuntime().availableProcessors();
+        lanes = new ExecutorService[count];
+        for (int i = 0; i < count; i++) {
+            String name = "wallet-lane-" + i;
+            lanes[i] = Executors.newSingleThreadExecutor(r -> new Thread(r, name));
+        }
+        log.info("Key-ordered dispatch enabled: lanes={}", count);
+    }
+    
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (lanes == null) {
+            return;
+        }
+        
+        for (ExecutorService lane : lanes) {
+            lane.shutdown();
+        }
+        for (ExecutorService lane : lanes) {
+            lane.awaitTermination(drainTimeoutMs, TimeUnit.MILLISECONDS);
+        }
+    }
+    
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    public void submit(TopicPartition partition, String key, WalletEvent event, Map<String, Object> payload,
+                       Acknowledgment acknowledgment) {
+        // Transfers are ordered by the debited wallet; the credited side is serialised by its row lock
+        String orderingKey = event.getWalletId() != null ? event.getWalletId() : key;
+        ExecutorService lane = lanes[Math.floorMod(orderingKey == null ? 0 : orderingKey.hashCode(), lanes.length)];
+        
+        AtomicInteger counter = outstanding.computeIfAbsent(partition, p -> new AtomicInteger());
+        counter.incrementAndGet();
+        lane.execute(() -> {
+            try {
+                handle(event, payload, acknowledgment);
+            } finally {
+                counter.decrementAndGet();
+            }
+        });
+    }
+    
+    private void handle(WalletEvent event, Map<String, Object> payload, Acknowledgment acknowledgment) {
+        try {
+            eventProcessor.process(event);
+            log.info("Event processed successfully: {}", event.getTransactionId());
+        } catch (Exception e) {
+            log.error("Error processing wallet event: txnId={}", event.getTransactionId(), e);
+            retryProducer.handleFailure(payload, e);
+        }
+        acknowledgment.acknowledge();
+    }
+    
+    // Acks made while draining are committed by the container right after this callback returns
+    @Override
+    public void onPartitionsRevokedBeforeCommit(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        if (!enabled) {
+            return;
+        }
+        
+        long deadline = System.currentTimeMillis() + drainTimeoutMs;
+        for (TopicPartition partition : partitions) {
+            AtomicInteger counter = outstanding.get(partition);
+            while (counter != null && counter.get() > 0 && System.currentTimeMillis() < deadline) {
+                try {
+                    TimeUnit.MILLISECONDS.sleep(20);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            if (counter != null && counter.get() > 0) {
+                log.warn("Key-ordered dispatch for {} revoked with {} events in flight; they will be replayed",
+                        partition, counter.get());
+            }
+            outstanding.remove(partition);
+        }
+    }
+    
+    @Override
+    public void onPartitionsLost(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        partitions.forEach(outstanding::remove);
+    }
+}
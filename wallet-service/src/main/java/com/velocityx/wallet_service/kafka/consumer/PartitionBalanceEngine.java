@@ -0,0 +1,292 @@
+package com.velocityx.wallet_service.kafka.consumer;
+
+import com.velocityx.wallet_service.dto.event.WalletEvent;
+import com.velocityx.wallet_service.enums.WalletEventType;
+import com.velocityx.wallet_service.kafka.producer.WalletRetryProducer;
+import com.velocityx.wallet_service.repository.WalletRepository;
+import com.velocityx.wallet_service.service.WalletEventProcessor;
+import com.velocityx.wallet_service.util.MinorUnits;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.listener.ConsumerAwareRebalanceListener;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PartitionBalanceEngine implements ConsumerAwareRebalanceListener {
+    
+    private final WalletRepository walletRepository;
+    private final WalletEventProcessor eventProcessor;
+    private final GroupCommitBuffer groupCommitBuffer;
+    private final WalletRetryProducer retryProducer;
+    
+    @Value("${wallet.engine.enabled:false}")
+    private boolean enabled;
+    
+    @Value("${wallet.engine.drain-timeout-ms:30000}")
+    private long drainTimeoutMs;
+    
+    @Value("${wallet.engine.max-cached-wallets:100000}")
+    private int maxCachedWallets;
+    
+    private final Map<TopicPartition, PartitionWorker> workers = new ConcurrentHashMap<>();
+    
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    public void submit(TopicPartition partition, WalletEvent event, Map<String, Object> payload,
+                       Acknowledgment acknowledgment) {
+        workers.computeIfAbsent(partition, PartitionWorker::new).submit(event, payload, acknowledgment);
+    }
+    
+    @Override
+    public void onPartitionsRevokedBeforeCommit(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        for (TopicPartition partition : partitions) {
+            PartitionWorker worker = workers.remove(partition);
+            if (worker != null) {
+                worker.drain();
+            }
+        }
+    }
+    
+    @Override
+    public void onPartitionsLost(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        for (TopicPartition partition : partitions) {
+            PartitionWorker worker = workers.remove(partition);
+            if (worker != null) {
+                worker.discard();
+            }
+        }
+    }
+    
+    @Override
+    public void onPartitionsAssigned(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        if (enabled) {
+            log.info("Balance engine assigned partitions {}; balances reload from the database on first use", partitions);
+        }
+    }
+    
+    // Single writer for one partition: wallets are keyed by user, so every debit of a wallet
+    // arrives on the same partition and its available balance can be checked in memory.
+    // Debits and holds the engine has checked skip the row lock: they are applied with the
+    // guarded single-statement update, which still refuses to overdraw if the check was stale.
+    // With group commit on, other events go through the buffer; a checked event first waits for
+    // the ones buffered before it, so the partition is applied and acknowledged in offset order.
+    private final class PartitionWorker {
+        
+        private final TopicPartition partition;
+        private final ExecutorService executor;
+        private final Map<String, Long> availableBalances;
+        private final Map<String, Long> pendingDeltas = new HashMap<>();
+        private final AtomicInteger outstanding = new AtomicInteger();
+        
+        // Filled on the group commit thread, applied on the worker thread
+        private final Queue<Runnable> completions = new ConcurrentLinkedQueue<>();
+        
+        // Events handed to the group commit and not yet committed; guarded by this worker
+        private int buffered;
+        
+        private PartitionWorker(TopicPartition partition) {
+            this.partition = partition;
+            this.executor = Executors.newSingleThreadExecutor(r -> new Thread(r, "balance-engine-" + partition));
+            // Least recently used wallets are dropped and reloaded from the database on their next debit
+            this.availableBalances = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                    return size() > maxCachedWallets;
+                }
+            };
+        }
+        
+        private void submit(WalletEvent event, Map<String, Object> payload, Acknowledgment acknowledgment) {
+            outstanding.incrementAndGet();
+            executor.execute(() -> handle(event, payload, acknowledgment));
+        }
+        
+        private void handle(WalletEvent event, Map<String, Object> payload, Acknowledgment acknowledgment) {
+            applyCompletions();
+            boolean checked = checksBalance(event);
+            
+            // The group commit locks every wallet of its batch, so only events the engine does not check go there
+            if (groupCommitBuffer.isEnabled() && !checked) {
+                buffer(event, payload, acknowledgment, reserve(event));
+                return;
+            }
+            
+            if (!awaitBuffered()) {
+                // Interrupted because the partition was lost; the event is not acknowledged and is redelivered
+                outstanding.decrementAndGet();
+                return;
+            }
+            
+            long delta = reserve(event);
+            Exception failure = null;
+            try {
+                if (checked) {
+                    eventProcessor.processReserved(event);
+                } else {
+                    eventProcessor.process(event);
+                }
+            } catch (Exception e) {
+                log.error("Error processing wallet event: txnId={}", event.getTransactionId(), e);
+                retryProducer.handleFailure(payload, e);
+                failure = e;
+            }
+            acknowledgment.acknowledge();
+            complete(event, delta, failure);
+        }
+        
+        private long reserve(WalletEvent event) {
+            long delta = availableDelta(event);
+            if (delta == 0L) {
+                return delta;
+            }
+            
+            Long available = availableBalances.get(event.getWalletId());
+            if (available == null || (delta < 0 && available + delta < 0)) {
+                available = reload(event.getWalletId());
+            }
+            
+            if (available == null || available + delta < 0) {
+                // Not enough funds even after picking up credits posted from other partitions;
+                // the guarded update rejects it and records the failure without locking the row.
+                return 0L;
+            }
+            
+            availableBalances.put(event.getWalletId(), MinorUnits.add(available, delta));
+            pendingDeltas.merge(event.getWalletId(), delta, MinorUnits::add);
+            return delta;
+        }
+        
+        private Long reload(String walletId) {
+            long pending = pendingDeltas.getOrDefault(walletId, 0L);
+            return walletRepository.findByWalletId(walletId)
+                    .map(wallet -> MinorUnits.add(wallet.getAvailableBalanceMinor(), pending))
+                    .orElse(null);
+        }
+        
+        private void complete(WalletEvent event, long delta, Exception failure) {
+            if (delta != 0L) {
+                pendingDeltas.computeIfPresent(event.getWalletId(), (walletId, pending) -> {
+                    long remaining = pending - delta;
+                    return remaining == 0L ? null : remaining;
+                });
+            }
+            if (failure != null) {
+                availableBalances.remove(event.getWalletId());
+            }
+            outstanding.decrementAndGet();
+        }
+        
+        private void buffer(WalletEvent event, Map<String, Object> payload, Acknowledgment acknowledgment, long delta) {
+            synchronized (this) {
+                buffered++;
+            }
+            groupCommitBuffer.submit(event, payload, acknowledgment, failure -> {
+                completions.add(() -> complete(event, delta, failure));
+                synchronized (this) {
+                    buffered--;
+                    notifyAll();
+                }
+                try {
+                    executor.execute(this::applyCompletions);
+                } catch (RejectedExecutionException e) {
+                    outstanding.decrementAndGet();
+                }
+            });
+        }
+        
+        // Until the buffered events have committed, a debit relying on one of their credits would be
+        // rejected by the guarded update, and its acknowledgment would commit past their offsets.
+        // Their completions are applied before returning, so reserve() does not count them twice.
+        private boolean awaitBuffered() {
+            synchronized (this) {
+                if (buffered == 0) {
+                    return true;
+                }
+            }
+            
+            groupCommitBuffer.flushNow();
+            try {
+                synchronized (this) {
+                    while (buffered > 0) {
+                        wait();
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            applyCompletions();
+            return true;
+        }
+        
+        private void applyCompletions() {
+            Runnable completion;
+            while ((completion = completions.poll()) != null) {
+                completion.run();
+            }
+        }
+        
+        private long availableDelta(WalletEvent event) {
+            return switch (event.getEventType()) {
+                case CREDIT_REQUESTED, RELEASE_REQUESTED -> MinorUnits.of(event.getAmount());
+                case DEBIT_REQUESTED, HOLD_REQUESTED, TRANSFER_REQUESTED -> MinorUnits.negate(MinorUnits.of(event.getAmount()));
+                default -> 0L;
+            };
+        }
+        
+        private boolean checksBalance(WalletEvent event) {
+            return event.getEventType() == WalletEventType.DEBIT_REQUESTED
+                    || event.getEventType() == WalletEventType.HOLD_REQUESTED;
+        }
+        
+        private void drain() {
+            long deadline = System.currentTimeMillis() + drainTimeoutMs;
+            while (outstanding.get() > 0 && System.currentTimeMillis() < deadline) {
+                groupCommitBuffer.flushNow();
+                try {
+                    TimeUnit.MILLISECONDS.sleep(50);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            if (outstanding.get() > 0) {
+                log.warn("Balance engine for {} revoked with {} events in flight; they will be replayed",
+                        partition, outstanding.get());
+            }
+            executor.execute(this::forget);
+            executor.shutdown();
+        }
+        
+        private void discard() {
+            executor.shutdownNow();
+        }
+        
+        private void forget() {
+            completions.clear();
+            availableBalances.clear();
+            pendingDeltas.clear();
+        }
+    }
+}
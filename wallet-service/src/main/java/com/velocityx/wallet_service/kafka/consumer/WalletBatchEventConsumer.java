@@ -0,0 +1,119 @@
+package com.velocityx.wallet_service.kafka.consumer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.velocityx.wallet_service.dto.event.WalletEvent;
+import com.velocityx.wallet_service.kafka.producer.WalletDlqProducer;
+import com.velocityx.wallet_service.kafka.producer.WalletRetryProducer;
+import com.velocityx.wallet_service.metrics.EventStage;
+import com.velocityx.wallet_service.metrics.WalletMetrics;
+import com.velocityx.wallet_service.service.WalletEventProcessor;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.FlushModeType;
+import jakarta.persistence.PersistenceContext;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class WalletBatchEventConsumer {
+    
+    private final WalletEventProcessor eventProcessor;
+    private final WalletDlqProducer dlqProducer;
+    private final WalletRetryProducer retryProducer;
+    private final TransactionTemplate transactionTemplate;
+    private final WalletMetrics walletMetrics;
+    private final ObjectMapper objectMapper;
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    // Only one of the record and batch listeners starts, depending on wallet.consumer.batch.enabled
+    @KafkaListener(
+            id = "walletBatchEventConsumer",
+            topics = {"${kafka.topics.wallet-events}"},
+            groupId = "${spring.kafka.consumer.group-id}",
+            containerFactory = "batchKafkaListenerContainerFactory",
+            autoStartup = "${wallet.consumer.batch.enabled:false}"
+    )
+    public void consumeWalletEvents(List<ConsumerRecord<String, Object>> records, Acknowledgment acknowledgment) {
+        List<WalletEvent> events = new ArrayList<>(records.size());
+        Map<WalletEvent, Map<String, Object>> payloads = new IdentityHashMap<>();
+        
+        for (ConsumerRecord<String, Object> record : records) {
+            walletMetrics.recordSinceEpochMillis(EventStage.PUBLISH_TO_CONSUME, record.timestamp());
+            Map<String, Object> payload = payloadOf(record);
+            try {
+                WalletEvent event = objectMapper.convertValue(payload, WalletEvent.class);
+                events.add(event);
+                payloads.put(event, payload);
+            } catch (Exception e) {
+                log.error("Unreadable wallet event: key={}, offset={}", record.key(), record.offset(), e);
+                dlqProducer.send(payload, e);
+            }
+        }
+        
+        if (!events.isEmpty()) {
+            process(events, payloads);
+        }
+        acknowledgment.acknowledge();
+    }
+    
+    private void process(List<WalletEvent> events, Map<WalletEvent, Map<String, Object>> payloads) {
+        Map<WalletEvent, Exception> failures;
+        long[] appliedAt = new long[1];
+        try {
+            failures = transactionTemplate.execute(status -> {
+                entityManager.setFlushMode(FlushModeType.COMMIT);
+                Map<WalletEvent, Exception> applied = eventProcessor.applyAll(events);
+                appliedAt[0] = System.nanoTime();
+                return applied;
+            });
+        } catch (Exception e) {
+            // The batch could not commit as a whole; replay each event in its own transaction
+            // so a single poison record only costs itself.
+            log.warn("Batch of {} wallet events failed to commit, retrying one by one", events.size(), e);
+            events.forEach(event -> processIndividually(event, payloads.get(event)));
+            return;
+        }
+        walletMetrics.recordSince(EventStage.COMMIT, appliedAt[0]);
+        events.stream()
+                .filter(event -> !failures.containsKey(event))
+                .forEach(event -> walletMetrics.recordSince(EventStage.END_TO_END, event.getTimestamp()));
+        
+        failures.forEach((event, failure) -> {
+            log.error("Error processing wallet event: txnId={}", event.getTransactionId(), failure);
+            retryProducer.handleFailure(payloads.get(event), failure);
+        });
+        
+        log.info("Processed batch of {} wallet events ({} failed)", events.size(), failures.size());
+    }
+    
+    private void processIndividually(WalletEvent event, Map<String, Object> payload) {
+        try {
+            eventProcessor.process(event);
+        } catch (Exception e) {
+            log.error("Error processing wallet event: txnId={}", event.getTransactionId(), e);
+            retryProducer.handleFailure(payload, e);
+        }
+    }
+    
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> payloadOf(ConsumerRecord<String, Object> record) {
+        if (record.value() instanceof Map<?, ?> value) {
+            return (Map<String, Object>) value;
+        }
+        return new HashMap<>();
+    }
+}
@@ -0,0 +1,137 @@
+package com.velocityx.wallet_service.kafka.consumer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.velocityx.wallet_service.dto.event.WalletEvent;
+import com.velocityx.wallet_service.kafka.producer.WalletDlqProducer;
+import com.velocityx.wallet_service.kafka.producer.WalletRetryProducer;
+import com.velocityx.wallet_service.service.WalletEventProcessor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.listener.AcknowledgingMessageListener;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Replays events parked on the retry tiers. Each tier has its own listener container, in a
+ * consumer group apart from the main topics, with one consumer per partition. A tier has a single
+ * delay, so records on a partition come due in offset order: a record that is not yet due is
+ * nacked, which pauses its consumer, and with it only that partition, until then instead of
+ * blocking the thread or re-polling in a loop. The other partitions and tiers keep moving.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class WalletRetryConsumer implements AcknowledgingMessageListener<String, Object>, SmartLifecycle {
+    
+    private final WalletEventProcessor eventProcessor;
+    private final WalletRetryProducer retryProducer;
+    private final WalletDlqProducer dlqProducer;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final ConcurrentKafkaListenerContainerFactory<String, Object> retryKafkaListenerContainerFactory;
+    
+    @Value("${wallet.retry.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${wallet.retry.group-id:wallet-service-retry}")
+    private String groupId;
+    
+    // Stays well below max.poll.interval.ms; a longer wait is simply nacked again
+    @Value("${wallet.retry.max-pause-ms:60000}")
+    private long maxPauseMs;
+    
+    private final List<ConcurrentMessageListenerContainer<String, Object>> containers = new ArrayList<>();
+    
+    // Tagged by tier topic, registered once the tiers are known
+    private volatile Map<String, Counter> succeededCounters = Map.of();
+    
+    private volatile boolean running;
+    
+    @Override
+    public synchronized void start() {
+        succeededCounters = retryProducer.tierTopics().stream()
+                .collect(Collectors.toUnmodifiableMap(Function.identity(),
+                        topic -> Counter.builder("wallet.retry.succeeded").tag("topic", topic).register(meterRegistry)));
+        for (String topic : retryProducer.tierTopics()) {
+            ConcurrentMessageListenerContainer<String, Object> container =
+                    retryKafkaListenerContainerFactory.createContainer(topic);
+            container.getContainerProperties().setGroupId(groupId);
+            container.getContainerProperties().setClientId(topic);
+            container.setBeanName("walletRetryContainer-" + topic);
+            container.setupMessageListener(this);
+            container.start();
+            containers.add(container);
+        }
+        running = true;
+    }
+    
+    @Override
+    public synchronized void stop() {
+        containers.forEach(ConcurrentMessageListenerContainer::stop);
+        containers.clear();
+        running = false;
+    }
+    
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+    
+    @Override
+    public boolean isAutoStartup() {
+        return enabled;
+    }
+    
+    @Override
+    @SuppressWarnings("unchecked")
+    public void onMessage(ConsumerRecord<String, Object> record, Acknowledgment acknowledgment) {
+        String topic = record.topic();
+        if (!(record.value() instanceof Map<?, ?> value)) {
+            log.error("Unexpected retry record on {}: {}", topic, record.value());
+            acknowledgment.acknowledge();
+            return;
+        }
+        Map<String, Object> payload = (Map<String, Object>) value;
+        
+        long remaining = WalletRetryProducer.remainingDelayMs(payload);
+        if (remaining > 0) {
+            acknowledgment.nack(Duration.ofMillis(Math.min(remaining, maxPauseMs)));
+            return;
+        }
+        
+        WalletEvent event;
+        try {
+            event = objectMapper.convertValue(payload, WalletEvent.class);
+        } catch (Exception e) {
+            log.error("Unreadable wallet event on {}", topic, e);
+            dlqProducer.send(payload, e);
+            acknowledgment.acknowledge();
+            return;
+        }
+        
+        try {
+            eventProcessor.process(event);
+            succeededCounters.get(topic).increment();
+            log.info("Retried event processed successfully: txnId={}, attempt={}",
+                    event.getTransactionId(), payload.get(WalletRetryProducer.RETRY_ATTEMPT));
+        } catch (Exception e) {
+            log.error("Error retrying wallet event: txnId={}", event.getTransactionId(), e);
+            retryProducer.handleFailure(payload, e);
+        }
+        acknowledgment.acknowledge();
+    }
+}
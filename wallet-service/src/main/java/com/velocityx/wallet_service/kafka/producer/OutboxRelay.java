@@ -0,0 +1,120 @@
+package com.velocityx.wallet_service.kafka.producer;
+
+import com.velocityx.wallet_service.entity.OutboxEvent;
+import com.velocityx.wallet_service.metrics.EventStage;
+import com.velocityx.wallet_service.metrics.WalletMetrics;
+import com.velocityx.wallet_service.repository.OutboxEventRepository;
+import com.velocityx.wallet_service.service.OutboxService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class OutboxRelay {
+    
+    // Offset for the shard advisory locks so they do not collide with other pg_advisory users
+    private static final long SHARD_LOCK_BASE = 0x5741_4C00_0000L;
+    
+    private final OutboxEventRepository outboxEventRepository;
+    private final OutboxService outboxService;
+    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final WalletMetrics walletMetrics;
+    
+    @Value("${wallet.outbox.relay-batch-size:500}")
+    private int batchSize;
+    
+    @Value("${wallet.outbox.send-timeout-ms:30000}")
+    private long sendTimeoutMs;
+    
+    @Value("${wallet.outbox.relay-interval-ms:200}")
+    private long relayIntervalMs;
+    
+    private ScheduledExecutorService relayExecutor;
+    
+    // The relay gets its own thread so publishing never waits behind the jobs on the shared scheduler
+    @PostConstruct
+    public void start() {
+        if (!outboxService.isEnabled()) {
+            return;
+        }
+        
+        relayExecutor = Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "wallet-outbox-relay"));
+        relayExecutor.scheduleWithFixedDelay(this::relay, relayIntervalMs, relayIntervalMs, TimeUnit.MILLISECONDS);
+    }
+    
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (relayExecutor == null) {
+            return;
+        }
+        
+        relayExecutor.shutdown();
+        relayExecutor.awaitTermination(sendTimeoutMs, TimeUnit.MILLISECONDS);
+    }
+    
+    public void relay() {
+        if (!outboxService.isEnabled()) {
+            return;
+        }
+        
+        for (int shard = 0; shard < outboxService.getShards(); shard++) {
+            try {
+                int relayed;
+                do {
+                    relayed = relayShard(shard);
+                } while (relayed >= batchSize);
+            } catch (Exception e) {
+                log.error("Outbox relay failed for shard {}", shard, e);
+            }
+        }
+    }
+    
+    // Rows stay locked until Kafka has acknowledged the whole batch; a failed send rolls back
+    // and the rows are picked up again on the next run.
+    private int relayShard(int shard) {
+        Integer relayed = transactionTemplate.execute(status -> {
+            // One relay per shard at a time keeps per-key order; other instances move on to free shards
+            if (!outboxEventRepository.tryLockShard(SHARD_LOCK_BASE + shard)) {
+                return 0;
+            }
+            
+            List<OutboxEvent> batch = outboxEventRepository.claimBatch(shard, batchSize);
+            if (batch.isEmpty()) {
+                return 0;
+            }
+            
+            CompletableFuture<?>[] sends = batch.stream()
+                    .map(event -> kafkaTemplate.send(event.getTopic(), event.getEventKey(), event.getPayload()))
+                    .toArray(CompletableFuture[]::new);
+            
+            try {
+                CompletableFuture.allOf(sends).get(sendTimeoutMs, TimeUnit.MILLISECONDS);
+            } catch (Exception e) {
+                throw new IllegalStateException("Failed to publish outbox batch for shard " + shard, e);
+            }
+            
+            batch.forEach(event -> walletMetrics.recordSince(EventStage.ACCEPT_TO_PUBLISH, event.getCreatedAt()));
+            outboxEventRepository.deleteAllByIdInBatch(batch.stream().map(OutboxEvent::getId).toList());
+            return batch.size();
+        });
+        
+        if (relayed != null && relayed > 0) {
+            log.debug("Relayed {} outbox events from shard {}", relayed, shard);
+        }
+        return relayed == null ? 0 : relayed;
+    }
+}
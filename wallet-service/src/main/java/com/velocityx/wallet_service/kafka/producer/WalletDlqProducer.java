@@ -0,0 +1,36 @@
+package com.velocityx.wallet_service.kafka.producer;
+
+import com.velocityx.wallet_service.metrics.WalletMetric;
+import com.velocityx.wallet_service.metrics.WalletMetrics;
+import com.velocityx.wallet_service.util.FailureClassifier;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class WalletDlqProducer {
+    
+    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final WalletMetrics walletMetrics;
+    
+    @Value("${kafka.topics.wallet-dlq}")
+    private String dlqTopic;
+    
+    public void send(Map<String, Object> payload, Exception failure) {
+        payload.put("errorClass", FailureClassifier.errorClass(failure));
+        send(payload, failure.getMessage());
+    }
+    
+    public void send(Map<String, Object> payload, String errorMessage) {
+        payload.put("errorMessage", errorMessage);
+        kafkaTemplate.send(dlqTopic, payload);
+        walletMetrics.increment(WalletMetric.DLQ_SIZE);
+        log.warn("Sent wallet event to DLQ: txnId={}, error={}", payload.get("transactionId"), errorMessage);
+    }
+}
@@ -0,0 +1,117 @@
+package com.velocityx.wallet_service.kafka.producer;
+
+import com.velocityx.wallet_service.metrics.WalletMetric;
+import com.velocityx.wallet_service.metrics.WalletMetrics;
+import com.velocityx.wallet_service.util.FailureClassifier;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Routes failed wallet events. Transient failures are parked on one of a few fixed-delay retry
+ * topics, picked by attempt number, so the main partitions keep moving while a locked or
+ * overloaded wallet recovers; everything else, and events out of attempts, goes to the DLQ.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class WalletRetryProducer {
+    
+    public static final String RETRY_ATTEMPT = "retryAttempt";
+    public static final String RETRY_DUE_AT = "retryDueAt";
+    
+    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final WalletDlqProducer dlqProducer;
+    private final WalletMetrics walletMetrics;
+    private final MeterRegistry meterRegistry;
+    
+    @Value("${kafka.topics.wallet-retries}")
+    private String retryTopicPrefix;
+    
+    @Value("${wallet.retry.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${wallet.retry.max-attempts:5}")
+    private int maxAttempts;
+    
+    @Value("${wallet.retry.initial-delay-seconds:5}")
+    private long initialDelaySeconds;
+    
+    @Value("${wallet.retry.max-delay-seconds:3600}")
+    private long maxDelaySeconds;
+    
+    @Value("${wallet.retry.tier-delays-seconds:5,60,600}")
+    private long[] tierDelaysSeconds;
+    
+    private List<Long> tiers;
+    
+    // Tagged by tier topic, which comes from configuration, so registered here rather than in WalletMetric
+    private Map<String, Counter> scheduledCounters;
+    
+    @PostConstruct
+    public void init() {
+        tiers = Arrays.stream(tierDelaysSeconds)
+                .map(delay -> Math.min(Math.max(delay, initialDelaySeconds), maxDelaySeconds))
+                .distinct()
+                .sorted()
+                .boxed()
+                .toList();
+        scheduledCounters = tierTopics().stream().collect(Collectors.toMap(Function.identity(),
+                topic -> Counter.builder("wallet.retry.scheduled").tag("topic", topic).register(meterRegistry)));
+        log.info("Wallet retry tiers: {}", tierTopics());
+    }
+    
+    public List<String> tierTopics() {
+        return tiers.stream().map(this::topicFor).toList();
+    }
+    
+    public void handleFailure(Map<String, Object> payload, Exception failure) {
+        int attempt = attemptOf(payload) + 1;
+        if (!enabled || !FailureClassifier.isTransient(failure) || attempt > maxAttempts) {
+            if (enabled && attempt > maxAttempts) {
+                walletMetrics.increment(WalletMetric.RETRY_EXHAUSTED);
+            }
+            dlqProducer.send(payload, failure);
+            return;
+        }
+        
+        long delaySeconds = tiers.get(Math.min(attempt, tiers.size()) - 1);
+        String topic = topicFor(delaySeconds);
+        payload.put(RETRY_ATTEMPT, attempt);
+        payload.put(RETRY_DUE_AT, System.currentTimeMillis() + delaySeconds * 1000);
+        payload.put("errorMessage", failure.getMessage());
+        
+        Object key = payload.get("userId");
+        kafkaTemplate.send(topic, key == null ? null : key.toString(), payload);
+        scheduledCounters.get(topic).increment();
+        log.warn("Scheduled wallet event retry: txnId={}, attempt={}, topic={}, error={}",
+                payload.get("transactionId"), attempt, topic, failure.getMessage());
+    }
+    
+    // Milliseconds until a retried event may run; zero for events that are due or never retried
+    public static long remainingDelayMs(Map<String, Object> payload) {
+        if (payload.get(RETRY_DUE_AT) instanceof Number dueAt) {
+            return Math.max(0, dueAt.longValue() - System.currentTimeMillis());
+        }
+        return 0;
+    }
+    
+    private static int attemptOf(Map<String, Object> payload) {
+        return payload.get(RETRY_ATTEMPT) instanceof Number attempt ? attempt.intValue() : 0;
+    }
+    
+    private String topicFor(long delaySeconds) {
+        return retryTopicPrefix + "." + delaySeconds + "s";
+    }
+}
@@ -0,0 +1,17 @@
+package com.velocityx.wallet_service.metrics;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Balance updates that run in either the locking or the guarded mode, timed per mode so the two
+ * can be compared on live traffic.
+ */
+@Getter
+@RequiredArgsConstructor
+public enum BalanceUpdate {
+    DEBIT("debit"),
+    HOLD("hold");
+    
+    private final String tag;
+}
@@ -0,0 +1,28 @@
+package com.velocityx.wallet_service.metrics;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Where an asynchronous wallet operation spends its time, from the API accepting it to the
+ * consumer committing it. The first two stages and the end-to-end figure compare wall clocks of
+ * different hosts and are only as accurate as their clock sync.
+ */
+@Getter
+@RequiredArgsConstructor
+public enum EventStage {
+    // Request accepted (event or outbox row created) until Kafka acknowledged the send
+    ACCEPT_TO_PUBLISH("accept_to_publish"),
+    // Kafka record timestamp until the consumer received it
+    PUBLISH_TO_CONSUME("publish_to_consume"),
+    // Waiting for a wallet or contra stripe row lock
+    LOCK_WAIT("lock_wait"),
+    // Writing ledger entries and balances for one transaction
+    LEDGER_WRITE("ledger_write"),
+    // Committing the consumer's database transaction
+    COMMIT("commit"),
+    // Request accepted until the consumer committed the outcome
+    END_TO_END("end_to_end");
+    
+    private final String tag;
+}
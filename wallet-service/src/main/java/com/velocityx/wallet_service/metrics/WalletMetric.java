@@ -0,0 +1,53 @@
+package com.velocityx.wallet_service.metrics;
+
+import lombok.Getter;
+
+/**
+ * Counters on the request and event paths and the background jobs. Each is registered once by
+ * {@link WalletMetrics}, so incrementing one is an array lookup rather than a registry lookup.
+ */
+@Getter
+public enum WalletMetric {
+    WALLET_CREATED("wallet.created"),
+    CREDIT_REQUESTED("wallet.credit.requested"),
+    CREDIT_SYNC("wallet.credit.sync"),
+    CREDIT_NETTED("wallet.credit.netted"),
+    CREDIT_COMPLETED("wallet.credit.completed"),
+    CREDIT_FAILED("wallet.credit.failed"),
+    DEBIT_REQUESTED("wallet.debit.requested"),
+    DEBIT_SYNC("wallet.debit.sync"),
+    DEBIT_COMPLETED("wallet.debit.completed"),
+    DEBIT_FAILED("wallet.debit.failed"),
+    HOLD_REQUESTED("wallet.hold.requested"),
+    HOLD_COMPLETED("wallet.hold.completed"),
+    HOLD_FAILED("wallet.hold.failed"),
+    CAPTURE_REQUESTED("wallet.capture.requested"),
+    CAPTURE_COMPLETED("wallet.capture.completed"),
+    CAPTURE_FAILED("wallet.capture.failed"),
+    RELEASE_REQUESTED("wallet.release.requested"),
+    RELEASE_COMPLETED("wallet.release.completed"),
+    RELEASE_FAILED("wallet.release.failed"),
+    TRANSFER_REQUESTED("wallet.transfer.requested"),
+    TRANSFER_COMPLETED("wallet.transfer.completed"),
+    TRANSFER_FAILED("wallet.transfer.failed"),
+    TRANSFER_LIMIT_REJECTED("wallet.transfer.limit.rejected"),
+    TRANSFER_LIMIT_DEGRADED("wallet.transfer.limit.degraded"),
+    SYNC_FALLBACK("wallet.sync.fallback"),
+    EVENT_CONFLICT_RETRIED("wallet.event.conflict.retried"),
+    DLQ_SIZE("wallet.dlq.size"),
+    POSTING_FEE_POSTED("wallet.posting.posted", "type", "FEE"),
+    POSTING_INTEREST_POSTED("wallet.posting.posted", "type", "INTEREST"),
+    POSTING_THROTTLED("wallet.posting.throttled"),
+    RETRY_EXHAUSTED("wallet.retry.exhausted"),
+    NETTING_APPLIED("wallet.netting.applied"),
+    RECONCILIATION_DRIFTS("wallet.reconciliation.drifts"),
+    DLQ_REPLAYED("wallet.dlq.replayed");
+    
+    private final String meterName;
+    private final String[] tags;
+    
+    WalletMetric(String meterName, String... tags) {
+        this.meterName = meterName;
+        this.tags = tags;
+    }
+}
@@ -0,0 +1,106 @@
+package com.velocityx.wallet_service.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Meter table for the hot paths, built once at startup and indexed by enum ordinal. Stage timers
+ * publish fixed-bucket histograms, which cost one bucket increment per sample and aggregate
+ * across instances, instead of client-side percentiles that have to be rotated and merged.
+ */
+@Component
+public class WalletMetrics {
+    
+    private final Counter[] counters = new Counter[WalletMetric.values().length];
+    private final Timer[] stageTimers = new Timer[EventStage.values().length];
+    private final Timer[] balanceUpdateTimers = new Timer[BalanceUpdate.values().length * 2];
+    
+    public WalletMetrics(MeterRegistry meterRegistry,
+                         @Value("${wallet.metrics.stage-histograms:true}") boolean histograms,
+                         @Value("${wallet.metrics.stage-max-expected-ms:60000}") long maxExpectedMs) {
+        for (WalletMetric metric : WalletMetric.values()) {
+            counters[metric.ordinal()] = Counter.builder(metric.getMeterName()).tags(metric.getTags()).register(meterRegistry);
+        }
+        for (EventStage stage : EventStage.values()) {
+            stageTimers[stage.ordinal()] = Timer.builder("wallet.event.stage")
+                    .tag("stage", stage.getTag())
+                    .publishPercentileHistogram(histograms)
+                    .minimumExpectedValue(Duration.ofMillis(1))
+                    .maximumExpectedValue(Duration.ofMillis(maxExpectedMs))
+                    .register(meterRegistry);
+        }
+        for (BalanceUpdate update : BalanceUpdate.values()) {
+            for (boolean guarded : new boolean[] {false, true}) {
+                balanceUpdateTimers[balanceUpdateIndex(update, guarded)] = Timer.builder("wallet.balance.update")
+                        .tag("operation", update.getTag())
+                        .tag("mode", guarded ? "guarded" : "locking")
+                        .register(meterRegistry);
+            }
+        }
+    }
+    
+    public void increment(WalletMetric metric) {
+        counters[metric.ordinal()].increment();
+    }
+    
+    public void increment(WalletMetric metric, double amount) {
+        counters[metric.ordinal()].increment(amount);
+    }
+    
+    public void record(EventStage stage, long nanos) {
+        stageTimers[stage.ordinal()].record(nanos, TimeUnit.NANOSECONDS);
+    }
+    
+    public void recordSince(EventStage stage, long startNanos) {
+        record(stage, System.nanoTime() - startNanos);
+    }
+    
+    public void recordBalanceUpdate(BalanceUpdate update, boolean guarded, long startNanos) {
+        balanceUpdateTimers[balanceUpdateIndex(update, guarded)]
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+    
+    // Wall-clock stages; a negative span from clock skew between hosts is dropped
+    public void recordSince(EventStage stage, Instant start) {
+        if (start != null) {
+            recordSinceEpochMillis(stage, start.toEpochMilli());
+        }
+    }
+    
+    public void recordSinceEpochMillis(EventStage stage, long startMillis) {
+        long elapsed = System.currentTimeMillis() - startMillis;
+        if (elapsed >= 0) {
+            stageTimers[stage.ordinal()].record(elapsed, TimeUnit.MILLISECONDS);
+        }
+    }
+    
+    public <T> T time(EventStage stage, Supplier<T> action) {
+        long start = System.nanoTime();
+        try {
+            return action.get();
+        } finally {
+            recordSince(stage, start);
+        }
+    }
+    
+    public void time(EventStage stage, Runnable action) {
+        long start = System.nanoTime();
+        try {
+            action.run();
+        } finally {
+            recordSince(stage, start);
+        }
+    }
+    
+    private static int balanceUpdateIndex(BalanceUpdate update, boolean guarded) {
+        return update.ordinal() * 2 + (guarded ? 1 : 0);
+    }
+}
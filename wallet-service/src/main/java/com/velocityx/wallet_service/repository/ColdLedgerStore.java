@@ -0,0 +1,384 @@
+package com.velocityx.wallet_service.repository;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Archived ledger partitions in a directory every replica mounts (a shared volume such as NFS or
+ * EFS). Each partition is one data file of independently gzip-compressed row groups, stored column
+ * by column and sorted by (wallet_id, id), plus an index file holding the wallet and created_at range
+ * of every group so reads only inflate matching groups. Indexes written by other replicas are picked
+ * up on the next read after the refresh interval.
+ */
+@Component
+@Slf4j
+public class ColdLedgerStore {
+    
+    private static final int MAGIC = 0x4C45_4447;
+    private static final int FORMAT_VERSION = 1;
+    private static final String DATA_SUFFIX = ".lcol";
+    private static final String INDEX_SUFFIX = ".lidx";
+    
+    @Value("${wallet.ledger.archive.directory:./data/ledger-archive}")
+    private Path directory;
+    
+    @Value("${wallet.ledger.archive.row-group-size:65536}")
+    private int rowGroupSize;
+    
+    @Value("${wallet.ledger.archive.refresh-interval-ms:60000}")
+    private long refreshIntervalMs;
+    
+    private final Map<String, List<RowGroup>> indexes = new ConcurrentHashMap<>();
+    
+    private volatile long refreshedAt;
+    
+    @PostConstruct
+    public void loadIndexes() throws IOException {
+        Files.createDirectories(directory);
+        refreshIndexes();
+        if (!indexes.isEmpty()) {
+            log.info("Loaded {} archived ledger partitions from {}", indexes.size(), directory);
+        }
+    }
+    
+    public boolean contains(String partition) {
+        refreshIfStale();
+        return indexes.containsKey(partition);
+    }
+    
+    /**
+     * Exclusive upper bound of the archived created_at values, or empty when nothing is archived.
+     * Entries at or after it are only in the live partitions.
+     */
+    public Optional<Instant> archivedUntil() {
+        refreshIfStale();
+        OptionalLong latest = indexes.values().stream()
+                .flatMap(List::stream)
+                .mapToLong(RowGroup::maxCreatedAt)
+                .max();
+        return latest.isPresent() ? Optional.of(fromMicros(latest.getAsLong() + 1)) : Optional.empty();
+    }
+    
+    public Writer open(String partition) throws IOException {
+        return new Writer(partition);
+    }
+    
+    public List<ArchivedEntry> read(String walletId, Instant from, Instant to) {
+        refreshIfStale();
+        long fromMicros = toMicros(from);
+        long toMicros = toMicros(to);
+        
+        List<ArchivedEntry> result = new ArrayList<>();
+        indexes.forEach((partition, groups) -> {
+            List<RowGroup> matching = groups.stream()
+                    .filter(group -> group.minWalletId().compareTo(walletId) <= 0
+                            && group.maxWalletId().compareTo(walletId) >= 0
+                            && group.maxCreatedAt() >= fromMicros && group.minCreatedAt() < toMicros)
+                    .toList();
+            if (matching.isEmpty()) {
+                return;
+            }
+            
+            try (RandomAccessFile data = new RandomAccessFile(directory.resolve(partition + DATA_SUFFIX).toFile(), "r")) {
+                for (RowGroup group : matching) {
+                    byte[] block = new byte[group.length()];
+                    data.seek(group.offset());
+                    data.readFully(block);
+                    for (ArchivedEntry entry : decode(block)) {
+                        if (entry.walletId().equals(walletId)
+                                && entry.createdAtMicros() >= fromMicros && entry.createdAtMicros() < toMicros) {
+                            result.add(entry);
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to read archived ledger partition " + partition, e);
+            }
+        });
+        return result;
+    }
+    
+    private void refreshIfStale() {
+        if (System.currentTimeMillis() - refreshedAt < refreshIntervalMs) {
+            return;
+        }
+        try {
+            refreshIndexes();
+        } catch (IOException | UncheckedIOException e) {
+            log.warn("Failed to refresh archived ledger indexes from {}", directory, e);
+        }
+    }
+    
+    // Index files only appear once their data file is complete, so any index found can be loaded
+    private synchronized void refreshIndexes() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(file -> file.getFileName().toString().endsWith(INDEX_SUFFIX)).forEach(file -> {
+                String partition = file.getFileName().toString().replace(INDEX_SUFFIX, "");
+                indexes.computeIfAbsent(partition, key -> readIndex(file));
+            });
+        }
+        refreshedAt = System.currentTimeMillis();
+    }
+    
+    private List<RowGroup> readIndex(Path file) {
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(file))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                throw new IOException("Unrecognised ledger archive index: " + file);
+            }
+            int count = in.readInt();
+            List<RowGroup> groups = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                groups.add(new RowGroup(in.readLong(), in.readInt(), in.readInt(), in.readUTF(), in.readUTF(),
+                        in.readLong(), in.readLong()));
+            }
+            return groups;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    private static byte[] encode(List<ArchivedEntry> rows) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(buffer))) {
+            out.writeInt(rows.size());
+            for (ArchivedEntry row : rows) {
+                out.writeLong(row.id());
+            }
+            for (ArchivedEntry row : rows) {
+                out.writeUTF(row.entryId());
+            }
+            for (ArchivedEntry row : rows) {
+                out.writeLong(row.transactionId());
+            }
+            // Rows are sorted by wallet, so the wallet column is stored as runs
+            int i = 0;
+            while (i < rows.size()) {
+                int run = 1;
+                while (i + run < rows.size() && rows.get(i + run).walletId().equals(rows.get(i).walletId())) {
+                    run++;
+                }
+                out.writeUTF(rows.get(i).walletId());
+                out.writeInt(run);
+                i += run;
+            }
+            for (ArchivedEntry row : rows) {
+                out.writeUTF(row.entryType());
+            }
+            for (ArchivedEntry row : rows) {
+                out.writeUTF(row.entrySide());
+            }
+            for (ArchivedEntry row : rows) {
+                out.writeLong(row.amount());
+            }
+            for (ArchivedEntry row : rows) {
+                out.writeLong(row.balanceBefore());
+            }
+            for (ArchivedEntry row : rows) {
+                out.writeLong(row.balanceAfter());
+            }
+            for (ArchivedEntry row : rows) {
+                out.writeBoolean(row.description() != null);
+                if (row.description() != null) {
+                    out.writeUTF(row.description());
+                }
+            }
+            for (ArchivedEntry row : rows) {
+                out.writeLong(row.createdAtMicros());
+            }
+        }
+        return buffer.toByteArray();
+    }
+    
+    private static List<ArchivedEntry> decode(byte[] block) throws IOException {
+        try (DataInputStream in = new DataInputStream(new GZIPInputStream(new ByteArrayInputStream(block)))) {
+            int rows = in.readInt();
+            long[] ids = new long[rows];
+            String[] entryIds = new String[rows];
+            long[] transactionIds = new long[rows];
+            String[] walletIds = new String[rows];
+            for (int i = 0; i < rows; i++) {
+                ids[i] = in.readLong();
+            }
+            for (int i = 0; i < rows; i++) {
+                entryIds[i] = in.readUTF();
+            }
+            for (int i = 0; i < rows; i++) {
+                transactionIds[i] = in.readLong();
+            }
+            int filled = 0;
+            while (filled < rows) {
+                String walletId = in.readUTF();
+                int run = in.readInt();
+                for (int i = 0; i < run; i++) {
+                    walletIds[filled++] = walletId;
+                }
+            }
+            String[] entryTypes = new String[rows];
+            String[] entrySides = new String[rows];
+            long[] amounts = new long[rows];
+            long[] balancesBefore = new long[rows];
+            long[] balancesAfter = new long[rows];
+            String[] descriptions = new String[rows];
+            long[] createdAt = new long[rows];
+            for (int i = 0; i < rows; i++) {
+                entryTypes[i] = in.readUTF();
+            }
+            for (int i = 0; i < rows; i++) {
+                entrySides[i] = in.readUTF();
+            }
+            for (int i = 0; i < rows; i++) {
+                amounts[i] = in.readLong();
+            }
+            for (int i = 0; i < rows; i++) {
+                balancesBefore[i] = in.readLong();
+            }
+            for (int i = 0; i < rows; i++) {
+                balancesAfter[i] = in.readLong();
+            }
+            for (int i = 0; i < rows; i++) {
+                descriptions[i] = in.readBoolean() ? in.readUTF() : null;
+            }
+            for (int i = 0; i < rows; i++) {
+                createdAt[i] = in.readLong();
+            }
+            
+            List<ArchivedEntry> entries = new ArrayList<>(rows);
+            for (int i = 0; i < rows; i++) {
+                entries.add(new ArchivedEntry(ids[i], entryIds[i], transactionIds[i], walletIds[i], entryTypes[i],
+                        entrySides[i], amounts[i], balancesBefore[i], balancesAfter[i], descriptions[i], createdAt[i]));
+            }
+            return entries;
+        }
+    }
+    
+    public static long toMicros(Instant instant) {
+        return ChronoUnit.MICROS.between(Instant.EPOCH, instant);
+    }
+    
+    public static Instant fromMicros(long micros) {
+        return Instant.EPOCH.plus(micros, ChronoUnit.MICROS);
+    }
+    
+    /**
+     * Streams one partition to a temporary file; nothing becomes visible to readers until
+     * {@link #commit()} has moved the files into place.
+     */
+    public final class Writer implements Closeable {
+        
+        private final String partition;
+        private final Path dataTmp;
+        private final OutputStream data;
+        private final List<RowGroup> groups = new ArrayList<>();
+        private final List<ArchivedEntry> pending = new ArrayList<>();
+        private long offset;
+        private long rows;
+        private boolean committed;
+        
+        private Writer(String partition) throws IOException {
+            this.partition = partition;
+            this.dataTmp = directory.resolve(partition + DATA_SUFFIX + ".tmp");
+            this.data = Files.newOutputStream(dataTmp);
+        }
+        
+        public void append(ArchivedEntry entry) throws IOException {
+            pending.add(entry);
+            if (pending.size() >= rowGroupSize) {
+                flushGroup();
+            }
+        }
+        
+        public long commit() throws IOException {
+            flushGroup();
+            data.close();
+            
+            Path indexTmp = directory.resolve(partition + INDEX_SUFFIX + ".tmp");
+            try (DataOutputStream index = new DataOutputStream(Files.newOutputStream(indexTmp))) {
+                index.writeInt(MAGIC);
+                index.writeInt(FORMAT_VERSION);
+                index.writeInt(groups.size());
+                for (RowGroup group : groups) {
+                    index.writeLong(group.offset());
+                    index.writeInt(group.length());
+                    index.writeInt(group.rows());
+                    index.writeUTF(group.minWalletId());
+                    index.writeUTF(group.maxWalletId());
+                    index.writeLong(group.minCreatedAt());
+                    index.writeLong(group.maxCreatedAt());
+                }
+            }
+            
+            // Data first: an index only ever points at a complete data file
+            Files.move(dataTmp, directory.resolve(partition + DATA_SUFFIX),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Files.move(indexTmp, directory.resolve(partition + INDEX_SUFFIX),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            indexes.put(partition, List.copyOf(groups));
+            committed = true;
+            return rows;
+        }
+        
+        private void flushGroup() throws IOException {
+            if (pending.isEmpty()) {
+                return;
+            }
+            
+            byte[] block = encode(pending);
+            long minCreatedAt = Long.MAX_VALUE;
+            long maxCreatedAt = Long.MIN_VALUE;
+            for (ArchivedEntry entry : pending) {
+                minCreatedAt = Math.min(minCreatedAt, entry.createdAtMicros());
+                maxCreatedAt = Math.max(maxCreatedAt, entry.createdAtMicros());
+            }
+            groups.add(new RowGroup(offset, block.length, pending.size(), pending.get(0).walletId(),
+                    pending.get(pending.size() - 1).walletId(), minCreatedAt, maxCreatedAt));
+            
+            data.write(block);
+            offset += block.length;
+            rows += pending.size();
+            pending.clear();
+        }
+        
+        @Override
+        public void close() throws IOException {
+            if (!committed) {
+                data.close();
+                Files.deleteIfExists(dataTmp);
+            }
+        }
+    }
+    
+    public record ArchivedEntry(long id, String entryId, long transactionId, String walletId, String entryType,
+                                String entrySide, long amount, long balanceBefore, long balanceAfter,
+                                String description, long createdAtMicros) {
+    }
+    
+    private record RowGroup(long offset, int length, int rows, String minWalletId, String maxWalletId,
+                            long minCreatedAt, long maxCreatedAt) {
+    }
+}
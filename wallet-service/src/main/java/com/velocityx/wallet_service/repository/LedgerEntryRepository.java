@@ -7,7 +7,7 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
 @Repository
-public interface LedgerEntryRepository extends JpaRepository<LedgerEntry, Long> {
+public interface LedgerEntryRepository extends JpaRepository<LedgerEntry, Long>, LedgerEntryRepositoryCustom {
     
     Page<LedgerEntry> findByWalletIdOrderByCreatedAtDesc(String walletId, Pageable pageable);
 }
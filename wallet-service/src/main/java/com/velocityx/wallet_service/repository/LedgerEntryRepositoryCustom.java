@@ -0,0 +1,16 @@
+package com.velocityx.wallet_service.repository;
+
+import com.velocityx.wallet_service.entity.LedgerEntry;
+
+import java.time.Instant;
+import java.util.List;
+
+public interface LedgerEntryRepositoryCustom {
+    
+    /**
+     * Entries of a wallet created in [from, to), newest first, read from the live partitions and
+     * the cold archive, with their transactions loaded. Archived entries are detached and must not
+     * be saved.
+     */
+    List<LedgerEntry> findByWalletIdAndCreatedAtRange(String walletId, Instant from, Instant to);
+}
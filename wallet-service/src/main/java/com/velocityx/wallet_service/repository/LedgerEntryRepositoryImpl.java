@@ -0,0 +1,81 @@
+package com.velocityx.wallet_service.repository;
+
+import com.velocityx.wallet_service.entity.LedgerEntry;
+import com.velocityx.wallet_service.entity.WalletTransaction;
+import com.velocityx.wallet_service.enums.LedgerEntryType;
+import com.velocityx.wallet_service.repository.ColdLedgerStore.ArchivedEntry;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.RequiredArgsConstructor;
+
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@RequiredArgsConstructor
+public class LedgerEntryRepositoryImpl implements LedgerEntryRepositoryCustom {
+    
+    private static final int TRANSACTION_BATCH_SIZE = 1000;
+    
+    private final ColdLedgerStore coldLedgerStore;
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    @Override
+    public List<LedgerEntry> findByWalletIdAndCreatedAtRange(String walletId, Instant from, Instant to) {
+        List<LedgerEntry> hot = entityManager.createQuery(
+                        "SELECT e FROM LedgerEntry e JOIN FETCH e.transaction WHERE e.walletId = :walletId " +
+                        "AND e.createdAt >= :from AND e.createdAt < :to", LedgerEntry.class)
+                .setParameter("walletId", walletId)
+                .setParameter("from", from)
+                .setParameter("to", to)
+                .getResultList();
+        
+        // A partition is briefly in both tiers while it is being archived
+        Map<Long, LedgerEntry> merged = new LinkedHashMap<>();
+        hot.forEach(entry -> merged.put(entry.getId(), entry));
+        List<ArchivedEntry> archived = coldLedgerStore.read(walletId, from, to);
+        Map<Long, WalletTransaction> transactions = findTransactions(archived);
+        for (ArchivedEntry entry : archived) {
+            merged.putIfAbsent(entry.id(), toEntry(entry, transactions.get(entry.transactionId())));
+        }
+        
+        return merged.values().stream()
+                .sorted(Comparator.comparing(LedgerEntry::getCreatedAt).thenComparing(LedgerEntry::getId).reversed())
+                .toList();
+    }
+    
+    // wallet_transactions is never archived; loading them up front keeps callers from touching one
+    // lazy reference per archived entry
+    private Map<Long, WalletTransaction> findTransactions(List<ArchivedEntry> archived) {
+        List<Long> ids = archived.stream().map(ArchivedEntry::transactionId).distinct().toList();
+        Map<Long, WalletTransaction> transactions = new HashMap<>();
+        for (int i = 0; i < ids.size(); i += TRANSACTION_BATCH_SIZE) {
+            entityManager.createQuery("SELECT t FROM WalletTransaction t WHERE t.id IN :ids", WalletTransaction.class)
+                    .setParameter("ids", ids.subList(i, Math.min(i + TRANSACTION_BATCH_SIZE, ids.size())))
+                    .getResultList()
+                    .forEach(transaction -> transactions.put(transaction.getId(), transaction));
+        }
+        return transactions;
+    }
+    
+    private LedgerEntry toEntry(ArchivedEntry archived, WalletTransaction transaction) {
+        return LedgerEntry.builder()
+                .id(archived.id())
+                .entryId(archived.entryId())
+                .transaction(transaction)
+                .walletId(archived.walletId())
+                .entryType(LedgerEntryType.valueOf(archived.entryType()))
+                .entrySide(archived.entrySide())
+                .amountMinor(archived.amount())
+                .balanceBeforeMinor(archived.balanceBefore())
+                .balanceAfterMinor(archived.balanceAfter())
+                .description(archived.description())
+                .createdAt(ColdLedgerStore.fromMicros(archived.createdAtMicros()))
+                .build();
+    }
+}
@@ -0,0 +1,20 @@
+package com.velocityx.wallet_service.repository;
+
+import com.velocityx.wallet_service.entity.OutboxEvent;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+    
+    @Query(value = "SELECT pg_try_advisory_xact_lock(:lockKey)", nativeQuery = true)
+    boolean tryLockShard(@Param("lockKey") long lockKey);
+    
+    @Query(value = "SELECT * FROM outbox_events WHERE shard = :shard ORDER BY id LIMIT :limit FOR UPDATE SKIP LOCKED",
+            nativeQuery = true)
+    List<OutboxEvent> claimBatch(@Param("shard") int shard, @Param("limit") int limit);
+}
@@ -0,0 +1,20 @@
+package com.velocityx.wallet_service.repository;
+
+import com.velocityx.wallet_service.entity.PendingCredit;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface PendingCreditRepository extends JpaRepository<PendingCredit, Long> {
+    
+    @Query("SELECT DISTINCT p.walletId FROM PendingCredit p")
+    List<String> findPendingWalletIds();
+    
+    @Query("SELECT p FROM PendingCredit p JOIN FETCH p.transaction WHERE p.walletId = :walletId ORDER BY p.id")
+    List<PendingCredit> findByWalletId(@Param("walletId") String walletId, Pageable pageable);
+}
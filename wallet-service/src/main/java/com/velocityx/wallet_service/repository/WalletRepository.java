@@ -8,6 +8,8 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import jakarta.persistence.LockModeType;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -19,14 +21,29 @@ public interface WalletRepository extends JpaRepository<Wallet, Long> {
     
     Optional<Wallet> findByUserIdAndCurrency(Long userId, String currency);
     
+    List<Wallet> findByUserIdIn(Collection<Long> userIds);
+    
     @Lock(LockModeType.PESSIMISTIC_WRITE)
     @Query("SELECT w FROM Wallet w WHERE w.walletId = :walletId")
     Optional<Wallet> findByWalletIdForUpdate(@Param("walletId") String walletId);
     
+    // Rows are locked in walletId order; callers pass user wallets and contra stripes in separate calls,
+    // user wallets first, which is the order every other path locks them in
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT w FROM Wallet w WHERE w.walletId IN :walletIds ORDER BY w.walletId")
+    List<Wallet> findByWalletIdInForUpdate(@Param("walletIds") Collection<String> walletIds);
+    
+    // User wallets of one id range for bulk postings; contra wallets have reserved user ids <= 0
+    @Query("SELECT w.walletId FROM Wallet w WHERE w.id BETWEEN :fromId AND :toId AND w.userId > 0 " +
+           "AND w.status = com.velocityx.wallet_service.enums.WalletStatus.ACTIVE ORDER BY w.walletId")
+    List<String> findActiveUserWalletIdsInRange(@Param("fromId") long fromId, @Param("toId") long toId);
+    
     @Lock(LockModeType.PESSIMISTIC_WRITE)
     @Query("SELECT w FROM Wallet w WHERE w.userId = :userId AND w.currency = :currency")
     Optional<Wallet> findByUserIdAndCurrencyForUpdate(@Param("userId") Long userId, @Param("currency") String currency);
     
+    boolean existsByWalletId(String walletId);
+    
     boolean existsByUserId(Long userId);
     
     boolean existsByUserIdAndCurrency(Long userId, String currency);
@@ -10,6 +10,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -18,8 +19,12 @@ public interface WalletTransactionRepository extends JpaRepository<WalletTransac
     
     Optional<WalletTransaction> findByTransactionId(String transactionId);
     
+    List<WalletTransaction> findByTransactionIdIn(Collection<String> transactionIds);
+    
     Optional<WalletTransaction> findByIdempotencyKey(String idempotencyKey);
     
+    List<WalletTransaction> findByIdempotencyKeyIn(Collection<String> idempotencyKeys);
+    
     boolean existsByIdempotencyKey(String idempotencyKey);
     
     Page<WalletTransaction> findByUserId(Long userId, Pageable pageable);
@@ -0,0 +1,236 @@
+package com.velocityx.wallet_service.service;
+
+import com.velocityx.wallet_service.dto.response.BalanceAsOfResponse;
+import com.velocityx.wallet_service.entity.LedgerEntry;
+import com.velocityx.wallet_service.entity.Wallet;
+import com.velocityx.wallet_service.enums.TransactionType;
+import com.velocityx.wallet_service.exception.BalanceHistoryUnavailableException;
+import com.velocityx.wallet_service.exception.WalletNotFoundException;
+import com.velocityx.wallet_service.repository.ColdLedgerStore;
+import com.velocityx.wallet_service.repository.LedgerEntryRepository;
+import com.velocityx.wallet_service.repository.WalletRepository;
+import com.velocityx.wallet_service.util.MinorUnits;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+/**
+ * Daily closing balances per wallet, so a historical balance costs one snapshot lookup plus at
+ * most the entries of the days since that snapshot, however old the wallet is. Balances follow
+ * the same rule as reconciliation: hold and release entries move available balance only.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class BalanceSnapshotService {
+    
+    private static final String NET_AMOUNT =
+            "COALESCE(SUM(CASE WHEN e.entry_side = 'CR' THEN e.amount ELSE -e.amount END) " +
+            "FILTER (WHERE t.transaction_type NOT IN ('HOLD', 'RELEASE')), 0)";
+    
+    private static final String ENTRIES = "FROM ledger_entries e JOIN wallet_transactions t ON t.id = e.transaction_id ";
+    
+    // Only wallets modified since the start of the day can have entries on it, found through
+    // idx_wallet_updated_at. Each closing balance is the previous snapshot plus the day's net; a
+    // wallet without an earlier snapshot is derived backwards from its live balance instead.
+    private static final String INSERT_DAY =
+            "INSERT INTO wallet_balance_snapshots (wallet_id, snapshot_date, balance, entries, created_at) " +
+            "SELECT w.wallet_id, ?, COALESCE(" +
+            "  (SELECT s.balance FROM wallet_balance_snapshots s WHERE s.wallet_id = w.wallet_id AND s.snapshot_date < ? " +
+            "   ORDER BY s.snapshot_date DESC LIMIT 1) + d.delta, " +
+            "  w.balance - (SELECT " + NET_AMOUNT + " " + ENTRIES + "WHERE e.wallet_id = w.wallet_id AND e.created_at >= ?)), " +
+            "  d.entries, ? " +
+            "FROM wallets w " +
+            "JOIN LATERAL (SELECT " + NET_AMOUNT + " AS delta, COUNT(*) AS entries " + ENTRIES +
+            "  WHERE e.wallet_id = w.wallet_id AND e.created_at >= ? AND e.created_at < ?) d ON d.entries > 0 " +
+            "WHERE w.updated_at >= ? " +
+            "ON CONFLICT (wallet_id, snapshot_date) DO NOTHING";
+    
+    private static final String SELECT_BEFORE =
+            "SELECT snapshot_date, balance FROM wallet_balance_snapshots WHERE wallet_id = ? AND snapshot_date < ? " +
+            "ORDER BY snapshot_date DESC LIMIT 1";
+    
+    private static final String SELECT_FROM =
+            "SELECT snapshot_date, balance FROM wallet_balance_snapshots WHERE wallet_id = ? AND snapshot_date >= ? " +
+            "ORDER BY snapshot_date LIMIT 1";
+    
+    private static final String SELECT_DELTA =
+            "SELECT " + NET_AMOUNT + " AS delta, COUNT(*) AS entries " + ENTRIES +
+            "WHERE e.wallet_id = ? AND e.created_at >= ? AND e.created_at < ?";
+    
+    private static final Instant END_OF_TIME = Instant.parse("9999-12-31T00:00:00Z");
+    
+    private static final RowMapper<Snapshot> SNAPSHOT_MAPPER = (rs, rowNum) -> new Snapshot(
+            rs.getDate("snapshot_date").toLocalDate(), MinorUnits.of(rs.getBigDecimal("balance")));
+    
+    private static final RowMapper<Delta> DELTA_MAPPER = (rs, rowNum) -> new Delta(
+            MinorUnits.of(rs.getBigDecimal("delta")), rs.getLong("entries"));
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private final WalletRepository walletRepository;
+    private final LedgerEntryRepository ledgerEntryRepository;
+    private final ColdLedgerStore coldLedgerStore;
+    
+    @Value("${wallet.snapshot.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${wallet.snapshot.max-catch-up-days:7}")
+    private int maxCatchUpDays;
+    
+    @Value("${wallet.snapshot.max-walk-back-days:31}")
+    private int maxWalkBackDays;
+    
+    // Runs a little after midnight so entries stamped just before it have committed
+    @Scheduled(cron = "${wallet.snapshot.cron:0 15 0 * * *}", zone = "UTC")
+    public void scheduledSnapshot() {
+        if (!enabled) {
+            return;
+        }
+        
+        LocalDate yesterday = LocalDate.now(ZoneOffset.UTC).minusDays(1);
+        Date last = jdbcTemplate.queryForObject("SELECT MAX(snapshot_date) FROM wallet_balance_snapshots", Date.class);
+        LocalDate from = last == null ? yesterday : last.toLocalDate().plusDays(1);
+        if (from.isBefore(yesterday.minusDays(maxCatchUpDays - 1L))) {
+            from = yesterday.minusDays(maxCatchUpDays - 1L);
+        }
+        
+        for (LocalDate day = from; !day.isAfter(yesterday); day = day.plusDays(1)) {
+            try {
+                snapshotDay(day);
+            } catch (Exception e) {
+                log.error("Balance snapshot failed for {}", day, e);
+                return;
+            }
+        }
+    }
+    
+    public int snapshotDay(LocalDate day) {
+        Timestamp start = Timestamp.from(startOf(day));
+        Timestamp end = Timestamp.from(startOf(day.plusDays(1)));
+        Date date = Date.valueOf(day);
+        
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        Integer written = template.execute(status -> jdbcTemplate.update(INSERT_DAY,
+                date, date, end, Timestamp.from(Instant.now()), start, end, start));
+        log.info("Wrote balance snapshots: day={}, wallets={}", day, written);
+        return written == null ? 0 : written;
+    }
+    
+    // Balance from entries created strictly before asOf. One REPEATABLE READ snapshot, so a wallet
+    // derived from its live balance is consistent with the entries subtracted from it.
+    public BalanceAsOfResponse getBalanceAsOf(String walletId, Instant asOf) {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setReadOnly(true);
+        template.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        
+        return template.execute(status -> {
+            Wallet wallet = walletRepository.findByWalletId(walletId)
+                    .orElseThrow(() -> new WalletNotFoundException("Wallet not found: " + walletId));
+            LocalDate day = asOf.atOffset(ZoneOffset.UTC).toLocalDate();
+            
+            // Forward from the last closing balance before asOf's day
+            List<Snapshot> before = jdbcTemplate.query(SELECT_BEFORE, SNAPSHOT_MAPPER, walletId, Date.valueOf(day));
+            if (!before.isEmpty()) {
+                Snapshot snapshot = before.get(0);
+                Delta delta = delta(walletId, startOf(snapshot.date().plusDays(1)), asOf);
+                return response(wallet, asOf, MinorUnits.add(snapshot.balance(), delta.amount()),
+                        snapshot.date(), delta.entries());
+            }
+            
+            // Otherwise backwards from the first later closing balance, or from the live balance
+            List<Snapshot> after = jdbcTemplate.query(SELECT_FROM, SNAPSHOT_MAPPER, walletId, Date.valueOf(day));
+            if (!after.isEmpty()) {
+                Snapshot snapshot = after.get(0);
+                requireWalkBack(walletId, asOf, startOf(snapshot.date().plusDays(1)));
+                Delta delta = delta(walletId, asOf, startOf(snapshot.date().plusDays(1)));
+                return response(wallet, asOf, MinorUnits.subtract(snapshot.balance(), delta.amount()),
+                        snapshot.date(), delta.entries());
+            }
+            
+            requireWalkBack(walletId, asOf, Instant.now());
+            Delta delta = delta(walletId, asOf, END_OF_TIME);
+            return response(wallet, asOf, MinorUnits.subtract(wallet.getBalanceMinor(), delta.amount()),
+                    null, delta.entries());
+        });
+    }
+    
+    // Walking back replays every entry between asOf and the balance it starts from, so the distance
+    // is capped. It also never reaches into the archive: a wallet whose first snapshot is newer than
+    // the archive boundary has no closing balance to start from for the archived days.
+    private void requireWalkBack(String walletId, Instant asOf, Instant start) {
+        if (asOf.isBefore(start.minus(maxWalkBackDays, ChronoUnit.DAYS))) {
+            throw new BalanceHistoryUnavailableException("Balance of " + walletId + " as of " + asOf
+                    + " is more than " + maxWalkBackDays + " days before its nearest snapshot");
+        }
+        coldLedgerStore.archivedUntil().filter(asOf::isBefore).ifPresent(archivedUntil -> {
+            throw new BalanceHistoryUnavailableException("Balance of " + walletId + " as of " + asOf
+                    + " needs archived entries and no snapshot before " + archivedUntil + " covers it");
+        });
+    }
+    
+    // The part of the range older than the archive boundary is no longer in Postgres and is summed
+    // from the merged entry reads instead
+    private Delta delta(String walletId, Instant from, Instant to) {
+        if (!from.isBefore(to)) {
+            return new Delta(0L, 0L);
+        }
+        Instant archivedUntil = coldLedgerStore.archivedUntil().orElse(from);
+        if (!from.isBefore(archivedUntil)) {
+            return jdbcTemplate.queryForObject(SELECT_DELTA, DELTA_MAPPER, walletId,
+                    Timestamp.from(from), Timestamp.from(to));
+        }
+        
+        Instant split = archivedUntil.isBefore(to) ? archivedUntil : to;
+        long amount = 0L;
+        long entries = 0L;
+        for (LedgerEntry entry : ledgerEntryRepository.findByWalletIdAndCreatedAtRange(walletId, from, split)) {
+            entries++;
+            TransactionType type = entry.getTransaction().getTransactionType();
+            if (type == TransactionType.HOLD || type == TransactionType.RELEASE) {
+                continue;
+            }
+            long minor = MinorUnits.of(entry.getAmount());
+            amount = "CR".equals(entry.getEntrySide())
+                    ? MinorUnits.add(amount, minor) : MinorUnits.subtract(amount, minor);
+        }
+        Delta live = delta(walletId, split, to);
+        return new Delta(MinorUnits.add(amount, live.amount()), entries + live.entries());
+    }
+    
+    private BalanceAsOfResponse response(Wallet wallet, Instant asOf, long balance, LocalDate snapshotDate, long entries) {
+        return BalanceAsOfResponse.builder()
+                .walletId(wallet.getWalletId())
+                .currency(wallet.getCurrency())
+                .asOf(asOf)
+                .balance(MinorUnits.toDecimal(balance))
+                .snapshotDate(snapshotDate)
+                .entriesReplayed(entries)
+                .build();
+    }
+    
+    private static Instant startOf(LocalDate day) {
+        return day.atStartOfDay(ZoneOffset.UTC).toInstant();
+    }
+    
+    private record Snapshot(LocalDate date, long balance) {
+    }
+    
+    private record Delta(long amount, long entries) {
+    }
+}
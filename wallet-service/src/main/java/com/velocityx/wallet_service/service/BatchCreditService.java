@@ -0,0 +1,391 @@
+package com.velocityx.wallet_service.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.velocityx.wallet_service.dto.event.WalletEvent;
+import com.velocityx.wallet_service.dto.request.CreditRequest;
+import com.velocityx.wallet_service.dto.response.BatchCreditItemResponse;
+import com.velocityx.wallet_service.dto.response.BatchCreditResponse;
+import com.velocityx.wallet_service.entity.Wallet;
+import com.velocityx.wallet_service.entity.WalletTransaction;
+import com.velocityx.wallet_service.enums.BatchItemStatus;
+import com.velocityx.wallet_service.enums.TransactionStatus;
+import com.velocityx.wallet_service.enums.TransactionType;
+import com.velocityx.wallet_service.enums.WalletEventType;
+import com.velocityx.wallet_service.enums.WalletStatus;
+import com.velocityx.wallet_service.metrics.EventStage;
+import com.velocityx.wallet_service.metrics.WalletMetric;
+import com.velocityx.wallet_service.metrics.WalletMetrics;
+import com.velocityx.wallet_service.repository.WalletRepository;
+import com.velocityx.wallet_service.repository.WalletTransactionRepository;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Bulk credits for payroll and cashback payouts. Requests are processed in chunks: one query
+ * dedupes the chunk's idempotency keys, wallets and transactions are written with JDBC batches and
+ * the chunk's events are published together once it has committed.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class BatchCreditService {
+    
+    private static final String INSERT_WALLET =
+            "INSERT INTO wallets (wallet_id, user_id, currency, balance, available_balance, held_balance, status, " +
+            "created_at, updated_at, version) VALUES (?, ?, ?, 0, 0, 0, ?, ?, ?, 0) " +
+            "ON CONFLICT (user_id, currency) DO NOTHING";
+    
+    // A key inserted concurrently by another request shows up as an update count of 0
+    private static final String INSERT_TRANSACTION =
+            "INSERT INTO wallet_transactions (transaction_id, idempotency_key, wallet_id, user_id, transaction_type, " +
+            "status, amount, currency, description, reference_id, metadata, created_at, updated_at, version) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, CAST(? AS jsonb), ?, ?, 0) " +
+            "ON CONFLICT (idempotency_key) DO NOTHING";
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final WalletRepository walletRepository;
+    private final WalletTransactionRepository transactionRepository;
+    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final OutboxService outboxService;
+    private final IdempotencyFilter idempotencyFilter;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final WalletMetrics walletMetrics;
+    
+    @Value("${kafka.topics.wallet-events}")
+    private String walletEventsTopic;
+    
+    @Value("${wallet.batch-credit.chunk-size:1000}")
+    private int chunkSize;
+    
+    @Value("${wallet.batch-credit.max-items:100000}")
+    private int maxItems;
+    
+    @Value("${wallet.batch-credit.send-timeout-ms:30000}")
+    private long sendTimeoutMs;
+    
+    public BatchCreditResponse creditBatch(InputStream ndjson) throws IOException {
+        try (MappingIterator<CreditRequest> credits = objectMapper.readerFor(CreditRequest.class).readValues(ndjson)) {
+            return creditBatch(credits);
+        }
+    }
+    
+    public BatchCreditResponse creditBatch(Iterator<CreditRequest> credits) {
+        List<BatchCreditItemResponse> items = new ArrayList<>();
+        List<BatchCreditItemResponse> repeated = new ArrayList<>();
+        Set<String> seenKeys = new HashSet<>();
+        List<PendingCredit> chunk = new ArrayList<>();
+        
+        int index = 0;
+        while (credits.hasNext()) {
+            CreditRequest request = credits.next();
+            int position = index++;
+            
+            String error = position >= maxItems ? "Batch limit of " + maxItems + " credits exceeded" : validate(request);
+            if (error != null) {
+                items.add(item(position, request, BatchItemStatus.REJECTED).error(error).build());
+            } else if (!seenKeys.add(request.getIdempotencyKey())) {
+                BatchCreditItemResponse duplicate = item(position, request, BatchItemStatus.DUPLICATE).build();
+                repeated.add(duplicate);
+                items.add(duplicate);
+            } else {
+                chunk.add(new PendingCredit(position, request));
+                if (chunk.size() >= chunkSize) {
+                    items.addAll(processChunk(chunk));
+                    chunk = new ArrayList<>();
+                }
+            }
+        }
+        if (!chunk.isEmpty()) {
+            items.addAll(processChunk(chunk));
+        }
+        
+        // Keys repeated within the request point at whatever the first occurrence resolved to
+        if (!repeated.isEmpty()) {
+            Map<String, BatchCreditItemResponse> firstByKey = new HashMap<>();
+            items.stream()
+                    .filter(item -> item.getTransactionId() != null)
+                    .forEach(item -> firstByKey.putIfAbsent(item.getIdempotencyKey(), item));
+            for (BatchCreditItemResponse duplicate : repeated) {
+                BatchCreditItemResponse first = firstByKey.get(duplicate.getIdempotencyKey());
+                if (first != null) {
+                    duplicate.setTransactionId(first.getTransactionId());
+                    duplicate.setWalletId(first.getWalletId());
+                }
+            }
+        }
+        
+        items.sort(Comparator.comparingInt(BatchCreditItemResponse::getIndex));
+        Map<BatchItemStatus, Long> counts = items.stream()
+                .collect(Collectors.groupingBy(BatchCreditItemResponse::getStatus, Collectors.counting()));
+        BatchCreditResponse response = BatchCreditResponse.builder()
+                .total(items.size())
+                .accepted(counts.getOrDefault(BatchItemStatus.ACCEPTED, 0L).intValue())
+                .duplicates(counts.getOrDefault(BatchItemStatus.DUPLICATE, 0L).intValue())
+                .rejected(counts.getOrDefault(BatchItemStatus.REJECTED, 0L).intValue())
+                .items(items)
+                .build();
+        
+        log.info("Processed credit batch: total={}, accepted={}, duplicates={}, rejected={}",
+                response.getTotal(), response.getAccepted(), response.getDuplicates(), response.getRejected());
+        return response;
+    }
+    
+    private List<BatchCreditItemResponse> processChunk(List<PendingCredit> chunk) {
+        List<WalletEvent> events = new ArrayList<>();
+        List<BatchCreditItemResponse> results = transactionTemplate.execute(status -> {
+            Instant now = Instant.now();
+            List<BatchCreditItemResponse> chunkResults = new ArrayList<>(chunk.size());
+            
+            Map<String, WalletTransaction> existing = findByIdempotencyKeys(
+                    chunk.stream().map(credit -> credit.request().getIdempotencyKey()).toList());
+            List<PendingCredit> fresh = new ArrayList<>();
+            for (PendingCredit credit : chunk) {
+                WalletTransaction transaction = existing.get(credit.request().getIdempotencyKey());
+                if (transaction != null) {
+                    chunkResults.add(duplicate(credit, transaction));
+                } else {
+                    fresh.add(credit);
+                }
+            }
+            if (fresh.isEmpty()) {
+                return chunkResults;
+            }
+            
+            Map<WalletKey, String> walletIds = resolveWallets(fresh, now);
+            List<WalletTransaction> transactions = fresh.stream()
+                    .map(credit -> toTransaction(credit.request(), walletIds.get(WalletKey.of(credit.request()))))
+                    .toList();
+            int[][] updateCounts = jdbcTemplate.batchUpdate(INSERT_TRANSACTION, transactions, chunkSize, (ps, transaction) -> {
+                ps.setString(1, transaction.getTransactionId());
+                ps.setString(2, transaction.getIdempotencyKey());
+                ps.setString(3, transaction.getWalletId());
+                ps.setLong(4, transaction.getUserId());
+                ps.setString(5, transaction.getTransactionType().name());
+                ps.setString(6, transaction.getStatus().name());
+                ps.setBigDecimal(7, transaction.getAmount());
+                ps.setString(8, transaction.getCurrency());
+                ps.setString(9, transaction.getDescription());
+                ps.setString(10, transaction.getReferenceId());
+                ps.setString(11, toJson(transaction.getMetadata()));
+                ps.setTimestamp(12, Timestamp.from(now));
+                ps.setTimestamp(13, Timestamp.from(now));
+            });
+            
+            List<PendingCredit> lostRace = new ArrayList<>();
+            int position = 0;
+            for (int[] batch : updateCounts) {
+                for (int count : batch) {
+                    PendingCredit credit = fresh.get(position);
+                    WalletTransaction transaction = transactions.get(position++);
+                    if (count == 0) {
+                        lostRace.add(credit);
+                    } else {
+                        chunkResults.add(item(credit.index(), credit.request(), BatchItemStatus.ACCEPTED)
+                                .transactionId(transaction.getTransactionId())
+                                .walletId(transaction.getWalletId())
+                                .build());
+                        events.add(toEvent(transaction, now));
+                    }
+                }
+            }
+            if (!lostRace.isEmpty()) {
+                Map<String, WalletTransaction> winners = findByIdempotencyKeys(
+                        lostRace.stream().map(credit -> credit.request().getIdempotencyKey()).toList());
+                lostRace.forEach(credit -> chunkResults.add(
+                        duplicate(credit, winners.get(credit.request().getIdempotencyKey()))));
+            }
+            
+            idempotencyFilter.putAll(events.stream().map(WalletEvent::getIdempotencyKey).toList());
+            if (outboxService.isEnabled()) {
+                outboxService.appendAll(walletEventsTopic, events, event -> event.getUserId().toString());
+            }
+            return chunkResults;
+        });
+        
+        if (!outboxService.isEnabled()) {
+            publish(events);
+        }
+        walletMetrics.increment(WalletMetric.CREDIT_REQUESTED, events.size());
+        return results;
+    }
+    
+    // Wallets missing for any (user, currency) pair are inserted in one batch; a concurrent creator
+    // wins the unique key and the re-read picks up its wallet instead.
+    private Map<WalletKey, String> resolveWallets(List<PendingCredit> credits, Instant now) {
+        Set<Long> userIds = credits.stream().map(credit -> credit.request().getUserId()).collect(Collectors.toSet());
+        Map<WalletKey, String> walletIds = findWallets(userIds);
+        
+        List<WalletKey> missing = credits.stream()
+                .map(credit -> WalletKey.of(credit.request()))
+                .distinct()
+                .filter(key -> !walletIds.containsKey(key))
+                .toList();
+        if (missing.isEmpty()) {
+            return walletIds;
+        }
+        
+        int[][] updateCounts = jdbcTemplate.batchUpdate(INSERT_WALLET, missing, chunkSize, (ps, key) -> {
+            ps.setString(1, generateWalletId());
+            ps.setLong(2, key.userId());
+            ps.setString(3, key.currency());
+            ps.setString(4, WalletStatus.ACTIVE.name());
+            ps.setTimestamp(5, Timestamp.from(now));
+            ps.setTimestamp(6, Timestamp.from(now));
+        });
+        long created = 0;
+        for (int[] batch : updateCounts) {
+            for (int count : batch) {
+                created += Math.max(count, 0);
+            }
+        }
+        walletMetrics.increment(WalletMetric.WALLET_CREATED, created);
+        return findWallets(userIds);
+    }
+    
+    private Map<WalletKey, String> findWallets(Set<Long> userIds) {
+        Map<WalletKey, String> walletIds = new HashMap<>();
+        for (Wallet wallet : walletRepository.findByUserIdIn(userIds)) {
+            walletIds.put(new WalletKey(wallet.getUserId(), wallet.getCurrency()), wallet.getWalletId());
+        }
+        return walletIds;
+    }
+    
+    private Map<String, WalletTransaction> findByIdempotencyKeys(List<String> keys) {
+        return transactionRepository.findByIdempotencyKeyIn(keys).stream()
+                .collect(Collectors.toMap(WalletTransaction::getIdempotencyKey, transaction -> transaction));
+    }
+    
+    // Kafka batches the sends per partition; flush pushes the last linger window out immediately
+    private void publish(List<WalletEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        
+        CompletableFuture<?>[] sends = events.stream()
+                .map(event -> kafkaTemplate.send(walletEventsTopic, event.getUserId().toString(), event))
+                .toArray(CompletableFuture[]::new);
+        kafkaTemplate.flush();
+        try {
+            CompletableFuture.allOf(sends).get(sendTimeoutMs, TimeUnit.MILLISECONDS);
+            events.forEach(event -> walletMetrics.recordSince(EventStage.ACCEPT_TO_PUBLISH, event.getTimestamp()));
+        } catch (Exception e) {
+            log.error("Failed to publish {} batch credit events, affected transactions stay INIT", events.size(), e);
+        }
+    }
+    
+    private String validate(CreditRequest request) {
+        if (request == null) {
+            return "Credit is empty";
+        }
+        Set<ConstraintViolation<CreditRequest>> violations = validator.validate(request);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream().map(ConstraintViolation::getMessage).sorted().collect(Collectors.joining("; "));
+    }
+    
+    private WalletTransaction toTransaction(CreditRequest request, String walletId) {
+        return WalletTransaction.builder()
+                .transactionId(generateTransactionId())
+                .idempotencyKey(request.getIdempotencyKey())
+                .walletId(walletId)
+                .userId(request.getUserId())
+                .transactionType(TransactionType.CREDIT)
+                .status(TransactionStatus.INIT)
+                .amount(request.getAmount())
+                .currency(request.getCurrency())
+                .description(request.getDescription())
+                .referenceId(request.getReferenceId())
+                .metadata(request.getMetadata())
+                .build();
+    }
+    
+    private WalletEvent toEvent(WalletTransaction transaction, Instant now) {
+        return WalletEvent.builder()
+                .eventId(UUID.randomUUID().toString())
+                .eventType(WalletEventType.CREDIT_REQUESTED)
+                .transactionId(transaction.getTransactionId())
+                .idempotencyKey(transaction.getIdempotencyKey())
+                .userId(transaction.getUserId())
+                .walletId(transaction.getWalletId())
+                .transactionType(transaction.getTransactionType())
+                .amount(transaction.getAmount())
+                .currency(transaction.getCurrency())
+                .description(transaction.getDescription())
+                .metadata(transaction.getMetadata())
+                .timestamp(now)
+                .build();
+    }
+    
+    private String toJson(Map<String, Object> metadata) {
+        if (metadata == null) {
+            return null;
+        }
+        try {
+            return objectMapper.writeValueAsString(metadata);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Failed to serialize transaction metadata", e);
+        }
+    }
+    
+    private BatchCreditItemResponse duplicate(PendingCredit credit, WalletTransaction transaction) {
+        return item(credit.index(), credit.request(), BatchItemStatus.DUPLICATE)
+                .transactionId(transaction.getTransactionId())
+                .walletId(transaction.getWalletId())
+                .build();
+    }
+    
+    private BatchCreditItemResponse.BatchCreditItemResponseBuilder item(int index, CreditRequest request,
+                                                                        BatchItemStatus status) {
+        return BatchCreditItemResponse.builder()
+                .index(index)
+                .idempotencyKey(request == null ? null : request.getIdempotencyKey())
+                .status(status);
+    }
+    
+    private String generateWalletId() {
+        return "WLT-" + UUID.randomUUID().toString().toUpperCase().replace("-", "").substring(0, 12);
+    }
+    
+    private String generateTransactionId() {
+        return "TXN-" + UUID.randomUUID().toString().toUpperCase().replace("-", "").substring(0, 16);
+    }
+    
+    private record PendingCredit(int index, CreditRequest request) {
+    }
+    
+    private record WalletKey(Long userId, String currency) {
+        
+        private static WalletKey of(CreditRequest request) {
+            return new WalletKey(request.getUserId(), request.getCurrency());
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.velocityx.wallet_service.service;
+
+import com.velocityx.wallet_service.entity.Wallet;
+import com.velocityx.wallet_service.enums.WalletStatus;
+import com.velocityx.wallet_service.repository.WalletRepository;
+import com.velocityx.wallet_service.util.MinorUnits;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ContraAccountService {
+    
+    private static final BigDecimal SYSTEM_SEED_BALANCE = new BigDecimal("1000000000");
+    private static final int MAX_STRIPES = 1000;
+    
+    private final WalletRepository walletRepository;
+    private final LedgerService ledgerService;
+    
+    @Value("${wallet.ledger.system-account-id:SYSTEM_ACCOUNT}")
+    private String systemAccountId;
+    
+    @Value("${wallet.ledger.platform-account-id:PLATFORM_RESERVE}")
+    private String platformAccountId;
+    
+    @Value("${wallet.ledger.contra-stripes:1}")
+    private int contraStripes;
+    
+    public Wallet lockSystemWallet(String walletId) {
+        String contraWalletId = stripeFor(systemAccountId, walletId);
+        return walletRepository.findByWalletIdForUpdate(contraWalletId)
+                .orElseGet(() -> createContraWallet(contraWalletId, systemUserId(contraWalletId),
+                        contraWalletId.equals(systemAccountId) ? SYSTEM_SEED_BALANCE : BigDecimal.ZERO));
+    }
+    
+    public Wallet lockPlatformWallet(String walletId) {
+        String contraWalletId = stripeFor(platformAccountId, walletId);
+        return walletRepository.findByWalletIdForUpdate(contraWalletId)
+                .orElseGet(() -> createContraWallet(contraWalletId, platformUserId(contraWalletId), BigDecimal.ZERO));
+    }
+    
+    public String systemWalletIdFor(String walletId) {
+        return stripeFor(systemAccountId, walletId);
+    }
+    
+    public String platformWalletIdFor(String walletId) {
+        return stripeFor(platformAccountId, walletId);
+    }
+    
+    public boolean isStriped() {
+        return stripeCount() > 1;
+    }
+    
+    @Scheduled(fixedDelayString = "${wallet.ledger.consolidation-interval-ms:60000}")
+    public void consolidateStripes() {
+        if (!isStriped()) {
+            return;
+        }
+        
+        // In striped mode nothing posts to the base accounts directly, so they only exist once created here
+        ensureAccountWallet(systemAccountId, systemUserId(systemAccountId), SYSTEM_SEED_BALANCE);
+        ensureAccountWallet(platformAccountId, platformUserId(platformAccountId), BigDecimal.ZERO);
+        
+        int consolidated = 0;
+        for (int stripe = 0; stripe < stripeCount(); stripe++) {
+            consolidated += consolidate(systemAccountId, stripe);
+            consolidated += consolidate(platformAccountId, stripe);
+        }
+        
+        if (consolidated > 0) {
+            log.info("Consolidated {} contra-account stripes", consolidated);
+        }
+    }
+    
+    private int consolidate(String accountId, int stripe) {
+        try {
+            return ledgerService.consolidateContraStripe(stripeWalletId(accountId, stripe), accountId) ? 1 : 0;
+        } catch (Exception e) {
+            log.error("Failed to consolidate stripe {} of {}", stripe, accountId, e);
+            return 0;
+        }
+    }
+    
+    private void ensureAccountWallet(String accountId, long userId, BigDecimal openingBalance) {
+        if (walletRepository.existsByWalletId(accountId)) {
+            return;
+        }
+        try {
+            createContraWallet(accountId, userId, openingBalance);
+        } catch (DataIntegrityViolationException e) {
+            log.debug("Contra wallet {} was created concurrently", accountId);
+        }
+    }
+    
+    private String stripeFor(String accountId, String walletId) {
+        if (!isStriped()) {
+            return accountId;
+        }
+        return stripeWalletId(accountId, Math.floorMod(walletId.hashCode(), stripeCount()));
+    }
+    
+    private String stripeWalletId(String accountId, int stripe) {
+        return String.format("%s-%03d", accountId, stripe);
+    }
+    
+    private int stripeCount() {
+        return Math.min(Math.max(contraStripes, 1), MAX_STRIPES);
+    }
+    
+    // uk_user_currency is unique per (user_id, currency), so every contra wallet needs its own reserved user id
+    private long systemUserId(String contraWalletId) {
+        return contraWalletId.equals(systemAccountId) ? 0L : -(1000L + stripeIndex(contraWalletId));
+    }
+    
+    private long platformUserId(String contraWalletId) {
+        return contraWalletId.equals(platformAccountId) ? -1L : -(2000L + stripeIndex(contraWalletId));
+    }
+    
+    private int stripeIndex(String contraWalletId) {
+        return Integer.parseInt(contraWalletId.substring(contraWalletId.lastIndexOf('-') + 1));
+    }
+    
+    private Wallet createContraWallet(String contraWalletId, long userId, BigDecimal openingBalance) {
+        log.info("Creating contra wallet: walletId={}", contraWalletId);
+        Wallet wallet = Wallet.builder()
+                .walletId(contraWalletId)
+                .userId(userId)
+                .currency("INR")
+                .status(WalletStatus.ACTIVE)
+                .build();
+        return ledgerService.openContraWallet(wallet, MinorUnits.of(openingBalance));
+    }
+}
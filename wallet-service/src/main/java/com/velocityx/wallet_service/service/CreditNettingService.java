@@ -0,0 +1,89 @@
+package com.velocityx.wallet_service.service;
+
+import com.velocityx.wallet_service.entity.PendingCredit;
+import com.velocityx.wallet_service.entity.Wallet;
+import com.velocityx.wallet_service.metrics.WalletMetric;
+import com.velocityx.wallet_service.metrics.WalletMetrics;
+import com.velocityx.wallet_service.repository.PendingCreditRepository;
+import com.velocityx.wallet_service.repository.WalletRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Credits to hot wallets (merchant and platform receivers) are staged as pending rows instead of
+ * locking the receiver for every event. Each interval the staged credits of a wallet are applied
+ * under a single row lock: one ledger entry per credit with exact running balances, and one
+ * balance update for the whole window. Debits against a hot wallet only see credits that have
+ * already been applied.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CreditNettingService {
+    
+    private final PendingCreditRepository pendingCreditRepository;
+    private final WalletRepository walletRepository;
+    private final LedgerService ledgerService;
+    private final TransactionTemplate transactionTemplate;
+    private final WalletMetrics walletMetrics;
+    
+    @Value("${wallet.netting.enabled:false}")
+    private boolean enabled;
+    
+    @Value("${wallet.netting.hot-wallets:}")
+    private Set<String> hotWallets;
+    
+    @Value("${wallet.netting.max-batch:1000}")
+    private int maxBatch;
+    
+    public boolean isHot(String walletId) {
+        return enabled && walletId != null && hotWallets.contains(walletId);
+    }
+    
+    // Driven by whatever is staged rather than by the hot wallet list, so a wallet removed from the
+    // list still has its remaining credits applied.
+    @Scheduled(fixedDelayString = "${wallet.netting.interval-ms:50}")
+    public void applyPendingCredits() {
+        if (!enabled) {
+            return;
+        }
+        
+        for (String walletId : pendingCreditRepository.findPendingWalletIds()) {
+            try {
+                Integer applied = transactionTemplate.execute(status -> apply(walletId));
+                if (applied != null && applied > 0) {
+                    walletMetrics.increment(WalletMetric.NETTING_APPLIED, applied);
+                    log.debug("Applied netted credits: walletId={}, count={}", walletId, applied);
+                }
+            } catch (Exception e) {
+                log.error("Failed to apply netted credits: walletId={}", walletId, e);
+            }
+        }
+    }
+    
+    // The wallet lock is taken before reading the staged rows, so two instances never apply the
+    // same credit twice.
+    private int apply(String walletId) {
+        Wallet wallet = walletRepository.findByWalletIdForUpdate(walletId).orElse(null);
+        if (wallet == null) {
+            log.warn("Netted credits staged for missing wallet: {}", walletId);
+            return 0;
+        }
+        
+        List<PendingCredit> credits = pendingCreditRepository.findByWalletId(walletId, PageRequest.of(0, maxBatch));
+        if (credits.isEmpty()) {
+            return 0;
+        }
+        
+        ledgerService.applyPendingCredits(wallet, credits);
+        return credits.size();
+    }
+}
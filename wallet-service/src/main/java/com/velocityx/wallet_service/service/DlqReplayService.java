@@ -0,0 +1,342 @@
+package com.velocityx.wallet_service.service;
+
+import com.velocityx.wallet_service.entity.WalletTransaction;
+import com.velocityx.wallet_service.enums.TransactionStatus;
+import com.velocityx.wallet_service.metrics.WalletMetric;
+import com.velocityx.wallet_service.metrics.WalletMetrics;
+import com.velocityx.wallet_service.repository.WalletTransactionRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndTimestamp;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Bulk replay of the wallet DLQ. Partitions are scanned in parallel from the first offset at or
+ * after the requested start time up to the end offset seen when the partition is picked up, so
+ * events that fail again and land back on the DLQ are not replayed twice by the same run. Matching
+ * events are published back onto the wallet events topic, keyed by user like the original, behind
+ * a shared token bucket so the live consumers are never flooded. Events whose transaction has
+ * already left INIT are reported as skipped instead of being republished; the status guard in the
+ * processor still makes one that settles in between a no-op.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DlqReplayService {
+    
+    // Routing fields added by the retry and DLQ producers, dropped so a replay starts fresh
+    private static final List<String> FAILURE_FIELDS = List.of("errorMessage", "errorClass", "retryAttempt", "retryDueAt");
+    
+    private final ConsumerFactory<String, Object> consumerFactory;
+    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final WalletTransactionRepository transactionRepository;
+    private final WalletMetrics walletMetrics;
+    
+    @Value("${kafka.topics.wallet-dlq}")
+    private String dlqTopic;
+    
+    @Value("${kafka.topics.wallet-events}")
+    private String eventsTopic;
+    
+    @Value("${wallet.dlq-replay.group-id:wallet-dlq-replay}")
+    private String groupId;
+    
+    @Value("${wallet.dlq-replay.rate-per-second:2000}")
+    private double defaultRatePerSecond;
+    
+    @Value("${wallet.dlq-replay.parallelism:4}")
+    private int parallelism;
+    
+    @Value("${wallet.dlq-replay.max-poll-records:1000}")
+    private int maxPollRecords;
+    
+    private final AtomicReference<ReplayJob> current = new AtomicReference<>();
+    
+    public ReplayProgress getProgress() {
+        ReplayJob job = current.get();
+        return job == null ? null : job.progress();
+    }
+    
+    // Starts a replay unless one is already running, in which case its progress is returned
+    public ReplayProgress start(ReplayFilter filter, Double ratePerSecond) {
+        double rate = ratePerSecond != null && ratePerSecond > 0 ? ratePerSecond : defaultRatePerSecond;
+        ReplayJob job = new ReplayJob(UUID.randomUUID().toString(), filter, rate);
+        
+        ReplayJob previous = current.get();
+        if (previous != null && previous.finishedAt == null) {
+            log.warn("DLQ replay {} already running", previous.id);
+            return previous.progress();
+        }
+        if (!current.compareAndSet(previous, job)) {
+            return current.get().progress();
+        }
+        
+        Thread coordinator = new Thread(() -> run(job), "dlq-replay-" + job.id);
+        coordinator.setDaemon(true);
+        coordinator.start();
+        return job.progress();
+    }
+    
+    public ReplayProgress cancel() {
+        ReplayJob job = current.get();
+        if (job == null) {
+            return null;
+        }
+        job.cancelled = true;
+        return job.progress();
+    }
+    
+    private void run(ReplayJob job) {
+        log.info("Starting DLQ replay: id={}, filter={}, rate={}/s", job.id, job.filter, job.bucket.ratePerSecond);
+        try (Consumer<String, Object> metadata = createConsumer(job, "meta")) {
+            List<PartitionInfo> infos = metadata.partitionsFor(dlqTopic);
+            infos.forEach(info -> job.partitions.add(new TopicPartition(info.topic(), info.partition())));
+            job.partitionsTotal = infos.size();
+            
+            int workerCount = Math.max(Math.min(parallelism, infos.size()), 1);
+            ExecutorService workers = Executors.newFixedThreadPool(workerCount,
+                    r -> new Thread(r, "dlq-replay-worker-" + job.id));
+            for (int i = 0; i < workerCount; i++) {
+                String clientSuffix = "-" + i;
+                workers.execute(() -> {
+                    try (Consumer<String, Object> consumer = createConsumer(job, clientSuffix)) {
+                        TopicPartition partition;
+                        while (!job.cancelled && (partition = job.partitions.poll()) != null) {
+                            replayPartition(job, consumer, partition);
+                            job.partitionsDone.incrementAndGet();
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } catch (Exception e) {
+                        log.error("DLQ replay {} worker failed", job.id, e);
+                        job.error = e.getMessage();
+                        job.cancelled = true;
+                    }
+                });
+            }
+            workers.shutdown();
+            workers.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            kafkaTemplate.flush();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.error("DLQ replay {} failed", job.id, e);
+            job.error = e.getMessage();
+        } finally {
+            job.finishedAt = Instant.now();
+            ReplayProgress progress = job.progress();
+            log.info("DLQ replay {} {}: scanned={}, matched={}, duplicates={}, skipped={}, replayed={}, failed={}",
+                    job.id, progress.status(), progress.scanned(), progress.matched(), progress.duplicates(),
+                    progress.skipped(), progress.replayed(), progress.failed());
+        }
+    }
+    
+    private void replayPartition(ReplayJob job, Consumer<String, Object> consumer, TopicPartition partition)
+            throws InterruptedException {
+        Set<TopicPartition> assignment = Set.of(partition);
+        consumer.assign(assignment);
+        long endOffset = consumer.endOffsets(assignment).get(partition);
+        
+        if (job.filter.from() != null) {
+            OffsetAndTimestamp start = consumer.offsetsForTimes(Map.of(partition, job.filter.from().toEpochMilli()))
+                    .get(partition);
+            if (start == null) {
+                return;
+            }
+            consumer.seek(partition, start.offset());
+        } else {
+            consumer.seekToBeginning(assignment);
+        }
+        
+        while (!job.cancelled && consumer.position(partition) < endOffset) {
+            List<Map<String, Object>> candidates = new ArrayList<>();
+            for (ConsumerRecord<String, Object> record : consumer.poll(Duration.ofSeconds(1))) {
+                if (record.offset() >= endOffset) {
+                    break;
+                }
+                job.scanned.increment();
+                
+                Map<String, Object> payload = payloadOf(record);
+                if (payload == null || !job.filter.matches(payload, record.timestamp())) {
+                    continue;
+                }
+                job.matched.increment();
+                
+                Object transactionId = payload.get("transactionId");
+                if (transactionId != null && !job.seen.add(transactionId.toString())) {
+                    job.duplicates.increment();
+                    continue;
+                }
+                candidates.add(payload);
+            }
+            
+            Set<String> settled = settledTransactionIds(candidates);
+            for (Map<String, Object> payload : candidates) {
+                if (job.cancelled) {
+                    return;
+                }
+                if (settled.contains(String.valueOf(payload.get("transactionId")))) {
+                    job.skipped.increment();
+                    continue;
+                }
+                job.bucket.acquire();
+                replay(job, payload);
+            }
+        }
+    }
+    
+    // Transactions the processor would drop on its status guard, looked up once per poll
+    private Set<String> settledTransactionIds(List<Map<String, Object>> payloads) {
+        List<String> transactionIds = payloads.stream()
+                .map(payload -> payload.get("transactionId"))
+                .filter(Objects::nonNull)
+                .map(Object::toString)
+                .toList();
+        if (transactionIds.isEmpty()) {
+            return Set.of();
+        }
+        return transactionRepository.findByTransactionIdIn(transactionIds).stream()
+                .filter(transaction -> transaction.getStatus() != TransactionStatus.INIT)
+                .map(WalletTransaction::getTransactionId)
+                .collect(Collectors.toSet());
+    }
+    
+    private void replay(ReplayJob job, Map<String, Object> payload) {
+        Map<String, Object> event = new HashMap<>(payload);
+        FAILURE_FIELDS.forEach(event::remove);
+        Object key = event.get("userId");
+        
+        kafkaTemplate.send(eventsTopic, key == null ? null : key.toString(), event).whenComplete((result, failure) -> {
+            if (failure != null) {
+                job.failed.increment();
+                log.error("DLQ replay {} could not republish txnId={}", job.id, event.get("transactionId"), failure);
+            } else {
+                job.replayed.increment();
+                walletMetrics.increment(WalletMetric.DLQ_REPLAYED);
+            }
+        });
+    }
+    
+    // A throwaway group that never commits: replays always start from the requested time
+    private Consumer<String, Object> createConsumer(ReplayJob job, String clientSuffix) {
+        Properties overrides = new Properties();
+        overrides.setProperty(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, String.valueOf(maxPollRecords));
+        overrides.setProperty(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
+        return consumerFactory.createConsumer(groupId + "-" + job.id, "dlq-replay", clientSuffix, overrides);
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> payloadOf(ConsumerRecord<String, Object> record) {
+        return record.value() instanceof Map<?, ?> value ? (Map<String, Object>) value : null;
+    }
+    
+    private static final class ReplayJob {
+        
+        private final String id;
+        private final ReplayFilter filter;
+        private final TokenBucket bucket;
+        private final Instant startedAt = Instant.now();
+        private final Queue<TopicPartition> partitions = new ConcurrentLinkedQueue<>();
+        private final Set<String> seen = ConcurrentHashMap.newKeySet();
+        private final AtomicInteger partitionsDone = new AtomicInteger();
+        private final LongAdder scanned = new LongAdder();
+        private final LongAdder matched = new LongAdder();
+        private final LongAdder duplicates = new LongAdder();
+        private final LongAdder skipped = new LongAdder();
+        private final LongAdder replayed = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private volatile int partitionsTotal;
+        private volatile boolean cancelled;
+        private volatile String error;
+        private volatile Instant finishedAt;
+        
+        private ReplayJob(String id, ReplayFilter filter, double ratePerSecond) {
+            this.id = id;
+            this.filter = filter;
+            this.bucket = new TokenBucket(ratePerSecond);
+        }
+        
+        private ReplayProgress progress() {
+            String status = finishedAt == null ? (cancelled ? "CANCELLING" : "RUNNING")
+                    : error != null ? "FAILED" : cancelled ? "CANCELLED" : "COMPLETED";
+            return new ReplayProgress(id, status, filter, bucket.ratePerSecond, startedAt, finishedAt,
+                    partitionsDone.get(), partitionsTotal, scanned.sum(), matched.sum(), duplicates.sum(),
+                    skipped.sum(), replayed.sum(), failed.sum(), error);
+        }
+    }
+    
+    // Shared by all partition workers; holds at most one second of burst
+    private static final class TokenBucket {
+        
+        private final double ratePerSecond;
+        private double tokens;
+        private long refilledAt = System.nanoTime();
+        
+        private TokenBucket(double ratePerSecond) {
+            this.ratePerSecond = ratePerSecond;
+        }
+        
+        private void acquire() throws InterruptedException {
+            while (true) {
+                long waitNanos;
+                synchronized (this) {
+                    long now = System.nanoTime();
+                    tokens = Math.min(ratePerSecond, tokens + (now - refilledAt) * ratePerSecond / 1e9);
+                    refilledAt = now;
+                    if (tokens >= 1) {
+                        tokens -= 1;
+                        return;
+                    }
+                    waitNanos = (long) ((1 - tokens) * 1e9 / ratePerSecond);
+                }
+                TimeUnit.NANOSECONDS.sleep(Math.max(waitNanos, 1));
+            }
+        }
+    }
+    
+    // Null fields match everything; the time range applies to the DLQ record timestamp
+    public record ReplayFilter(String eventType, String errorClass, Instant from, Instant to) {
+        
+        private boolean matches(Map<String, Object> payload, long timestamp) {
+            return (eventType == null || eventType.equals(payload.get("eventType")))
+                    && (errorClass == null || errorClass.equals(payload.get("errorClass")))
+                    && (from == null || timestamp >= from.toEpochMilli())
+                    && (to == null || timestamp < to.toEpochMilli());
+        }
+    }
+    
+    public record ReplayProgress(String id, String status, ReplayFilter filter, double ratePerSecond,
+                                 Instant startedAt, Instant finishedAt, int partitionsDone, int partitionsTotal,
+                                 long scanned, long matched, long duplicates, long skipped, long replayed,
+                                 long failed, String error) {
+    }
+}
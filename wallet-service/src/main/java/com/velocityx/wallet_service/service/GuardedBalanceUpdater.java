@@ -0,0 +1,104 @@
+package com.velocityx.wallet_service.service;
+
+import com.velocityx.wallet_service.util.MinorUnits;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Single-statement balance changes: the funds check lives in the WHERE clause and the new balances
+ * come back through RETURNING, so the wallet row is never read and locked ahead of the write.
+ * Every statement bumps the version column, which keeps Hibernate's optimistic locking and the
+ * balance cache ordering intact.
+ */
+@Component
+@RequiredArgsConstructor
+public class GuardedBalanceUpdater {
+    
+    private static final String RETURNING =
+            " RETURNING wallet_id, user_id, balance, available_balance, version";
+    
+    private static final String DEBIT =
+            "UPDATE wallets SET balance = balance - ?, available_balance = available_balance - ?, " +
+            "version = COALESCE(version, 0) + 1, updated_at = ? WHERE wallet_id = ? AND available_balance >= ?" + RETURNING;
+    
+    private static final String HOLD =
+            "UPDATE wallets SET available_balance = available_balance - ?, held_balance = held_balance + ?, " +
+            "version = COALESCE(version, 0) + 1, updated_at = ? WHERE wallet_id = ? AND available_balance >= ?" + RETURNING;
+    
+    private static final String CREDIT =
+            "UPDATE wallets SET balance = balance + ?, available_balance = available_balance + ?, " +
+            "version = COALESCE(version, 0) + 1, updated_at = ? WHERE wallet_id = ?" + RETURNING;
+    
+    private static final RowMapper<Row> ROW_MAPPER = (rs, rowNum) -> new Row(
+            rs.getString("wallet_id"),
+            rs.getLong("user_id"),
+            MinorUnits.of(rs.getBigDecimal("balance")),
+            MinorUnits.of(rs.getBigDecimal("available_balance")),
+            rs.getLong("version"));
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final WalletBalanceCache balanceCache;
+    
+    // Empty when the wallet is missing or its available balance is short
+    @Transactional(propagation = Propagation.MANDATORY)
+    public Optional<BalanceChange> debit(String walletId, long amount) {
+        BigDecimal value = MinorUnits.toDecimal(amount);
+        return execute(DEBIT, value, value, walletId, value)
+                .map(row -> new BalanceChange(row, MinorUnits.add(row.balance(), amount),
+                        MinorUnits.add(row.availableBalance(), amount)));
+    }
+    
+    @Transactional(propagation = Propagation.MANDATORY)
+    public Optional<BalanceChange> hold(String walletId, long amount) {
+        BigDecimal value = MinorUnits.toDecimal(amount);
+        return execute(HOLD, value, value, walletId, value)
+                .map(row -> new BalanceChange(row, row.balance(), MinorUnits.add(row.availableBalance(), amount)));
+    }
+    
+    // Empty only when the wallet does not exist
+    @Transactional(propagation = Propagation.MANDATORY)
+    public Optional<BalanceChange> credit(String walletId, long amount) {
+        BigDecimal value = MinorUnits.toDecimal(amount);
+        return execute(CREDIT, value, value, walletId)
+                .map(row -> new BalanceChange(row, MinorUnits.subtract(row.balance(), amount),
+                        MinorUnits.subtract(row.availableBalance(), amount)));
+    }
+    
+    private Optional<Row> execute(String sql, BigDecimal first, BigDecimal second, String walletId, Object... guard) {
+        Object[] args = new Object[4 + guard.length];
+        args[0] = first;
+        args[1] = second;
+        args[2] = Timestamp.from(Instant.now());
+        args[3] = walletId;
+        System.arraycopy(guard, 0, args, 4, guard.length);
+        
+        List<Row> rows = jdbcTemplate.query(sql, ROW_MAPPER, args);
+        if (rows.isEmpty()) {
+            return Optional.empty();
+        }
+        Row row = rows.get(0);
+        balanceCache.invalidateAfterCommit(row.walletId(), row.userId(), row.version());
+        return Optional.of(row);
+    }
+    
+    private record Row(String walletId, long userId, long balance, long availableBalance, long version) {
+    }
+    
+    public record BalanceChange(String walletId, long balanceBefore, long balanceAfter,
+                                long availableBefore, long availableAfter) {
+        
+        private BalanceChange(Row row, long balanceBefore, long availableBefore) {
+            this(row.walletId(), balanceBefore, row.balance(), availableBefore, row.availableBalance());
+        }
+    }
+}
@@ -0,0 +1,382 @@
+package com.velocityx.wallet_service.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * In-memory pre-check for idempotency keys: a miss means the key was never used, a hit only means
+ * it might have been and the caller has to look it up. Keys live in scalable Bloom filters, one per
+ * time generation, so old keys age out by dropping whole generations. Bits are mirrored to Redis
+ * bitmaps and merged back periodically so replicas learn about each other's keys.
+ *
+ * A miss can still be wrong for keys older than the retained generations, keys added on another
+ * replica since the last refresh, or bits lost on the way through Redis. The unique constraint on
+ * idempotency_key catches those retries and the service returns the stored transaction instead.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class IdempotencyFilter {
+    
+    private static final String KEY_PREFIX = "wallet:idempotency:bloom:";
+    
+    // Each added slice doubles the capacity and halves the false positive rate, so the compound
+    // rate stays below twice the configured one however far a generation grows.
+    private static final int GROWTH_FACTOR = 2;
+    private static final double TIGHTENING_RATIO = 0.5;
+    
+    private final StringRedisTemplate redisTemplate;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    
+    @Value("${wallet.idempotency-filter.enabled:false}")
+    private boolean enabled;
+    
+    @Value("${wallet.idempotency-filter.expected-keys-per-generation:1000000}")
+    private long expectedKeys;
+    
+    @Value("${wallet.idempotency-filter.false-positive-rate:0.01}")
+    private double falsePositiveRate;
+    
+    @Value("${wallet.idempotency-filter.generation-ms:86400000}")
+    private long generationMs;
+    
+    @Value("${wallet.idempotency-filter.generations:7}")
+    private int generations;
+    
+    @Value("${wallet.idempotency-filter.warmup-fetch-size:5000}")
+    private int warmupFetchSize;
+    
+    private final Map<Long, Generation> live = new ConcurrentHashMap<>();
+    private final Queue<PendingBits> pendingBits = new ConcurrentLinkedQueue<>();
+    
+    private volatile boolean ready;
+    
+    public boolean mightContain(String idempotencyKey) {
+        if (!enabled || !ready) {
+            return true;
+        }
+        
+        long[] hash = hash(idempotencyKey);
+        for (Generation generation : live.values()) {
+            if (generation.mightContain(hash)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    public void put(String idempotencyKey) {
+        if (enabled) {
+            add(idempotencyKey, Instant.now());
+        }
+    }
+    
+    public void putAll(List<String> idempotencyKeys) {
+        if (enabled) {
+            Instant now = Instant.now();
+            idempotencyKeys.forEach(key -> add(key, now));
+        }
+    }
+    
+    // Shared bitmaps are loaded first; the database is scanned from the oldest generation no replica
+    // has published, so a partly expired or evicted set in Redis is filled in rather than trusted.
+    // Until this finishes every key is reported as a possible hit.
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (!enabled) {
+            return;
+        }
+        
+        try {
+            long current = currentGeneration();
+            long firstMissing = Long.MAX_VALUE;
+            for (long id = current - generations + 1; id <= current; id++) {
+                if (!refresh(generation(id))) {
+                    firstMissing = Math.min(firstMissing, id);
+                }
+            }
+            
+            if (firstMissing != Long.MAX_VALUE) {
+                long keys = warmFromDatabase(Instant.ofEpochMilli(firstMissing * generationMs));
+                log.info("Warmed idempotency filter from {} recent transactions", keys);
+            }
+            ready = true;
+        } catch (Exception e) {
+            log.warn("Failed to warm idempotency filter, every key goes to the database until restart", e);
+        }
+    }
+    
+    @Scheduled(fixedDelayString = "${wallet.idempotency-filter.flush-interval-ms:200}")
+    public void flushToRedis() {
+        if (!enabled || pendingBits.isEmpty()) {
+            return;
+        }
+        
+        List<PendingBits> batch = new ArrayList<>();
+        PendingBits bits;
+        while ((bits = pendingBits.poll()) != null) {
+            batch.add(bits);
+        }
+        
+        long ttlMs = (generations + 1L) * generationMs;
+        try {
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (PendingBits pending : batch) {
+                    byte[] key = pending.redisKey().getBytes(StandardCharsets.UTF_8);
+                    for (long offset : pending.offsets()) {
+                        connection.stringCommands().setBit(key, offset, true);
+                    }
+                    connection.keyCommands().pExpire(key, ttlMs);
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            // Local bits are already set; other replicas only see these keys once a later write of
+            // the same slice gets through, the unique constraint covers the gap.
+            log.warn("Failed to publish {} idempotency filter updates to Redis", batch.size(), e);
+        }
+    }
+    
+    @Scheduled(fixedDelayString = "${wallet.idempotency-filter.refresh-interval-ms:5000}")
+    public void rotateAndRefresh() {
+        if (!enabled || !ready) {
+            return;
+        }
+        
+        long current = currentGeneration();
+        live.keySet().removeIf(id -> id <= current - generations);
+        try {
+            refresh(generation(current));
+            refresh(generation(current - 1));
+        } catch (Exception e) {
+            log.warn("Failed to refresh idempotency filter from Redis", e);
+        }
+    }
+    
+    private void add(String idempotencyKey, Instant at) {
+        long id = at.toEpochMilli() / generationMs;
+        if (id <= currentGeneration() - generations) {
+            return;
+        }
+        
+        Generation generation = generation(id);
+        Slice slice = generation.sliceForInsert();
+        long[] offsets = slice.add(hash(idempotencyKey));
+        pendingBits.add(new PendingBits(redisKey(id, slice.index()), offsets));
+    }
+    
+    // Returns whether Redis held any slice of the generation
+    private boolean refresh(Generation generation) {
+        boolean found = false;
+        for (int index = 0; ; index++) {
+            byte[] bitmap = readBitmap(redisKey(generation.id(), index));
+            if (bitmap == null) {
+                return found;
+            }
+            generation.slice(index).merge(bitmap);
+            found = true;
+        }
+    }
+    
+    private byte[] readBitmap(String redisKey) {
+        return redisTemplate.execute((RedisCallback<byte[]>) connection ->
+                connection.stringCommands().get(redisKey.getBytes(StandardCharsets.UTF_8)));
+    }
+    
+    private long warmFromDatabase(Instant since) {
+        AtomicLong keys = new AtomicLong();
+        transactionTemplate.execute(status -> {
+            jdbcTemplate.query(connection -> {
+                PreparedStatement statement = connection.prepareStatement(
+                        "SELECT idempotency_key, created_at FROM wallet_transactions WHERE created_at >= ?");
+                statement.setFetchSize(warmupFetchSize);
+                statement.setTimestamp(1, Timestamp.from(since));
+                return statement;
+            }, (RowCallbackHandler) rs -> {
+                add(rs.getString("idempotency_key"), rs.getTimestamp("created_at").toInstant());
+                keys.incrementAndGet();
+            });
+            return null;
+        });
+        return keys.get();
+    }
+    
+    private Generation generation(long id) {
+        return live.computeIfAbsent(id, Generation::new);
+    }
+    
+    private long currentGeneration() {
+        return System.currentTimeMillis() / generationMs;
+    }
+    
+    private static String redisKey(long generation, int slice) {
+        return KEY_PREFIX + generation + ":" + slice;
+    }
+    
+    // 64-bit FNV-1a finished with the murmur3 mixer; the two halves drive double hashing
+    private static long[] hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        return new long[] {mix(h), mix(h ^ 0x9e3779b97f4a7c15L) | 1L};
+    }
+    
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+    
+    private final class Generation {
+        
+        private final long id;
+        private final List<Slice> slices = new CopyOnWriteArrayList<>();
+        
+        private Generation(long id) {
+            this.id = id;
+        }
+        
+        private long id() {
+            return id;
+        }
+        
+        private boolean mightContain(long[] hash) {
+            for (Slice slice : slices) {
+                if (slice.mightContain(hash)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        
+        private Slice sliceForInsert() {
+            Slice last = slices.isEmpty() ? slice(0) : slices.get(slices.size() - 1);
+            return last.isFull() ? slice(last.index() + 1) : last;
+        }
+        
+        private synchronized Slice slice(int index) {
+            while (slices.size() <= index) {
+                int next = slices.size();
+                slices.add(new Slice(next, (long) (expectedKeys * Math.pow(GROWTH_FACTOR, next)),
+                        falsePositiveRate * Math.pow(TIGHTENING_RATIO, next)));
+            }
+            return slices.get(index);
+        }
+    }
+    
+    private static final class Slice {
+        
+        private final int index;
+        private final long capacity;
+        private final long bits;
+        private final int hashes;
+        private final AtomicLongArray words;
+        private final AtomicLong insertions = new AtomicLong();
+        
+        private Slice(int index, long capacity, double falsePositiveRate) {
+            this.index = index;
+            this.capacity = capacity;
+            long optimalBits = (long) Math.ceil(-capacity * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+            this.bits = Math.max(64, (optimalBits + 63) / 64 * 64);
+            this.hashes = Math.max(1, (int) Math.round((double) bits / capacity * Math.log(2)));
+            this.words = new AtomicLongArray((int) (bits / 64));
+        }
+        
+        private int index() {
+            return index;
+        }
+        
+        private boolean isFull() {
+            return insertions.get() >= capacity;
+        }
+        
+        private boolean mightContain(long[] hash) {
+            for (int i = 0; i < hashes; i++) {
+                long bit = Math.floorMod(hash[0] + i * hash[1], bits);
+                if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        private long[] add(long[] hash) {
+            long[] offsets = new long[hashes];
+            for (int i = 0; i < hashes; i++) {
+                long bit = Math.floorMod(hash[0] + i * hash[1], bits);
+                int word = (int) (bit >>> 6);
+                long mask = 1L << bit;
+                long current;
+                do {
+                    current = words.get(word);
+                } while ((current & mask) == 0 && !words.compareAndSet(word, current, current | mask));
+                offsets[i] = bit;
+            }
+            insertions.incrementAndGet();
+            return offsets;
+        }
+        
+        // Redis bitmaps are big-endian within each byte; the insertion count is re-estimated from the
+        // merged fill ratio so keys added by other replicas count towards growing the generation.
+        private void merge(byte[] bitmap) {
+            int limit = (int) Math.min(bitmap.length, bits / 8);
+            for (int i = 0; i < limit; i++) {
+                int value = bitmap[i] & 0xff;
+                if (value == 0) {
+                    continue;
+                }
+                long mask = 0;
+                for (int b = 0; b < 8; b++) {
+                    if ((value & (0x80 >>> b)) != 0) {
+                        mask |= 1L << ((i * 8 + b) & 63);
+                    }
+                }
+                int word = i >>> 3;
+                long current;
+                do {
+                    current = words.get(word);
+                } while ((current | mask) != current && !words.compareAndSet(word, current, current | mask));
+            }
+            
+            long set = 0;
+            for (int i = 0; i < words.length(); i++) {
+                set += Long.bitCount(words.get(i));
+            }
+            double estimate = set >= bits ? capacity : -((double) bits / hashes) * Math.log(1 - (double) set / bits);
+            insertions.accumulateAndGet((long) estimate, Math::max);
+        }
+    }
+    
+    private record PendingBits(String redisKey, long[] offsets) {
+    }
+}
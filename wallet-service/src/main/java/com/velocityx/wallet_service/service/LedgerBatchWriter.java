@@ -0,0 +1,144 @@
+package com.velocityx.wallet_service.service;
+
+import com.velocityx.wallet_service.entity.LedgerEntry;
+import com.velocityx.wallet_service.entity.WalletTransaction;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class LedgerBatchWriter {
+    
+    private static final String INSERT_LEDGER_ENTRY =
+            "INSERT INTO ledger_entries (entry_id, transaction_id, wallet_id, entry_type, entry_side, amount, " +
+            "balance_before, balance_after, description, created_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    
+    private static final String INSERT_TRANSACTION =
+            "INSERT INTO wallet_transactions (transaction_id, idempotency_key, wallet_id, user_id, transaction_type, " +
+            "status, amount, currency, balance_before, balance_after, description, counterparty_wallet_id, " +
+            "completed_at, created_at, updated_at, version) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, 0)";
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    @Value("${wallet.db-writer.enabled:false}")
+    private boolean enabled;
+    
+    @Value("${wallet.db-writer.batch-size:100}")
+    private int batchSize;
+    
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    // Entries are written in one JDBC batch right before the surrounding transaction commits,
+    // after every WalletTransaction they reference has been inserted.
+    public void stage(LedgerEntry entry) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("Ledger entries can only be staged inside a transaction");
+        }
+        pendingEntries().add(entry);
+    }
+    
+    // Bulk postings bypass Hibernate, whose IDENTITY ids rule out insert batching. The generated ids
+    // are copied back so ledger entries can reference the transactions.
+    public void insertTransactions(List<WalletTransaction> transactions) {
+        if (transactions.isEmpty()) {
+            return;
+        }
+        
+        Timestamp now = Timestamp.from(Instant.now());
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(INSERT_TRANSACTION, new String[] {"id"})) {
+                for (WalletTransaction transaction : transactions) {
+                    ps.setString(1, transaction.getTransactionId());
+                    ps.setString(2, transaction.getIdempotencyKey());
+                    ps.setString(3, transaction.getWalletId());
+                    ps.setLong(4, transaction.getUserId());
+                    ps.setString(5, transaction.getTransactionType().name());
+                    ps.setString(6, transaction.getStatus().name());
+                    ps.setBigDecimal(7, transaction.getAmount());
+                    ps.setString(8, transaction.getCurrency());
+                    ps.setBigDecimal(9, transaction.getBalanceBefore());
+                    ps.setBigDecimal(10, transaction.getBalanceAfter());
+                    ps.setString(11, transaction.getDescription());
+                    ps.setString(12, transaction.getCounterpartyWalletId());
+                    ps.setTimestamp(13, transaction.getCompletedAt() == null ? null : Timestamp.from(transaction.getCompletedAt()));
+                    ps.setTimestamp(14, now);
+                    ps.setTimestamp(15, now);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                
+                try (ResultSet keys = ps.getGeneratedKeys()) {
+                    int index = 0;
+                    while (keys.next()) {
+                        transactions.get(index++).setId(keys.getLong(1));
+                    }
+                }
+            }
+            return null;
+        });
+    }
+    
+    public void insertEntries(List<LedgerEntry> entries) {
+        write(entries);
+    }
+    
+    @SuppressWarnings("unchecked")
+    private List<LedgerEntry> pendingEntries() {
+        List<LedgerEntry> pending = (List<LedgerEntry>) TransactionSynchronizationManager.getResource(this);
+        if (pending != null) {
+            return pending;
+        }
+        
+        List<LedgerEntry> entries = new ArrayList<>();
+        TransactionSynchronizationManager.bindResource(this, entries);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                write(entries);
+            }
+            
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(LedgerBatchWriter.this);
+            }
+        });
+        return entries;
+    }
+    
+    private void write(List<LedgerEntry> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        
+        jdbcTemplate.batchUpdate(INSERT_LEDGER_ENTRY, entries, batchSize, (ps, entry) -> {
+            ps.setString(1, entry.getEntryId());
+            ps.setLong(2, entry.getTransaction().getId());
+            ps.setString(3, entry.getWalletId());
+            ps.setString(4, entry.getEntryType().name());
+            ps.setString(5, entry.getEntrySide());
+            ps.setBigDecimal(6, entry.getAmount());
+            ps.setBigDecimal(7, entry.getBalanceBefore());
+            ps.setBigDecimal(8, entry.getBalanceAfter());
+            ps.setString(9, entry.getDescription());
+            ps.setTimestamp(10, Timestamp.from(entry.getCreatedAt()));
+        });
+        
+        log.debug("Wrote {} ledger entries in one batch", entries.size());
+    }
+}
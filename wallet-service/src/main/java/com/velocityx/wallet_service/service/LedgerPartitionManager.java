@@ -0,0 +1,189 @@
+package com.velocityx.wallet_service.service;
+
+import com.velocityx.wallet_service.repository.ColdLedgerStore;
+import com.velocityx.wallet_service.repository.ColdLedgerStore.ArchivedEntry;
+import com.velocityx.wallet_service.util.MinorUnits;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.PreparedStatement;
+import java.time.OffsetDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class LedgerPartitionManager {
+    
+    private static final String PARENT_TABLE = "ledger_entries";
+    private static final Pattern MONTHLY_PARTITION = Pattern.compile("ledger_entries_p(\\d{6})");
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("yyyyMM");
+    
+    private static final String SELECT_PARTITIONS =
+            "SELECT c.relname FROM pg_inherits i " +
+            "JOIN pg_class c ON c.oid = i.inhrelid JOIN pg_class p ON p.oid = i.inhparent " +
+            "WHERE p.relname = ? ORDER BY c.relname";
+    
+    // Offsets for the maintenance advisory locks, clear of the outbox shard locks; archive locks add
+    // the partition's yyyyMM
+    private static final long MAINTENANCE_LOCK = 0x5741_4C01_0000L;
+    private static final long ARCHIVE_LOCK_BASE = 0x5741_4C02_0000L;
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ColdLedgerStore coldLedgerStore;
+    
+    @Value("${wallet.ledger.partitioning.enabled:false}")
+    private boolean enabled;
+    
+    @Value("${wallet.ledger.partitioning.months-ahead:3}")
+    private int monthsAhead;
+    
+    @Value("${wallet.ledger.archive.enabled:false}")
+    private boolean archiveEnabled;
+    
+    @Value("${wallet.ledger.archive.horizon-months:12}")
+    private int horizonMonths;
+    
+    @Value("${wallet.ledger.archive.fetch-size:5000}")
+    private int fetchSize;
+    
+    @Scheduled(cron = "${wallet.ledger.partitioning.cron:0 30 1 * * *}")
+    public void maintainPartitions() {
+        if (!enabled) {
+            return;
+        }
+        if (!isPartitioned()) {
+            log.warn("wallet.ledger.partitioning.enabled is set but {} is not partitioned; " +
+                    "run db/ledger_entries_partitioning.sql first", PARENT_TABLE);
+            return;
+        }
+        
+        createUpcomingPartitions();
+        if (archiveEnabled) {
+            archiveExpiredPartitions();
+        }
+    }
+    
+    private boolean isPartitioned() {
+        Boolean partitioned = jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM pg_partitioned_table pt JOIN pg_class c ON c.oid = pt.partrelid " +
+                "WHERE c.relname = ?)", Boolean.class, PARENT_TABLE);
+        return Boolean.TRUE.equals(partitioned);
+    }
+    
+    // Every replica runs the job; whichever takes the lock creates the partitions for all of them
+    private void createUpcomingPartitions() {
+        transactionTemplate.executeWithoutResult(status -> {
+            if (!tryLock(MAINTENANCE_LOCK)) {
+                return;
+            }
+            YearMonth current = YearMonth.now(ZoneOffset.UTC);
+            for (int i = 0; i <= monthsAhead; i++) {
+                YearMonth month = current.plusMonths(i);
+                jdbcTemplate.execute(String.format(
+                        "CREATE TABLE IF NOT EXISTS %s PARTITION OF %s FOR VALUES FROM ('%s') TO ('%s')",
+                        partitionName(month), PARENT_TABLE, monthStart(month), monthStart(month.plusMonths(1))));
+            }
+        });
+    }
+    
+    private void archiveExpiredPartitions() {
+        YearMonth oldestHot = YearMonth.now(ZoneOffset.UTC).minusMonths(horizonMonths);
+        List<String> partitions = jdbcTemplate.queryForList(SELECT_PARTITIONS, String.class, PARENT_TABLE);
+        
+        for (String partition : partitions) {
+            Matcher matcher = MONTHLY_PARTITION.matcher(partition);
+            if (!matcher.matches() || !YearMonth.parse(matcher.group(1), PARTITION_SUFFIX).isBefore(oldestHot)) {
+                continue;
+            }
+            try {
+                archive(partition, ARCHIVE_LOCK_BASE + Long.parseLong(matcher.group(1)));
+            } catch (Exception e) {
+                log.error("Failed to archive ledger partition {}", partition, e);
+            }
+        }
+    }
+    
+    // One transaction per partition holding its advisory lock, so two replicas never export or
+    // detach the same partition. The file is complete and visible to readers before the partition is
+    // dropped, so a failure in between only means the next run archives the same rows again.
+    // Rows are sorted in the "C" collation so the row group wallet ranges follow the same order as
+    // the String comparison used when reading them back.
+    private void archive(String partition, long lockKey) {
+        Long archived = transactionTemplate.execute(status -> {
+            if (!tryLock(lockKey) || !isAttached(partition)) {
+                return null;
+            }
+            try (ColdLedgerStore.Writer writer = coldLedgerStore.open(partition)) {
+                jdbcTemplate.query(connection -> {
+                    PreparedStatement statement = connection.prepareStatement(
+                            "SELECT id, entry_id, transaction_id, wallet_id, entry_type, entry_side, amount, " +
+                            "balance_before, balance_after, description, created_at FROM " + partition +
+                            " ORDER BY wallet_id COLLATE \"C\", id");
+                    statement.setFetchSize(fetchSize);
+                    return statement;
+                }, (RowCallbackHandler) rs -> {
+                    try {
+                        writer.append(new ArchivedEntry(
+                                rs.getLong("id"),
+                                rs.getString("entry_id"),
+                                rs.getLong("transaction_id"),
+                                rs.getString("wallet_id"),
+                                rs.getString("entry_type"),
+                                rs.getString("entry_side"),
+                                MinorUnits.of(rs.getBigDecimal("amount")),
+                                MinorUnits.of(rs.getBigDecimal("balance_before")),
+                                MinorUnits.of(rs.getBigDecimal("balance_after")),
+                                rs.getString("description"),
+                                ColdLedgerStore.toMicros(rs.getObject("created_at", OffsetDateTime.class).toInstant())));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                long rows = writer.commit();
+                
+                jdbcTemplate.execute("ALTER TABLE " + PARENT_TABLE + " DETACH PARTITION " + partition);
+                jdbcTemplate.execute("DROP TABLE " + partition);
+                return rows;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        
+        if (archived != null) {
+            log.info("Archived ledger partition {} ({} entries) to cold storage", partition, archived);
+        }
+    }
+    
+    private boolean tryLock(long lockKey) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT pg_try_advisory_xact_lock(?)", Boolean.class, lockKey));
+    }
+    
+    // Another replica may have archived it between listing the partitions and taking the lock
+    private boolean isAttached(String partition) {
+        return jdbcTemplate.queryForList(SELECT_PARTITIONS, String.class, PARENT_TABLE).contains(partition);
+    }
+    
+    private String partitionName(YearMonth month) {
+        return PARENT_TABLE + "_p" + month.format(PARTITION_SUFFIX);
+    }
+    
+    private String monthStart(YearMonth month) {
+        return month.atDay(1).atStartOfDay().atOffset(ZoneOffset.UTC).toString();
+    }
+}
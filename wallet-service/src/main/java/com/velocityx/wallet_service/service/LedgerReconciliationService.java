@@ -0,0 +1,230 @@
+package com.velocityx.wallet_service.service;
+
+import com.velocityx.wallet_service.metrics.WalletMetric;
+import com.velocityx.wallet_service.metrics.WalletMetrics;
+import com.velocityx.wallet_service.util.MinorUnits;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class LedgerReconciliationService {
+    
+    // Hold and release entries move available balance only, so they are skipped in the sum but
+    // still advance the checkpoint.
+    private static final String RECONCILE_RANGE =
+            "SELECT w.wallet_id, w.balance, c.balance AS checkpoint_balance, c.last_entry_id, " +
+            "d.delta, d.entries, d.max_entry_id " +
+            "FROM wallets w " +
+            "LEFT JOIN ledger_checkpoints c ON c.wallet_id = w.wallet_id " +
+            "LEFT JOIN LATERAL (" +
+            "  SELECT SUM(CASE WHEN e.entry_side = 'CR' THEN e.amount ELSE -e.amount END) " +
+            "           FILTER (WHERE t.transaction_type NOT IN ('HOLD', 'RELEASE')) AS delta, " +
+            "         COUNT(*) AS entries, MAX(e.id) AS max_entry_id " +
+            "  FROM ledger_entries e JOIN wallet_transactions t ON t.id = e.transaction_id " +
+            "  WHERE e.wallet_id = w.wallet_id AND e.id > COALESCE(c.last_entry_id, 0)" +
+            ") d ON TRUE " +
+            "WHERE w.id BETWEEN ? AND ?";
+    
+    private static final String UPSERT_CHECKPOINT =
+            "INSERT INTO ledger_checkpoints (wallet_id, balance, last_entry_id, checked_at) VALUES (?, ?, ?, ?) " +
+            "ON CONFLICT (wallet_id) DO UPDATE SET balance = EXCLUDED.balance, " +
+            "last_entry_id = EXCLUDED.last_entry_id, checked_at = EXCLUDED.checked_at";
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private final WalletMetrics walletMetrics;
+    
+    @Value("${wallet.reconciliation.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${wallet.reconciliation.parallelism:4}")
+    private int parallelism;
+    
+    @Value("${wallet.reconciliation.range-size:5000}")
+    private long rangeSize;
+    
+    @Value("${wallet.reconciliation.fetch-size:1000}")
+    private int fetchSize;
+    
+    @Value("${wallet.reconciliation.max-reported-drifts:1000}")
+    private int maxReportedDrifts;
+    
+    private final AtomicBoolean running = new AtomicBoolean();
+    
+    private volatile ReconciliationReport lastReport;
+    
+    @Scheduled(cron = "${wallet.reconciliation.cron:0 0 2 * * *}")
+    public void scheduledReconcile() {
+        if (enabled) {
+            reconcile();
+        }
+    }
+    
+    public ReconciliationReport getLastReport() {
+        return lastReport;
+    }
+    
+    public ReconciliationReport reconcile() {
+        if (!running.compareAndSet(false, true)) {
+            log.warn("Ledger reconciliation already running, returning the previous report");
+            return lastReport;
+        }
+        
+        try {
+            Instant startedAt = Instant.now();
+            Long minId = jdbcTemplate.queryForObject("SELECT MIN(id) FROM wallets", Long.class);
+            Long maxId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM wallets", Long.class);
+            
+            RangeResult result = new RangeResult();
+            if (minId != null && maxId != null) {
+                ForkJoinPool pool = new ForkJoinPool(Math.max(parallelism, 1));
+                try {
+                    result = pool.invoke(new ReconcileTask(minId, maxId));
+                } finally {
+                    pool.shutdown();
+                }
+            }
+            
+            ReconciliationReport report = new ReconciliationReport(startedAt, Instant.now(), result.walletsChecked,
+                    result.entriesScanned, result.driftCount, List.copyOf(result.drifts));
+            lastReport = report;
+            
+            walletMetrics.increment(WalletMetric.RECONCILIATION_DRIFTS, result.driftCount);
+            log.info("Ledger reconciliation finished: wallets={}, entries={}, drifts={}, took={}ms",
+                    result.walletsChecked, result.entriesScanned, result.driftCount,
+                    report.finishedAt().toEpochMilli() - startedAt.toEpochMilli());
+            return report;
+        } finally {
+            running.set(false);
+        }
+    }
+    
+    // Each range reads wallets and entries from one REPEATABLE READ snapshot. Writers lock the wallet
+    // row before inserting its entries, so per wallet the entry ids commit in order and a checkpoint
+    // at the highest seen id can never skip a late commit.
+    private RangeResult reconcileRange(long fromId, long toId) {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        
+        return template.execute(status -> {
+            RangeResult result = new RangeResult();
+            List<Object[]> checkpoints = new ArrayList<>();
+            Timestamp now = Timestamp.from(Instant.now());
+            
+            jdbcTemplate.query(connection -> {
+                PreparedStatement statement = connection.prepareStatement(RECONCILE_RANGE);
+                statement.setFetchSize(fetchSize);
+                statement.setLong(1, fromId);
+                statement.setLong(2, toId);
+                return statement;
+            }, (RowCallbackHandler) rs -> {
+                result.walletsChecked++;
+                
+                long walletBalance = MinorUnits.of(rs.getBigDecimal("balance"));
+                long expected = minorOrZero(rs, "checkpoint_balance");
+                long delta = minorOrZero(rs, "delta");
+                long entries = rs.getLong("entries");
+                expected = MinorUnits.add(expected, delta);
+                result.entriesScanned += entries;
+                
+                if (entries > 0) {
+                    checkpoints.add(new Object[] {rs.getString("wallet_id"), MinorUnits.toDecimal(expected),
+                            rs.getLong("max_entry_id"), now});
+                }
+                
+                if (walletBalance != expected) {
+                    result.driftCount++;
+                    if (result.drifts.size() < maxReportedDrifts) {
+                        result.drifts.add(new Drift(rs.getString("wallet_id"), MinorUnits.toDecimal(walletBalance),
+                                MinorUnits.toDecimal(expected), MinorUnits.toDecimal(walletBalance - expected)));
+                    }
+                }
+            });
+            
+            if (!checkpoints.isEmpty()) {
+                jdbcTemplate.batchUpdate(UPSERT_CHECKPOINT, checkpoints);
+            }
+            return result;
+        });
+    }
+    
+    private static long minorOrZero(ResultSet rs, String column) throws SQLException {
+        BigDecimal value = rs.getBigDecimal(column);
+        return value == null ? 0L : MinorUnits.of(value);
+    }
+    
+    private final class ReconcileTask extends RecursiveTask<RangeResult> {
+        
+        private final long fromId;
+        private final long toId;
+        
+        private ReconcileTask(long fromId, long toId) {
+            this.fromId = fromId;
+            this.toId = toId;
+        }
+        
+        @Override
+        protected RangeResult compute() {
+            if (toId - fromId < rangeSize) {
+                try {
+                    return reconcileRange(fromId, toId);
+                } catch (Exception e) {
+                    log.error("Ledger reconciliation failed for wallet ids {}-{}", fromId, toId, e);
+                    return new RangeResult();
+                }
+            }
+            
+            long middle = fromId + (toId - fromId) / 2;
+            ReconcileTask left = new ReconcileTask(fromId, middle);
+            ReconcileTask right = new ReconcileTask(middle + 1, toId);
+            left.fork();
+            RangeResult result = right.compute();
+            return result.merge(left.join());
+        }
+    }
+    
+    private final class RangeResult {
+        
+        private long walletsChecked;
+        private long entriesScanned;
+        private long driftCount;
+        private final List<Drift> drifts = new ArrayList<>();
+        
+        private RangeResult merge(RangeResult other) {
+            walletsChecked += other.walletsChecked;
+            entriesScanned += other.entriesScanned;
+            driftCount += other.driftCount;
+            other.drifts.stream().limit(Math.max(maxReportedDrifts - drifts.size(), 0)).forEach(drifts::add);
+            return this;
+        }
+    }
+    
+    public record Drift(String walletId, BigDecimal walletBalance, BigDecimal ledgerBalance, BigDecimal difference) {
+    }
+    
+    public record ReconciliationReport(Instant startedAt, Instant finishedAt, long walletsChecked,
+                                       long entriesScanned, long driftCount, List<Drift> drifts) {
+    }
+}
@@ -1,17 +1,28 @@
 package com.velocityx.wallet_service.service;
 
 import com.velocityx.wallet_service.entity.LedgerEntry;
+import com.velocityx.wallet_service.entity.PendingCredit;
 import com.velocityx.wallet_service.entity.Wallet;
 import com.velocityx.wallet_service.entity.WalletTransaction;
 import com.velocityx.wallet_service.enums.LedgerEntryType;
+import com.velocityx.wallet_service.enums.TransactionStatus;
+import com.velocityx.wallet_service.enums.TransactionType;
 import com.velocityx.wallet_service.repository.LedgerEntryRepository;
+import com.velocityx.wallet_service.repository.PendingCreditRepository;
 import com.velocityx.wallet_service.repository.WalletRepository;
+import com.velocityx.wallet_service.repository.WalletTransactionRepository;
+import com.velocityx.wallet_service.service.GuardedBalanceUpdater.BalanceChange;
+import com.velocityx.wallet_service.util.MinorUnits;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 
 @Service
@@ -21,10 +32,14 @@ public class LedgerService {
     
     private final WalletRepository walletRepository;
     private final LedgerEntryRepository ledgerEntryRepository;
+    private final WalletTransactionRepository transactionRepository;
+    private final PendingCreditRepository pendingCreditRepository;
+    private final LedgerBatchWriter ledgerBatchWriter;
+    private final WalletBalanceCache balanceCache;
     
     @Transactional
     public void createCreditEntries(WalletTransaction transaction, Wallet wallet, Wallet systemWallet) {
-        BigDecimal amount = transaction.getAmount();
+        long amount = MinorUnits.of(transaction.getAmount());
         
         LedgerEntry walletCredit = LedgerEntry.builder()
                 .entryId(generateEntryId())
@@ -32,9 +47,9 @@ public class LedgerService {
                 .walletId(wallet.getWalletId())
                 .entryType(LedgerEntryType.CREDIT)
                 .entrySide("CR")
-                .amount(amount)
-                .balanceBefore(wallet.getBalance())
-                .balanceAfter(wallet.getBalance().add(amount))
+                .amountMinor(amount)
+                .balanceBeforeMinor(wallet.getBalanceMinor())
+                .balanceAfterMinor(MinorUnits.add(wallet.getBalanceMinor(), amount))
                 .description("Credit: " + transaction.getDescription())
                 .build();
         
@@ -44,27 +59,30 @@ public class LedgerService {
                 .walletId(systemWallet.getWalletId())
                 .entryType(LedgerEntryType.DEBIT)
                 .entrySide("DR")
-                .amount(amount)
-                .balanceBefore(systemWallet.getBalance())
-                .balanceAfter(systemWallet.getBalance().subtract(amount))
+                .amountMinor(amount)
+                .balanceBeforeMinor(systemWallet.getBalanceMinor())
+                .balanceAfterMinor(MinorUnits.subtract(systemWallet.getBalanceMinor(), amount))
                 .description("System debit for: " + transaction.getTransactionId())
                 .build();
         
-        transaction.addLedgerEntry(walletCredit);
-        transaction.addLedgerEntry(systemDebit);
+        addEntry(transaction, walletCredit);
+        addEntry(transaction, systemDebit);
         
         transaction.setBalanceBefore(wallet.getBalance());
         wallet.credit(amount);
         transaction.setBalanceAfter(wallet.getBalance());
         
-        walletRepository.save(wallet);
+        systemWallet.debit(amount);
+        
+        saveWallet(wallet);
+        saveWallet(systemWallet);
         
-        log.info("Created credit ledger entries: txnId={}, amount={}", transaction.getTransactionId(), amount);
+        log.info("Created credit ledger entries: txnId={}, amount={}", transaction.getTransactionId(), transaction.getAmount());
     }
     
     @Transactional
     public void createDebitEntries(WalletTransaction transaction, Wallet wallet, Wallet systemWallet) {
-        BigDecimal amount = transaction.getAmount();
+        long amount = MinorUnits.of(transaction.getAmount());
         
         LedgerEntry walletDebit = LedgerEntry.builder()
                 .entryId(generateEntryId())
@@ -72,9 +90,9 @@ public class LedgerService {
                 .walletId(wallet.getWalletId())
                 .entryType(LedgerEntryType.DEBIT)
                 .entrySide("DR")
-                .amount(amount)
-                .balanceBefore(wallet.getBalance())
-                .balanceAfter(wallet.getBalance().subtract(amount))
+                .amountMinor(amount)
+                .balanceBeforeMinor(wallet.getBalanceMinor())
+                .balanceAfterMinor(MinorUnits.subtract(wallet.getBalanceMinor(), amount))
                 .description("Debit: " + transaction.getDescription())
                 .build();
         
@@ -84,27 +102,30 @@ public class LedgerService {
                 .walletId(systemWallet.getWalletId())
                 .entryType(LedgerEntryType.CREDIT)
                 .entrySide("CR")
-                .amount(amount)
-                .balanceBefore(systemWallet.getBalance())
-                .balanceAfter(systemWallet.getBalance().add(amount))
+                .amountMinor(amount)
+                .balanceBeforeMinor(systemWallet.getBalanceMinor())
+                .balanceAfterMinor(MinorUnits.add(systemWallet.getBalanceMinor(), amount))
                 .description("System credit for: " + transaction.getTransactionId())
                 .build();
         
-        transaction.addLedgerEntry(walletDebit);
-        transaction.addLedgerEntry(systemCredit);
+        addEntry(transaction, walletDebit);
+        addEntry(transaction, systemCredit);
         
         transaction.setBalanceBefore(wallet.getBalance());
         wallet.debit(amount);
         transaction.setBalanceAfter(wallet.getBalance());
         
-        walletRepository.save(wallet);
+        systemWallet.credit(amount);
+        
+        saveWallet(wallet);
+        saveWallet(systemWallet);
         
-        log.info("Created debit ledger entries: txnId={}, amount={}", transaction.getTransactionId(), amount);
+        log.info("Created debit ledger entries: txnId={}, amount={}", transaction.getTransactionId(), transaction.getAmount());
     }
     
     @Transactional
     public void createHoldEntries(WalletTransaction transaction, Wallet wallet) {
-        BigDecimal amount = transaction.getAmount();
+        long amount = MinorUnits.of(transaction.getAmount());
         
         LedgerEntry availableDebit = LedgerEntry.builder()
                 .entryId(generateEntryId())
@@ -112,26 +133,84 @@ public class LedgerService {
                 .walletId(wallet.getWalletId())
                 .entryType(LedgerEntryType.DEBIT)
                 .entrySide("DR")
-                .amount(amount)
-                .balanceBefore(wallet.getAvailableBalance())
-                .balanceAfter(wallet.getAvailableBalance().subtract(amount))
+                .amountMinor(amount)
+                .balanceBeforeMinor(wallet.getAvailableBalanceMinor())
+                .balanceAfterMinor(MinorUnits.subtract(wallet.getAvailableBalanceMinor(), amount))
                 .description("Hold: Available to Reserved")
                 .build();
         
-        transaction.addLedgerEntry(availableDebit);
+        addEntry(transaction, availableDebit);
         
         transaction.setBalanceBefore(wallet.getAvailableBalance());
         wallet.holdFunds(amount);
         transaction.setBalanceAfter(wallet.getAvailableBalance());
         
-        walletRepository.save(wallet);
+        saveWallet(wallet);
+        
+        log.info("Created hold ledger entries: txnId={}, amount={}", transaction.getTransactionId(), transaction.getAmount());
+    }
+    
+    // Guarded variants: the wallets were already updated by a single conditional statement, the
+    // entries only record the before/after values it returned.
+    @Transactional
+    public void createGuardedDebitEntries(WalletTransaction transaction, BalanceChange wallet, BalanceChange systemWallet) {
+        long amount = MinorUnits.of(transaction.getAmount());
+        
+        addEntry(transaction, LedgerEntry.builder()
+                .entryId(generateEntryId())
+                .transaction(transaction)
+                .walletId(wallet.walletId())
+                .entryType(LedgerEntryType.DEBIT)
+                .entrySide("DR")
+                .amountMinor(amount)
+                .balanceBeforeMinor(wallet.balanceBefore())
+                .balanceAfterMinor(wallet.balanceAfter())
+                .description("Debit: " + transaction.getDescription())
+                .build());
+        
+        addEntry(transaction, LedgerEntry.builder()
+                .entryId(generateEntryId())
+                .transaction(transaction)
+                .walletId(systemWallet.walletId())
+                .entryType(LedgerEntryType.CREDIT)
+                .entrySide("CR")
+                .amountMinor(amount)
+                .balanceBeforeMinor(systemWallet.balanceBefore())
+                .balanceAfterMinor(systemWallet.balanceAfter())
+                .description("System credit for: " + transaction.getTransactionId())
+                .build());
+        
+        transaction.setBalanceBefore(MinorUnits.toDecimal(wallet.balanceBefore()));
+        transaction.setBalanceAfter(MinorUnits.toDecimal(wallet.balanceAfter()));
+        
+        log.info("Created debit ledger entries: txnId={}, amount={}", transaction.getTransactionId(), transaction.getAmount());
+    }
+    
+    @Transactional
+    public void createGuardedHoldEntries(WalletTransaction transaction, BalanceChange wallet) {
+        long amount = MinorUnits.of(transaction.getAmount());
+        
+        addEntry(transaction, LedgerEntry.builder()
+                .entryId(generateEntryId())
+                .transaction(transaction)
+                .walletId(wallet.walletId())
+                .entryType(LedgerEntryType.DEBIT)
+                .entrySide("DR")
+                .amountMinor(amount)
+                .balanceBeforeMinor(wallet.availableBefore())
+                .balanceAfterMinor(wallet.availableAfter())
+                .description("Hold: Available to Reserved")
+                .build());
+        
+        transaction.setBalanceBefore(MinorUnits.toDecimal(wallet.availableBefore()));
+        transaction.setBalanceAfter(MinorUnits.toDecimal(wallet.availableAfter()));
         
-        log.info("Created hold ledger entries: txnId={}, amount={}", transaction.getTransactionId(), amount);
+        log.info("Created hold ledger entries: txnId={}, amount={}", transaction.getTransactionId(), transaction.getAmount());
     }
     
     @Transactional
     public void createCaptureEntries(WalletTransaction transaction, Wallet wallet, Wallet platformWallet) {
-        BigDecimal amount = transaction.getAmount();
+        long amount = MinorUnits.of(transaction.getAmount());
         
         LedgerEntry heldDebit = LedgerEntry.builder()
                 .entryId(generateEntryId())
@@ -139,9 +218,9 @@ public class LedgerService {
                 .walletId(wallet.getWalletId())
                 .entryType(LedgerEntryType.DEBIT)
                 .entrySide("DR")
-                .amount(amount)
-                .balanceBefore(wallet.getBalance())
-                .balanceAfter(wallet.getBalance().subtract(amount))
+                .amountMinor(amount)
+                .balanceBeforeMinor(wallet.getBalanceMinor())
+                .balanceAfterMinor(MinorUnits.subtract(wallet.getBalanceMinor(), amount))
                 .description("Capture: Held funds deducted")
                 .build();
         
@@ -151,14 +230,14 @@ public class LedgerService {
                 .walletId(platformWallet.getWalletId())
                 .entryType(LedgerEntryType.CREDIT)
                 .entrySide("CR")
-                .amount(amount)
-                .balanceBefore(platformWallet.getBalance())
-                .balanceAfter(platformWallet.getBalance().add(amount))
+                .amountMinor(amount)
+                .balanceBeforeMinor(platformWallet.getBalanceMinor())
+                .balanceAfterMinor(MinorUnits.add(platformWallet.getBalanceMinor(), amount))
                 .description("Capture: Platform credit")
                 .build();
         
-        transaction.addLedgerEntry(heldDebit);
-        transaction.addLedgerEntry(platformCredit);
+        addEntry(transaction, heldDebit);
+        addEntry(transaction, platformCredit);
         
         transaction.setBalanceBefore(wallet.getBalance());
         wallet.captureHold(amount);
@@ -166,15 +245,15 @@ public class LedgerService {
         
         platformWallet.credit(amount);
         
-        walletRepository.save(wallet);
-        walletRepository.save(platformWallet);
+        saveWallet(wallet);
+        saveWallet(platformWallet);
         
-        log.info("Created capture ledger entries: txnId={}, amount={}", transaction.getTransactionId(), amount);
+        log.info("Created capture ledger entries: txnId={}, amount={}", transaction.getTransactionId(), transaction.getAmount());
     }
     
     @Transactional
     public void createReleaseEntries(WalletTransaction transaction, Wallet wallet) {
-        BigDecimal amount = transaction.getAmount();
+        long amount = MinorUnits.of(transaction.getAmount());
         
         LedgerEntry releaseCredit = LedgerEntry.builder()
                 .entryId(generateEntryId())
@@ -182,27 +261,27 @@ public class LedgerService {
                 .walletId(wallet.getWalletId())
                 .entryType(LedgerEntryType.CREDIT)
                 .entrySide("CR")
-                .amount(amount)
-                .balanceBefore(wallet.getAvailableBalance())
-                .balanceAfter(wallet.getAvailableBalance().add(amount))
+                .amountMinor(amount)
+                .balanceBeforeMinor(wallet.getAvailableBalanceMinor())
+                .balanceAfterMinor(MinorUnits.add(wallet.getAvailableBalanceMinor(), amount))
                 .description("Release: Hold returned to available")
                 .build();
         
-        transaction.addLedgerEntry(releaseCredit);
+        addEntry(transaction, releaseCredit);
         
         transaction.setBalanceBefore(wallet.getAvailableBalance());
         wallet.releaseHold(amount);
         transaction.setBalanceAfter(wallet.getAvailableBalance());
         
-        walletRepository.save(wallet);
+        saveWallet(wallet);
         
-        log.info("Created release ledger entries: txnId={}, amount={}", transaction.getTransactionId(), amount);
+        log.info("Created release ledger entries: txnId={}, amount={}", transaction.getTransactionId(), transaction.getAmount());
     }
     
     @Transactional
     public void createTransferEntries(WalletTransaction senderTxn, WalletTransaction receiverTxn,
                                        Wallet senderWallet, Wallet receiverWallet) {
-        BigDecimal amount = senderTxn.getAmount();
+        long amount = MinorUnits.of(senderTxn.getAmount());
         
         LedgerEntry senderDebit = LedgerEntry.builder()
                 .entryId(generateEntryId())
@@ -210,9 +289,9 @@ public class LedgerService {
                 .walletId(senderWallet.getWalletId())
                 .entryType(LedgerEntryType.DEBIT)
                 .entrySide("DR")
-                .amount(amount)
-                .balanceBefore(senderWallet.getBalance())
-                .balanceAfter(senderWallet.getBalance().subtract(amount))
+                .amountMinor(amount)
+                .balanceBeforeMinor(senderWallet.getBalanceMinor())
+                .balanceAfterMinor(MinorUnits.subtract(senderWallet.getBalanceMinor(), amount))
                 .description("Transfer out to: " + receiverWallet.getWalletId())
                 .build();
         
@@ -222,14 +301,14 @@ public class LedgerService {
                 .walletId(receiverWallet.getWalletId())
                 .entryType(LedgerEntryType.CREDIT)
                 .entrySide("CR")
-                .amount(amount)
-                .balanceBefore(receiverWallet.getBalance())
-                .balanceAfter(receiverWallet.getBalance().add(amount))
+                .amountMinor(amount)
+                .balanceBeforeMinor(receiverWallet.getBalanceMinor())
+                .balanceAfterMinor(MinorUnits.add(receiverWallet.getBalanceMinor(), amount))
                 .description("Transfer in from: " + senderWallet.getWalletId())
                 .build();
         
-        senderTxn.addLedgerEntry(senderDebit);
-        receiverTxn.addLedgerEntry(receiverCredit);
+        addEntry(senderTxn, senderDebit);
+        addEntry(receiverTxn, receiverCredit);
         
         senderTxn.setBalanceBefore(senderWallet.getBalance());
         senderWallet.debit(amount);
@@ -239,13 +318,313 @@ public class LedgerService {
         receiverWallet.credit(amount);
         receiverTxn.setBalanceAfter(receiverWallet.getBalance());
         
-        walletRepository.save(senderWallet);
-        walletRepository.save(receiverWallet);
+        saveWallet(senderWallet);
+        saveWallet(receiverWallet);
+        
+        log.info("Created transfer ledger entries: amount={}", senderTxn.getAmount());
+    }
+    
+    // Netted variants: only the counter side is posted now. The receiver's credit is staged and
+    // posted later by applyPendingCredits, and its transaction stays PENDING until then.
+    @Transactional
+    public void createNettedCreditEntries(WalletTransaction transaction, String walletId, Wallet systemWallet) {
+        long amount = MinorUnits.of(transaction.getAmount());
+        
+        LedgerEntry systemDebit = LedgerEntry.builder()
+                .entryId(generateEntryId())
+                .transaction(transaction)
+                .walletId(systemWallet.getWalletId())
+                .entryType(LedgerEntryType.DEBIT)
+                .entrySide("DR")
+                .amountMinor(amount)
+                .balanceBeforeMinor(systemWallet.getBalanceMinor())
+                .balanceAfterMinor(MinorUnits.subtract(systemWallet.getBalanceMinor(), amount))
+                .description("System debit for: " + transaction.getTransactionId())
+                .build();
+        
+        addEntry(transaction, systemDebit);
+        systemWallet.debit(amount);
+        saveWallet(systemWallet);
+        
+        stageCredit(transaction, walletId, amount, "Credit: " + transaction.getDescription());
+        
+        log.info("Created netted credit entries: txnId={}, amount={}", transaction.getTransactionId(), transaction.getAmount());
+    }
+    
+    @Transactional
+    public void createNettedTransferEntries(WalletTransaction senderTxn, WalletTransaction receiverTxn,
+                                            Wallet senderWallet, String receiverWalletId) {
+        long amount = MinorUnits.of(senderTxn.getAmount());
+        
+        LedgerEntry senderDebit = LedgerEntry.builder()
+                .entryId(generateEntryId())
+                .transaction(senderTxn)
+                .walletId(senderWallet.getWalletId())
+                .entryType(LedgerEntryType.DEBIT)
+                .entrySide("DR")
+                .amountMinor(amount)
+                .balanceBeforeMinor(senderWallet.getBalanceMinor())
+                .balanceAfterMinor(MinorUnits.subtract(senderWallet.getBalanceMinor(), amount))
+                .description("Transfer out to: " + receiverWalletId)
+                .build();
+        
+        addEntry(senderTxn, senderDebit);
+        
+        senderTxn.setBalanceBefore(senderWallet.getBalance());
+        senderWallet.debit(amount);
+        senderTxn.setBalanceAfter(senderWallet.getBalance());
+        saveWallet(senderWallet);
+        
+        stageCredit(receiverTxn, receiverWalletId, amount, "Transfer in from: " + senderWallet.getWalletId());
+        
+        log.info("Created netted transfer entries: amount={}", senderTxn.getAmount());
+    }
+    
+    // Caller holds the wallet lock. Entries are written in staging order with running balances, so
+    // they read exactly as if each credit had been applied on its own.
+    @Transactional
+    public void applyPendingCredits(Wallet wallet, List<PendingCredit> credits) {
+        for (PendingCredit credit : credits) {
+            WalletTransaction transaction = credit.getTransaction();
+            
+            LedgerEntry walletCredit = LedgerEntry.builder()
+                    .entryId(generateEntryId())
+                    .transaction(transaction)
+                    .walletId(wallet.getWalletId())
+                    .entryType(LedgerEntryType.CREDIT)
+                    .entrySide("CR")
+                    .amountMinor(credit.getAmountMinor())
+                    .balanceBeforeMinor(wallet.getBalanceMinor())
+                    .balanceAfterMinor(MinorUnits.add(wallet.getBalanceMinor(), credit.getAmountMinor()))
+                    .description(credit.getDescription())
+                    .build();
+            
+            addEntry(transaction, walletCredit);
+            
+            transaction.setBalanceBefore(wallet.getBalance());
+            wallet.credit(credit.getAmountMinor());
+            transaction.setBalanceAfter(wallet.getBalance());
+            transaction.complete();
+            transactionRepository.save(transaction);
+        }
+        
+        saveWallet(wallet);
+        pendingCreditRepository.deleteAllInBatch(credits);
+        
+        log.info("Applied netted credits: walletId={}, count={}", wallet.getWalletId(), credits.size());
+    }
+    
+    // Fee and interest runs: every posting of a chunk in one pass, with transactions and entries
+    // written as JDBC batches. The caller holds the locks on all wallets and contra stripes involved.
+    @Transactional
+    public void createPostingEntries(List<Posting> postings) {
+        List<WalletTransaction> transactions = new ArrayList<>(postings.size());
+        List<LedgerEntry> entries = new ArrayList<>(postings.size() * 2);
+        Set<Wallet> touched = Collections.newSetFromMap(new IdentityHashMap<>());
+        
+        for (Posting posting : postings) {
+            WalletTransaction transaction = posting.transaction();
+            Wallet wallet = posting.wallet();
+            Wallet contraWallet = posting.contraWallet();
+            long amount = MinorUnits.of(transaction.getAmount());
+            boolean creditWallet = transaction.getTransactionType() != TransactionType.FEE;
+            
+            entries.add(LedgerEntry.builder()
+                    .entryId(generateEntryId())
+                    .transaction(transaction)
+                    .walletId(wallet.getWalletId())
+                    .entryType(creditWallet ? LedgerEntryType.CREDIT : LedgerEntryType.DEBIT)
+                    .entrySide(creditWallet ? "CR" : "DR")
+                    .amountMinor(amount)
+                    .balanceBeforeMinor(wallet.getBalanceMinor())
+                    .balanceAfterMinor(creditWallet ? MinorUnits.add(wallet.getBalanceMinor(), amount)
+                            : MinorUnits.subtract(wallet.getBalanceMinor(), amount))
+                    .description(transaction.getDescription())
+                    .build());
+            
+            entries.add(LedgerEntry.builder()
+                    .entryId(generateEntryId())
+                    .transaction(transaction)
+                    .walletId(contraWallet.getWalletId())
+                    .entryType(creditWallet ? LedgerEntryType.DEBIT : LedgerEntryType.CREDIT)
+                    .entrySide(creditWallet ? "DR" : "CR")
+                    .amountMinor(amount)
+                    .balanceBeforeMinor(contraWallet.getBalanceMinor())
+                    .balanceAfterMinor(creditWallet ? MinorUnits.subtract(contraWallet.getBalanceMinor(), amount)
+                            : MinorUnits.add(contraWallet.getBalanceMinor(), amount))
+                    .description(transaction.getTransactionType() + " contra for: " + transaction.getTransactionId())
+                    .build());
+            
+            transaction.setBalanceBefore(wallet.getBalance());
+            if (creditWallet) {
+                wallet.credit(amount);
+                contraWallet.debit(amount);
+            } else {
+                wallet.debit(amount);
+                contraWallet.credit(amount);
+            }
+            transaction.setBalanceAfter(wallet.getBalance());
+            transaction.complete();
+            
+            transactions.add(transaction);
+            touched.add(wallet);
+            touched.add(contraWallet);
+        }
+        
+        ledgerBatchWriter.insertTransactions(transactions);
+        ledgerBatchWriter.insertEntries(entries);
+        touched.forEach(this::saveWallet);
+        
+        log.info("Created posting ledger entries: postings={}", postings.size());
+    }
+    
+    @Transactional
+    public boolean consolidateContraStripe(String stripeWalletId, String accountWalletId) {
+        Wallet accountWallet = walletRepository.findByWalletIdForUpdate(accountWalletId).orElse(null);
+        Wallet stripeWallet = walletRepository.findByWalletIdForUpdate(stripeWalletId).orElse(null);
+        
+        if (accountWallet == null || stripeWallet == null || stripeWallet.getBalanceMinor() == 0L) {
+            return false;
+        }
+        
+        long net = stripeWallet.getBalanceMinor();
+        long amount = Math.abs(net);
+        boolean stripeInCredit = net > 0;
+        
+        WalletTransaction transaction = WalletTransaction.builder()
+                .transactionId(generateTransactionId())
+                .idempotencyKey("CONSOLIDATION-" + UUID.randomUUID())
+                .walletId(accountWallet.getWalletId())
+                .userId(accountWallet.getUserId())
+                .transactionType(TransactionType.CONSOLIDATION)
+                .status(TransactionStatus.PENDING)
+                .amount(MinorUnits.toDecimal(amount))
+                .currency(accountWallet.getCurrency())
+                .description("Consolidation of stripe: " + stripeWalletId)
+                .counterpartyWalletId(stripeWalletId)
+                .build();
+        
+        LedgerEntry stripeEntry = LedgerEntry.builder()
+                .entryId(generateEntryId())
+                .transaction(transaction)
+                .walletId(stripeWallet.getWalletId())
+                .entryType(stripeInCredit ? LedgerEntryType.DEBIT : LedgerEntryType.CREDIT)
+                .entrySide(stripeInCredit ? "DR" : "CR")
+                .amountMinor(amount)
+                .balanceBeforeMinor(stripeWallet.getBalanceMinor())
+                .balanceAfterMinor(0L)
+                .description("Consolidation out to: " + accountWallet.getWalletId())
+                .build();
+        
+        LedgerEntry accountEntry = LedgerEntry.builder()
+                .entryId(generateEntryId())
+                .transaction(transaction)
+                .walletId(accountWallet.getWalletId())
+                .entryType(stripeInCredit ? LedgerEntryType.CREDIT : LedgerEntryType.DEBIT)
+                .entrySide(stripeInCredit ? "CR" : "DR")
+                .amountMinor(amount)
+                .balanceBeforeMinor(accountWallet.getBalanceMinor())
+                .balanceAfterMinor(MinorUnits.add(accountWallet.getBalanceMinor(), net))
+                .description("Consolidation in from: " + stripeWallet.getWalletId())
+                .build();
+        
+        addEntry(transaction, stripeEntry);
+        addEntry(transaction, accountEntry);
+        
+        transaction.setBalanceBefore(accountWallet.getBalance());
+        stripeWallet.debit(net);
+        accountWallet.credit(net);
+        transaction.setBalanceAfter(accountWallet.getBalance());
+        transaction.complete();
         
-        log.info("Created transfer ledger entries: amount={}", amount);
+        transactionRepository.save(transaction);
+        saveWallet(stripeWallet);
+        saveWallet(accountWallet);
+        
+        log.info("Consolidated contra stripe: stripe={}, account={}, net={}",
+                stripeWalletId, accountWalletId, MinorUnits.toDecimal(net));
+        return true;
+    }
+    
+    // A seeded contra balance gets its own opening entry so reconciliation and as-of queries account
+    // for it like any other posting; the idempotency key keeps it to one per wallet.
+    @Transactional
+    public Wallet openContraWallet(Wallet wallet, long openingBalance) {
+        Wallet opened = walletRepository.save(wallet);
+        if (openingBalance == 0L) {
+            return opened;
+        }
+        
+        WalletTransaction transaction = WalletTransaction.builder()
+                .transactionId(generateTransactionId())
+                .idempotencyKey("OPENING-" + opened.getWalletId())
+                .walletId(opened.getWalletId())
+                .userId(opened.getUserId())
+                .transactionType(TransactionType.OPENING_BALANCE)
+                .status(TransactionStatus.PENDING)
+                .amount(MinorUnits.toDecimal(openingBalance))
+                .currency(opened.getCurrency())
+                .description("Opening balance")
+                .build();
+        
+        LedgerEntry openingEntry = LedgerEntry.builder()
+                .entryId(generateEntryId())
+                .transaction(transaction)
+                .walletId(opened.getWalletId())
+                .entryType(LedgerEntryType.CREDIT)
+                .entrySide("CR")
+                .amountMinor(openingBalance)
+                .balanceBeforeMinor(opened.getBalanceMinor())
+                .balanceAfterMinor(MinorUnits.add(opened.getBalanceMinor(), openingBalance))
+                .description("Opening balance")
+                .build();
+        
+        addEntry(transaction, openingEntry);
+        
+        transaction.setBalanceBefore(opened.getBalance());
+        opened.credit(openingBalance);
+        transaction.setBalanceAfter(opened.getBalance());
+        transaction.complete();
+        
+        transactionRepository.save(transaction);
+        saveWallet(opened);
+        
+        log.info("Opened contra wallet: walletId={}, openingBalance={}", opened.getWalletId(),
+                MinorUnits.toDecimal(openingBalance));
+        return opened;
+    }
+    
+    private void stageCredit(WalletTransaction transaction, String walletId, long amount, String description) {
+        pendingCreditRepository.save(PendingCredit.builder()
+                .transaction(transaction)
+                .walletId(walletId)
+                .amountMinor(amount)
+                .description(description)
+                .build());
+    }
+    
+    private void saveWallet(Wallet wallet) {
+        walletRepository.save(wallet);
+        balanceCache.invalidateAfterCommit(wallet);
+    }
+    
+    private void addEntry(WalletTransaction transaction, LedgerEntry entry) {
+        if (ledgerBatchWriter.isEnabled()) {
+            entry.setTransaction(transaction);
+            ledgerBatchWriter.stage(entry);
+        } else {
+            transaction.addLedgerEntry(entry);
+        }
+    }
+    
+    private String generateTransactionId() {
+        return "TXN-" + UUID.randomUUID().toString().toUpperCase().replace("-", "").substring(0, 16);
     }
     
     private String generateEntryId() {
         return "LED-" + UUID.randomUUID().toString().toUpperCase().replace("-", "").substring(0, 16);
     }
+    
+    public record Posting(WalletTransaction transaction, Wallet wallet, Wallet contraWallet) {
+    }
 }
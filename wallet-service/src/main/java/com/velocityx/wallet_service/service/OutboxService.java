@@ -0,0 +1,79 @@
+package com.velocityx.wallet_service.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.velocityx.wallet_service.entity.OutboxEvent;
+import com.velocityx.wallet_service.repository.OutboxEventRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+@Service
+@RequiredArgsConstructor
+public class OutboxService {
+    
+    private static final TypeReference<Map<String, Object>> PAYLOAD_TYPE = new TypeReference<>() { };
+    
+    private static final String INSERT_OUTBOX_EVENT =
+            "INSERT INTO outbox_events (topic, event_key, shard, payload, created_at) VALUES (?, ?, ?, CAST(? AS jsonb), ?)";
+    
+    private final OutboxEventRepository outboxEventRepository;
+    private final ObjectMapper objectMapper;
+    private final JdbcTemplate jdbcTemplate;
+    
+    @Value("${wallet.outbox.enabled:false}")
+    private boolean enabled;
+    
+    @Value("${wallet.outbox.shards:16}")
+    private int shards;
+    
+    @Value("${wallet.outbox.insert-batch-size:500}")
+    private int insertBatchSize;
+    
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    public int getShards() {
+        return Math.max(shards, 1);
+    }
+    
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void append(String topic, String key, Object event) {
+        OutboxEvent outboxEvent = OutboxEvent.builder()
+                .topic(topic)
+                .eventKey(key)
+                .shard(Math.floorMod(key.hashCode(), getShards()))
+                .payload(objectMapper.convertValue(event, PAYLOAD_TYPE))
+                .build();
+        outboxEventRepository.save(outboxEvent);
+    }
+    
+    // Identity ids keep Hibernate from batching inserts, so bulk appends go through one JDBC batch
+    @Transactional(propagation = Propagation.MANDATORY)
+    public <T> void appendAll(String topic, List<T> events, Function<T, String> keyFunction) {
+        Timestamp now = Timestamp.from(Instant.now());
+        jdbcTemplate.batchUpdate(INSERT_OUTBOX_EVENT, events, insertBatchSize, (ps, event) -> {
+            String key = keyFunction.apply(event);
+            ps.setString(1, topic);
+            ps.setString(2, key);
+            ps.setInt(3, Math.floorMod(key.hashCode(), getShards()));
+            try {
+                ps.setString(4, objectMapper.writeValueAsString(event));
+            } catch (JsonProcessingException e) {
+                throw new IllegalArgumentException("Failed to serialize outbox event", e);
+            }
+            ps.setTimestamp(5, now);
+        });
+    }
+}
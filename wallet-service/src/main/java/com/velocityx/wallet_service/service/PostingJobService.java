@@ -0,0 +1,342 @@
+package com.velocityx.wallet_service.service;
+
+import com.velocityx.wallet_service.entity.Wallet;
+import com.velocityx.wallet_service.entity.WalletTransaction;
+import com.velocityx.wallet_service.enums.PostingJobStatus;
+import com.velocityx.wallet_service.enums.TransactionStatus;
+import com.velocityx.wallet_service.enums.TransactionType;
+import com.velocityx.wallet_service.enums.WalletStatus;
+import com.velocityx.wallet_service.metrics.WalletMetric;
+import com.velocityx.wallet_service.metrics.WalletMetrics;
+import com.velocityx.wallet_service.repository.WalletRepository;
+import com.velocityx.wallet_service.repository.WalletTransactionRepository;
+import com.velocityx.wallet_service.service.LedgerService.Posting;
+import com.velocityx.wallet_service.util.MinorUnits;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Fee and interest runs across every user wallet. The wallets table is walked in id ranges by a
+ * fixed number of workers; each range is posted through LedgerService in JDBC batches, one contra
+ * stripe at a time, and checkpointed once all its stripes are done. A restarted or concurrent run
+ * skips checkpointed ranges, and the per-wallet idempotency key keeps a stripe posted by an
+ * interrupted run from being posted twice. Workers back off while the connection pool is busy so
+ * request traffic keeps its connections.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PostingJobService {
+    
+    private static final String INSERT_JOB =
+            "INSERT INTO posting_jobs (job_id, transaction_type, parameter, status, started_at) VALUES (?, ?, ?, ?, ?) " +
+            "ON CONFLICT (job_id) DO NOTHING";
+    
+    private static final String CHUNK_DONE =
+            "SELECT EXISTS (SELECT 1 FROM posting_job_chunks WHERE job_id = ? AND range_start = ?)";
+    
+    private static final String COMPLETE_CHUNK =
+            "INSERT INTO posting_job_chunks (job_id, range_start, range_end, posted, skipped, completed_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?) ON CONFLICT (job_id, range_start) DO NOTHING";
+    
+    private static final long BACKOFF_MAX_MS = 1000L;
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final DataSource dataSource;
+    private final WalletRepository walletRepository;
+    private final WalletTransactionRepository transactionRepository;
+    private final ContraAccountService contraAccountService;
+    private final LedgerService ledgerService;
+    private final WalletMetrics walletMetrics;
+    
+    @Value("${wallet.posting.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${wallet.posting.parallelism:4}")
+    private int parallelism;
+    
+    @Value("${wallet.posting.chunk-size:1000}")
+    private int chunkSize;
+    
+    // Share of the pool the workers may push it to before backing off
+    @Value("${wallet.posting.max-pool-usage:0.5}")
+    private double maxPoolUsage;
+    
+    @Value("${wallet.posting.interest.enabled:false}")
+    private boolean interestEnabled;
+    
+    @Value("${wallet.posting.interest.rate-bps:0}")
+    private BigDecimal interestRateBps;
+    
+    @Value("${wallet.posting.fee.enabled:false}")
+    private boolean feeEnabled;
+    
+    @Value("${wallet.posting.fee.amount:0}")
+    private BigDecimal feeAmount;
+    
+    private final AtomicBoolean running = new AtomicBoolean();
+    
+    private ExecutorService runner;
+    
+    // Runs take far longer than a scheduler tick, so they get their own thread instead of holding
+    // the shared scheduler that drives the outbox relay and netting.
+    @PostConstruct
+    public void start() {
+        runner = Executors.newSingleThreadExecutor(r -> new Thread(r, "posting-job-runner"));
+    }
+    
+    @PreDestroy
+    public void stop() {
+        runner.shutdownNow();
+    }
+    
+    @Scheduled(cron = "${wallet.posting.interest.cron:0 0 3 1 * *}", zone = "UTC")
+    public void scheduledInterest() {
+        if (enabled && interestEnabled) {
+            submit("INTEREST-" + YearMonth.now(ZoneOffset.UTC), TransactionType.INTEREST, interestRateBps);
+        }
+    }
+    
+    @Scheduled(cron = "${wallet.posting.fee.cron:0 0 4 1 * *}", zone = "UTC")
+    public void scheduledFee() {
+        if (enabled && feeEnabled) {
+            submit("FEE-" + YearMonth.now(ZoneOffset.UTC), TransactionType.FEE, feeAmount);
+        }
+    }
+    
+    // Picks up runs interrupted by a shutdown or stopped by a failed range
+    @Scheduled(initialDelayString = "${wallet.posting.resume-delay-ms:60000}",
+            fixedDelayString = "${wallet.posting.resume-interval-ms:600000}")
+    public void resumeRunningJobs() {
+        if (!enabled || running.get()) {
+            return;
+        }
+        
+        jdbcTemplate.queryForList("SELECT job_id, transaction_type, parameter FROM posting_jobs WHERE status = ?",
+                        PostingJobStatus.RUNNING.name())
+                .forEach(job -> submit((String) job.get("job_id"),
+                        TransactionType.valueOf((String) job.get("transaction_type")), (BigDecimal) job.get("parameter")));
+    }
+    
+    public void submit(String jobId, TransactionType type, BigDecimal parameter) {
+        runner.execute(() -> run(jobId, type, parameter));
+    }
+    
+    public void run(String jobId, TransactionType type, BigDecimal parameter) {
+        if (type != TransactionType.FEE && type != TransactionType.INTEREST) {
+            throw new IllegalArgumentException("Unsupported posting type: " + type);
+        }
+        if (!running.compareAndSet(false, true)) {
+            log.warn("Posting job already running on this instance, skipping {}", jobId);
+            return;
+        }
+        
+        try {
+            jdbcTemplate.update(INSERT_JOB, jobId, type.name(), parameter, PostingJobStatus.RUNNING.name(),
+                    Timestamp.from(Instant.now()));
+            String status = jdbcTemplate.queryForObject("SELECT status FROM posting_jobs WHERE job_id = ?",
+                    String.class, jobId);
+            if (PostingJobStatus.COMPLETED.name().equals(status)) {
+                log.info("Posting job {} already completed", jobId);
+                return;
+            }
+            
+            Long minId = jdbcTemplate.queryForObject("SELECT MIN(id) FROM wallets", Long.class);
+            Long maxId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM wallets", Long.class);
+            if (minId == null || maxId == null) {
+                return;
+            }
+            
+            log.info("Starting posting job: jobId={}, type={}, parameter={}, walletIds={}-{}",
+                    jobId, type, parameter, minId, maxId);
+            Instant startedAt = Instant.now();
+            AtomicLong cursor = new AtomicLong(minId);
+            AtomicLong posted = new AtomicLong();
+            AtomicBoolean failed = new AtomicBoolean();
+            
+            ExecutorService workers = Executors.newFixedThreadPool(Math.max(parallelism, 1),
+                    r -> new Thread(r, "posting-job-" + jobId));
+            for (int i = 0; i < Math.max(parallelism, 1); i++) {
+                workers.execute(() -> {
+                    long from;
+                    while (!failed.get() && (from = cursor.getAndAdd(chunkSize)) <= maxId) {
+                        long to = Math.min(from + chunkSize - 1, maxId);
+                        try {
+                            awaitPoolCapacity();
+                            posted.addAndGet(processChunk(jobId, type, parameter, from, to));
+                        } catch (Exception e) {
+                            log.error("Posting job {} failed on wallet ids {}-{}", jobId, from, to, e);
+                            failed.set(true);
+                        }
+                    }
+                });
+            }
+            workers.shutdown();
+            workers.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            
+            // A failed range is not checkpointed and is retried on resume
+            if (!failed.get()) {
+                jdbcTemplate.update("UPDATE posting_jobs SET status = ?, completed_at = ? WHERE job_id = ?",
+                        PostingJobStatus.COMPLETED.name(), Timestamp.from(Instant.now()), jobId);
+            }
+            log.info("Posting job {} {}: posted={}, took={}ms", jobId, failed.get() ? "stopped" : "finished",
+                    posted.get(), Instant.now().toEpochMilli() - startedAt.toEpochMilli());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            running.set(false);
+        }
+    }
+    
+    // Each stripe group is its own short transaction, locking the group's user wallets and then its
+    // stripe in the global order the request and batch paths use, so live traffic waits on one group
+    // at most and two workers never hold stripes the other needs.
+    private int processChunk(String jobId, TransactionType type, BigDecimal parameter, long from, long to) {
+        if (Boolean.TRUE.equals(jdbcTemplate.queryForObject(CHUNK_DONE, Boolean.class, jobId, from))) {
+            return 0;
+        }
+        
+        Map<String, List<String>> groups = new TreeMap<>();
+        for (String walletId : walletRepository.findActiveUserWalletIdsInRange(from, to)) {
+            groups.computeIfAbsent(contraWalletIdFor(type, walletId), stripeId -> new ArrayList<>()).add(walletId);
+        }
+        
+        int posted = 0;
+        int skipped = 0;
+        for (List<String> walletIds : groups.values()) {
+            int[] counts = transactionTemplate.execute(status -> postGroup(jobId, type, parameter, walletIds));
+            posted += counts[0];
+            skipped += counts[1];
+        }
+        
+        jdbcTemplate.update(COMPLETE_CHUNK, jobId, from, to, posted, skipped, Timestamp.from(Instant.now()));
+        walletMetrics.increment(type == TransactionType.FEE
+                ? WalletMetric.POSTING_FEE_POSTED : WalletMetric.POSTING_INTEREST_POSTED, posted);
+        return posted;
+    }
+    
+    // Returns {posted, skipped}. Wallets already posted by an interrupted or concurrent run are
+    // left out, so only their first posting counts.
+    private int[] postGroup(String jobId, TransactionType type, BigDecimal parameter, List<String> walletIds) {
+        List<Wallet> wallets = walletRepository.findByWalletIdInForUpdate(walletIds);
+        Wallet contraWallet = type == TransactionType.FEE
+                ? contraAccountService.lockPlatformWallet(walletIds.get(0))
+                : contraAccountService.lockSystemWallet(walletIds.get(0));
+        
+        Set<String> alreadyPosted = transactionRepository.findByIdempotencyKeyIn(walletIds.stream()
+                        .map(walletId -> idempotencyKey(jobId, walletId)).toList())
+                .stream()
+                .map(WalletTransaction::getWalletId)
+                .collect(Collectors.toSet());
+        
+        List<Posting> postings = new ArrayList<>(wallets.size());
+        int skipped = 0;
+        for (Wallet wallet : wallets) {
+            if (alreadyPosted.contains(wallet.getWalletId()) || wallet.getStatus() != WalletStatus.ACTIVE) {
+                continue;
+            }
+            BigDecimal amount = amountFor(type, parameter, wallet);
+            if (amount.signum() <= 0 || (type == TransactionType.FEE && !wallet.hasAvailableBalance(amount))) {
+                skipped++;
+                continue;
+            }
+            postings.add(new Posting(buildTransaction(jobId, type, wallet, amount), wallet, contraWallet));
+        }
+        
+        if (!postings.isEmpty()) {
+            ledgerService.createPostingEntries(postings);
+        }
+        return new int[] {postings.size(), skipped};
+    }
+    
+    private String contraWalletIdFor(TransactionType type, String walletId) {
+        return type == TransactionType.FEE
+                ? contraAccountService.platformWalletIdFor(walletId)
+                : contraAccountService.systemWalletIdFor(walletId);
+    }
+    
+    // Interest is paid on the settled balance and rounded down to the currency's minor unit
+    private BigDecimal amountFor(TransactionType type, BigDecimal parameter, Wallet wallet) {
+        if (type == TransactionType.FEE) {
+            return parameter;
+        }
+        return wallet.getBalance().multiply(parameter).movePointLeft(4)
+                .setScale(MinorUnits.currencyScale(wallet.getCurrency()), RoundingMode.DOWN);
+    }
+    
+    private WalletTransaction buildTransaction(String jobId, TransactionType type, Wallet wallet, BigDecimal amount) {
+        return WalletTransaction.builder()
+                .transactionId("TXN-" + UUID.randomUUID().toString().toUpperCase().replace("-", "").substring(0, 16))
+                .idempotencyKey(idempotencyKey(jobId, wallet.getWalletId()))
+                .walletId(wallet.getWalletId())
+                .userId(wallet.getUserId())
+                .transactionType(type)
+                .status(TransactionStatus.PENDING)
+                .amount(amount)
+                .currency(wallet.getCurrency())
+                .description((type == TransactionType.FEE ? "Fee: " : "Interest: ") + jobId)
+                .build();
+    }
+    
+    private static String idempotencyKey(String jobId, String walletId) {
+        return jobId + "-" + walletId;
+    }
+    
+    private void awaitPoolCapacity() throws InterruptedException {
+        HikariDataSource hikari = hikariDataSource();
+        HikariPoolMXBean pool = hikari == null ? null : hikari.getHikariPoolMXBean();
+        if (pool == null) {
+            return;
+        }
+        
+        int maxActive = Math.max(1, (int) (hikari.getMaximumPoolSize() * maxPoolUsage));
+        long backoffMs = 50L;
+        while (pool.getThreadsAwaitingConnection() > 0 || pool.getActiveConnections() >= maxActive) {
+            walletMetrics.increment(WalletMetric.POSTING_THROTTLED);
+            TimeUnit.MILLISECONDS.sleep(backoffMs);
+            backoffMs = Math.min(backoffMs * 2, BACKOFF_MAX_MS);
+        }
+    }
+    
+    private HikariDataSource hikariDataSource() {
+        try {
+            if (dataSource.isWrapperFor(HikariDataSource.class)) {
+                return dataSource.unwrap(HikariDataSource.class);
+            }
+        } catch (SQLException e) {
+            log.debug("Connection pool metrics unavailable", e);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,287 @@
+package com.velocityx.wallet_service.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.velocityx.wallet_service.dto.response.LedgerEntryResponse;
+import com.velocityx.wallet_service.dto.response.StatementResponse;
+import com.velocityx.wallet_service.entity.LedgerEntry;
+import com.velocityx.wallet_service.enums.LedgerEntryType;
+import com.velocityx.wallet_service.exception.InvalidCursorException;
+import com.velocityx.wallet_service.exception.WalletNotFoundException;
+import com.velocityx.wallet_service.repository.ColdLedgerStore;
+import com.velocityx.wallet_service.repository.LedgerEntryRepository;
+import com.velocityx.wallet_service.repository.WalletRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class StatementService {
+    
+    private static final String SELECT_ENTRIES =
+            "SELECT e.id, e.entry_id, t.transaction_id, e.wallet_id, e.entry_type, e.entry_side, e.amount, " +
+            "e.balance_before, e.balance_after, e.description, e.created_at " +
+            "FROM ledger_entries e JOIN wallet_transactions t ON t.id = e.transaction_id ";
+    
+    // Row-value comparison walks idx_ledger_wallet_created backwards from the cursor, no OFFSET or count
+    private static final String SELECT_PAGE = SELECT_ENTRIES +
+            "WHERE e.wallet_id = ? AND (e.created_at, e.id) < (?, ?) " +
+            "ORDER BY e.created_at DESC, e.id DESC LIMIT ?";
+    
+    private static final String SELECT_RANGE = SELECT_ENTRIES +
+            "WHERE e.wallet_id = ? AND e.created_at >= ? AND e.created_at < ? " +
+            "ORDER BY e.created_at, e.id";
+    
+    private static final String CSV_HEADER =
+            "entry_id,transaction_id,wallet_id,entry_type,entry_side,amount,balance_before,balance_after,description,created_at";
+    
+    private static final RowMapper<Row> ROW_MAPPER = (rs, rowNum) -> new Row(rs.getLong("id"),
+            LedgerEntryResponse.builder()
+                    .entryId(rs.getString("entry_id"))
+                    .transactionId(rs.getString("transaction_id"))
+                    .walletId(rs.getString("wallet_id"))
+                    .entryType(LedgerEntryType.valueOf(rs.getString("entry_type")))
+                    .entrySide(rs.getString("entry_side"))
+                    .amount(rs.getBigDecimal("amount"))
+                    .balanceBefore(rs.getBigDecimal("balance_before"))
+                    .balanceAfter(rs.getBigDecimal("balance_after"))
+                    .description(rs.getString("description"))
+                    .createdAt(rs.getObject("created_at", OffsetDateTime.class).toInstant())
+                    .build());
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private final WalletRepository walletRepository;
+    private final LedgerEntryRepository ledgerEntryRepository;
+    private final ColdLedgerStore coldLedgerStore;
+    private final ObjectMapper objectMapper;
+    
+    @Value("${wallet.statement.max-page-size:500}")
+    private int maxPageSize;
+    
+    @Value("${wallet.statement.export-fetch-size:1000}")
+    private int exportFetchSize;
+    
+    public StatementResponse getStatement(String walletId, String cursor, int limit) {
+        requireWallet(walletId);
+        int pageSize = Math.min(Math.max(limit, 1), maxPageSize);
+        Cursor position = cursor == null || cursor.isBlank() ? Cursor.START : Cursor.decode(cursor);
+        
+        List<Row> rows = jdbcTemplate.query(SELECT_PAGE, ROW_MAPPER, walletId,
+                Timestamp.from(position.createdAt()), position.id(), pageSize + 1);
+        if (rows.size() <= pageSize) {
+            rows = withArchived(walletId, position, rows, pageSize + 1);
+        }
+        
+        boolean hasMore = rows.size() > pageSize;
+        List<Row> page = hasMore ? rows.subList(0, pageSize) : rows;
+        Row last = page.isEmpty() ? null : page.get(page.size() - 1);
+        
+        return StatementResponse.builder()
+                .walletId(walletId)
+                .entries(page.stream().map(Row::entry).toList())
+                .nextCursor(hasMore ? new Cursor(last.entry().getCreatedAt(), last.id()).encode() : null)
+                .build();
+    }
+    
+    // Postgres only streams with a server-side cursor inside a transaction; otherwise the driver
+    // buffers the whole result set. The archived part of the range, always the oldest, is written first.
+    public void export(String walletId, Instant from, Instant to, ExportFormat format, OutputStream outputStream) {
+        requireWallet(walletId);
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setReadOnly(true);
+        
+        Instant liveFrom = coldLedgerStore.archivedUntil()
+                .filter(from::isBefore)
+                .map(archivedUntil -> archivedUntil.isBefore(to) ? archivedUntil : to)
+                .orElse(from);
+        
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        template.executeWithoutResult(status -> {
+            try {
+                if (format == ExportFormat.CSV) {
+                    writer.write(CSV_HEADER);
+                    writer.write('\n');
+                }
+                
+                if (liveFrom.isAfter(from)) {
+                    List<LedgerEntry> archived = ledgerEntryRepository.findByWalletIdAndCreatedAtRange(walletId, from, liveFrom);
+                    for (int i = archived.size() - 1; i >= 0; i--) {
+                        write(writer, format, toResponse(archived.get(i)));
+                    }
+                }
+                
+                jdbcTemplate.query(connection -> {
+                    PreparedStatement statement = connection.prepareStatement(SELECT_RANGE);
+                    statement.setFetchSize(exportFetchSize);
+                    statement.setString(1, walletId);
+                    statement.setTimestamp(2, Timestamp.from(liveFrom));
+                    statement.setTimestamp(3, Timestamp.from(to));
+                    return statement;
+                }, (RowCallbackHandler) rs -> {
+                    try {
+                        write(writer, format, ROW_MAPPER.mapRow(rs, 0).entry());
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                writer.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        log.info("Exported statement: walletId={}, from={}, to={}, format={}", walletId, from, to, format);
+    }
+    
+    // The live partitions ran out before the page filled, so the rest may be in the cold archive
+    private List<Row> withArchived(String walletId, Cursor position, List<Row> rows, int wanted) {
+        Instant archivedUntil = coldLedgerStore.archivedUntil().orElse(null);
+        if (archivedUntil == null) {
+            return rows;
+        }
+        
+        Cursor boundary = rows.isEmpty() ? position
+                : new Cursor(rows.get(rows.size() - 1).entry().getCreatedAt(), rows.get(rows.size() - 1).id());
+        Instant to = boundary.createdAt().isBefore(archivedUntil)
+                ? boundary.createdAt().plus(1, ChronoUnit.MICROS) : archivedUntil;
+        
+        List<Row> page = new ArrayList<>(rows);
+        Set<Long> seen = new HashSet<>();
+        rows.forEach(row -> seen.add(row.id()));
+        for (LedgerEntry entry : ledgerEntryRepository.findByWalletIdAndCreatedAtRange(walletId, Instant.EPOCH, to)) {
+            if (page.size() >= wanted) {
+                break;
+            }
+            if (boundary.isAfter(entry) && seen.add(entry.getId())) {
+                page.add(new Row(entry.getId(), toResponse(entry)));
+            }
+        }
+        return page;
+    }
+    
+    private void write(Writer writer, ExportFormat format, LedgerEntryResponse entry) throws IOException {
+        if (format == ExportFormat.CSV) {
+            writeCsv(writer, entry);
+        } else {
+            writer.write(objectMapper.writeValueAsString(entry));
+            writer.write('\n');
+        }
+    }
+    
+    private static LedgerEntryResponse toResponse(LedgerEntry entry) {
+        return LedgerEntryResponse.builder()
+                .entryId(entry.getEntryId())
+                .transactionId(entry.getTransaction().getTransactionId())
+                .walletId(entry.getWalletId())
+                .entryType(entry.getEntryType())
+                .entrySide(entry.getEntrySide())
+                .amount(entry.getAmount())
+                .balanceBefore(entry.getBalanceBefore())
+                .balanceAfter(entry.getBalanceAfter())
+                .description(entry.getDescription())
+                .createdAt(entry.getCreatedAt())
+                .build();
+    }
+    
+    private void requireWallet(String walletId) {
+        if (!walletRepository.existsByWalletId(walletId)) {
+            throw new WalletNotFoundException("Wallet not found: " + walletId);
+        }
+    }
+    
+    private void writeCsv(Writer writer, LedgerEntryResponse entry) throws IOException {
+        writer.write(String.join(",",
+                csv(entry.getEntryId()),
+                csv(entry.getTransactionId()),
+                csv(entry.getWalletId()),
+                entry.getEntryType().name(),
+                csv(entry.getEntrySide()),
+                entry.getAmount().toPlainString(),
+                entry.getBalanceBefore().toPlainString(),
+                entry.getBalanceAfter().toPlainString(),
+                csv(entry.getDescription()),
+                entry.getCreatedAt().toString()));
+        writer.write('\n');
+    }
+    
+    private static String csv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+    
+    public enum ExportFormat {
+        NDJSON,
+        CSV;
+        
+        public static ExportFormat parse(String value) {
+            for (ExportFormat format : values()) {
+                if (format.name().equalsIgnoreCase(value)) {
+                    return format;
+                }
+            }
+            return null;
+        }
+    }
+    
+    private record Row(long id, LedgerEntryResponse entry) {
+    }
+    
+    // Opaque to clients: base64url of "<created_at epoch micros>:<id>"
+    private record Cursor(Instant createdAt, long id) {
+        
+        private static final Cursor START = new Cursor(Instant.parse("9999-12-31T00:00:00Z"), Long.MAX_VALUE);
+        
+        private boolean isAfter(LedgerEntry entry) {
+            int byTime = entry.getCreatedAt().compareTo(createdAt);
+            return byTime < 0 || (byTime == 0 && entry.getId() < id);
+        }
+        
+        private String encode() {
+            long micros = createdAt.getEpochSecond() * 1_000_000L + createdAt.getNano() / 1_000;
+            return Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString((micros + ":" + id).getBytes(StandardCharsets.UTF_8));
+        }
+        
+        private static Cursor decode(String cursor) {
+            try {
+                String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(":");
+                long micros = Long.parseLong(parts[0]);
+                Instant createdAt = Instant.ofEpochSecond(Math.floorDiv(micros, 1_000_000L),
+                        Math.floorMod(micros, 1_000_000L) * 1_000L);
+                return new Cursor(createdAt, Long.parseLong(parts[1]));
+            } catch (RuntimeException e) {
+                throw new InvalidCursorException("Invalid statement cursor", e);
+            }
+        }
+    }
+}
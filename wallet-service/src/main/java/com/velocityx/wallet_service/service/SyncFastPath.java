@@ -0,0 +1,71 @@
+package com.velocityx.wallet_service.service;
+
+import com.velocityx.wallet_service.metrics.WalletMetric;
+import com.velocityx.wallet_service.metrics.WalletMetrics;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Decides whether a credit or debit may be applied inside the HTTP request. Only small amounts
+ * qualify, and each wallet admits a bounded number of in-request mutations per instance; anything
+ * beyond that takes the Kafka path so a hot wallet cannot tie up request threads waiting on its
+ * row lock. Callers take the permit before locking anything and release it once the apply has
+ * committed or failed.
+ */
+@Component
+@RequiredArgsConstructor
+public class SyncFastPath {
+    
+    private final WalletMetrics walletMetrics;
+    private final CreditNettingService creditNettingService;
+    
+    @Value("${wallet.sync.enabled:false}")
+    private boolean enabled;
+    
+    @Value("${wallet.sync.max-amount:1000}")
+    private BigDecimal maxAmount;
+    
+    @Value("${wallet.sync.max-concurrent-per-wallet:1}")
+    private int maxConcurrentPerWallet;
+    
+    // The balance engine keeps available balances in memory and would not see in-request writes
+    @Value("${wallet.engine.enabled:false}")
+    private boolean balanceEngineEnabled;
+    
+    private final Map<String, Integer> inFlight = new ConcurrentHashMap<>();
+    
+    public boolean tryAcquire(String walletId, BigDecimal amount) {
+        if (!enabled || balanceEngineEnabled || amount.compareTo(maxAmount) > 0) {
+            return false;
+        }
+        
+        // Credits to a netted wallet complete only when the netting job applies them
+        if (creditNettingService.isHot(walletId)) {
+            return false;
+        }
+        
+        boolean[] acquired = new boolean[1];
+        inFlight.compute(walletId, (id, count) -> {
+            int current = count == null ? 0 : count;
+            if (current >= maxConcurrentPerWallet) {
+                return count;
+            }
+            acquired[0] = true;
+            return current + 1;
+        });
+        
+        if (!acquired[0]) {
+            walletMetrics.increment(WalletMetric.SYNC_FALLBACK);
+        }
+        return acquired[0];
+    }
+    
+    public void release(String walletId) {
+        inFlight.computeIfPresent(walletId, (id, count) -> count > 1 ? count - 1 : null);
+    }
+}
@@ -0,0 +1,212 @@
+package com.velocityx.wallet_service.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.velocityx.wallet_service.exception.TransferLimitExceededException;
+import com.velocityx.wallet_service.metrics.WalletMetric;
+import com.velocityx.wallet_service.metrics.WalletMetrics;
+import com.velocityx.wallet_service.util.MinorUnits;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Enforces the per-transfer maximum and the rolling 24h outgoing limit of a wallet without
+ * touching Postgres. Usage is kept in per-minute buckets: Redis holds the authoritative window
+ * shared by all replicas, and a Caffeine copy of this replica's own reservations rejects
+ * obviously-over-limit transfers without a round trip and keeps enforcing when Redis is down.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class TransferLimiter {
+    
+    private static final String KEY_PREFIX = "wallet:limit:transfer:";
+    private static final long MINUTE_MS = 60_000L;
+    
+    // Hash of minute bucket -> amount plus running 'total' and 'oldest' bucket. Expired buckets are
+    // subtracted as the window slides, so a check costs O(1) amortised. Returns the new total, or -1
+    // without reserving anything when the amount does not fit.
+    private static final RedisScript<Long> RESERVE_SCRIPT = new DefaultRedisScript<>(
+            "local now = tonumber(ARGV[1]) " +
+            "local amount = tonumber(ARGV[2]) " +
+            "local limit = tonumber(ARGV[3]) " +
+            "local window = tonumber(ARGV[4]) " +
+            "local floor = now - window + 1 " +
+            "local total = tonumber(redis.call('HGET', KEYS[1], 'total') or '0') " +
+            "local oldest = tonumber(redis.call('HGET', KEYS[1], 'oldest') or now) " +
+            "if oldest < floor - window then " +
+            "  redis.call('DEL', KEYS[1]) total = 0 " +
+            "elseif oldest < floor then " +
+            "  for minute = oldest, floor - 1 do " +
+            "    local value = redis.call('HGET', KEYS[1], tostring(minute)) " +
+            "    if value then total = total - tonumber(value) redis.call('HDEL', KEYS[1], tostring(minute)) end " +
+            "  end " +
+            "end " +
+            "if oldest < floor then oldest = floor end " +
+            "redis.call('HSET', KEYS[1], 'total', total, 'oldest', oldest) " +
+            "redis.call('PEXPIRE', KEYS[1], ARGV[5]) " +
+            "if total + amount > limit then return -1 end " +
+            "redis.call('HINCRBY', KEYS[1], tostring(now), amount) " +
+            "redis.call('HSET', KEYS[1], 'total', total + amount) " +
+            "return total + amount", Long.class);
+    
+    // Only undoes the reservation while its bucket is still inside the window
+    private static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "local value = redis.call('HGET', KEYS[1], ARGV[1]) " +
+            "if not value then return 0 end " +
+            "local amount = math.min(tonumber(value), tonumber(ARGV[2])) " +
+            "redis.call('HINCRBY', KEYS[1], ARGV[1], -amount) " +
+            "redis.call('HINCRBY', KEYS[1], 'total', -amount) " +
+            "return amount", Long.class);
+    
+    private final StringRedisTemplate redisTemplate;
+    private final WalletMetrics walletMetrics;
+    
+    @Value("${wallet.transfer.limits-enabled:true}")
+    private boolean enabled;
+    
+    @Value("${wallet.transfer.max-amount:500000}")
+    private BigDecimal maxAmount;
+    
+    @Value("${wallet.transfer.daily-limit:2000000}")
+    private BigDecimal dailyLimit;
+    
+    @Value("${wallet.transfer.window-minutes:1440}")
+    private int windowMinutes;
+    
+    @Value("${wallet.transfer.local-max-size:100000}")
+    private long localMaxSize;
+    
+    private Cache<String, LocalWindow> local;
+    
+    @PostConstruct
+    public void init() {
+        local = Caffeine.newBuilder()
+                .maximumSize(localMaxSize)
+                .expireAfterAccess(Duration.ofMinutes(windowMinutes))
+                .build();
+    }
+    
+    // Counts the transfer against the window; the reservation is undone if the surrounding
+    // transaction rolls back.
+    public void reserve(String walletId, BigDecimal amount) {
+        if (!enabled) {
+            return;
+        }
+        
+        if (amount.compareTo(maxAmount) > 0) {
+            reject("Transfer amount exceeds the per-transfer limit of " + maxAmount.toPlainString());
+        }
+        
+        long units = MinorUnits.of(amount);
+        long limit = MinorUnits.of(dailyLimit);
+        long minute = System.currentTimeMillis() / MINUTE_MS;
+        LocalWindow window = local.get(walletId, id -> new LocalWindow(windowMinutes));
+        
+        // This replica's own usage is a lower bound of the shared one
+        if (window.total(minute) + units > limit) {
+            reject("Transfer exceeds the rolling 24h limit of " + dailyLimit.toPlainString());
+        }
+        
+        boolean reserved;
+        try {
+            Long total = redisTemplate.execute(RESERVE_SCRIPT, List.of(KEY_PREFIX + walletId),
+                    String.valueOf(minute), String.valueOf(units), String.valueOf(limit),
+                    String.valueOf(windowMinutes), String.valueOf((windowMinutes + 1) * MINUTE_MS));
+            reserved = total != null && total >= 0;
+        } catch (Exception e) {
+            log.warn("Transfer limit store unavailable, enforcing this replica's usage only: walletId={}", walletId, e);
+            walletMetrics.increment(WalletMetric.TRANSFER_LIMIT_DEGRADED);
+            reserved = true;
+        }
+        
+        if (!reserved) {
+            reject("Transfer exceeds the rolling 24h limit of " + dailyLimit.toPlainString());
+        }
+        
+        window.add(minute, units);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        release(walletId, window, minute, units);
+                    }
+                }
+            });
+        }
+    }
+    
+    private void release(String walletId, LocalWindow window, long minute, long units) {
+        window.add(minute, -units);
+        try {
+            redisTemplate.execute(RELEASE_SCRIPT, List.of(KEY_PREFIX + walletId),
+                    String.valueOf(minute), String.valueOf(units));
+        } catch (Exception e) {
+            log.warn("Failed to release transfer limit reservation: walletId={}", walletId, e);
+        }
+    }
+    
+    private void reject(String message) {
+        walletMetrics.increment(WalletMetric.TRANSFER_LIMIT_REJECTED);
+        throw new TransferLimitExceededException(message);
+    }
+    
+    // Ring of per-minute buckets with a running total, expired the same way as the Redis window
+    private static final class LocalWindow {
+        
+        private final long[] minutes;
+        private final long[] amounts;
+        private long total;
+        private long oldest = Long.MIN_VALUE;
+        
+        private LocalWindow(int size) {
+            this.minutes = new long[size];
+            this.amounts = new long[size];
+        }
+        
+        private synchronized long total(long now) {
+            long floor = now - minutes.length + 1;
+            if (oldest < floor) {
+                for (long minute = Math.max(oldest, floor - minutes.length); minute < floor; minute++) {
+                    int slot = slot(minute);
+                    if (minutes[slot] == minute) {
+                        total -= amounts[slot];
+                        amounts[slot] = 0;
+                    }
+                }
+                oldest = floor;
+            }
+            return total;
+        }
+        
+        private synchronized void add(long minute, long units) {
+            if (minute < oldest) {
+                return;
+            }
+            int slot = slot(minute);
+            if (minutes[slot] != minute) {
+                minutes[slot] = minute;
+                amounts[slot] = 0;
+            }
+            amounts[slot] += units;
+            total += units;
+        }
+        
+        private int slot(long minute) {
+            return (int) Math.floorMod(minute, (long) minutes.length);
+        }
+    }
+}
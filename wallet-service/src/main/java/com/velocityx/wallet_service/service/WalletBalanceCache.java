@@ -0,0 +1,178 @@
+package com.velocityx.wallet_service.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.velocityx.wallet_service.dto.response.WalletResponse;
+import com.velocityx.wallet_service.entity.Wallet;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class WalletBalanceCache {
+    
+    private static final String KEY_PREFIX = "wallet:balance:";
+    
+    // Entries are hashes of {version, body}; a hash without a body is a tombstone left by a committed
+    // write. Both scripts refuse to move the version backwards, so a reader that loaded an older row
+    // can never overwrite a newer balance.
+    private static final RedisScript<Long> PUT_SCRIPT = new DefaultRedisScript<>(
+            "local current = redis.call('HGET', KEYS[1], 'version') " +
+            "if current and tonumber(current) > tonumber(ARGV[1]) then return 0 end " +
+            "redis.call('HSET', KEYS[1], 'version', ARGV[1], 'body', ARGV[2]) " +
+            "redis.call('PEXPIRE', KEYS[1], ARGV[3]) " +
+            "return 1", Long.class);
+    
+    private static final RedisScript<Long> INVALIDATE_SCRIPT = new DefaultRedisScript<>(
+            "local current = redis.call('HGET', KEYS[1], 'version') " +
+            "if current and tonumber(current) >= tonumber(ARGV[1]) then return 0 end " +
+            "redis.call('HSET', KEYS[1], 'version', ARGV[1]) " +
+            "redis.call('HDEL', KEYS[1], 'body') " +
+            "redis.call('PEXPIRE', KEYS[1], ARGV[2]) " +
+            "return 1", Long.class);
+    
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+    
+    @Value("${wallet.cache.enabled:true}")
+    private boolean enabled;
+    
+    // Kept short: other instances only learn about a commit through Redis
+    @Value("${wallet.cache.local-ttl-ms:1000}")
+    private long localTtlMs;
+    
+    @Value("${wallet.cache.local-max-size:100000}")
+    private long localMaxSize;
+    
+    @Value("${wallet.cache.redis-ttl-ms:300000}")
+    private long redisTtlMs;
+    
+    private Cache<String, CachedWallet> local;
+    
+    @PostConstruct
+    public void init() {
+        local = Caffeine.newBuilder()
+                .maximumSize(localMaxSize)
+                .expireAfterWrite(Duration.ofMillis(localTtlMs))
+                .build();
+    }
+    
+    public WalletResponse getByWalletId(String walletId, Supplier<WalletResponse> loader) {
+        return get(walletId, loader);
+    }
+    
+    public WalletResponse getByUserId(Long userId, Supplier<WalletResponse> loader) {
+        return get("user:" + userId, loader);
+    }
+    
+    // Called by the ledger path after saving a wallet; the version Hibernate assigned at flush
+    // becomes the minimum any later cache write has to carry.
+    public void invalidateAfterCommit(Wallet wallet) {
+        if (!enabled || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                long version = wallet.getVersion() == null ? 0L : wallet.getVersion();
+                invalidate(wallet.getWalletId(), version);
+                invalidate("user:" + wallet.getUserId(), version);
+            }
+        });
+    }
+    
+    // For writes that bypass the entity and get the new version back from the statement itself
+    public void invalidateAfterCommit(String walletId, long userId, long version) {
+        if (!enabled || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                invalidate(walletId, version);
+                invalidate("user:" + userId, version);
+            }
+        });
+    }
+    
+    private WalletResponse get(String key, Supplier<WalletResponse> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+        
+        CachedWallet cached = local.getIfPresent(key);
+        if (cached != null && cached.response() != null) {
+            return cached.response();
+        }
+        
+        Optional<CachedWallet> remote = readRemote(key);
+        if (remote.isPresent() && remote.get().response() != null) {
+            storeLocal(key, remote.get());
+            return remote.get().response();
+        }
+        
+        WalletResponse loaded = loader.get();
+        put(key, loaded);
+        return loaded;
+    }
+    
+    private void put(String key, WalletResponse response) {
+        long version = response.getVersion() == null ? 0L : response.getVersion();
+        storeLocal(key, new CachedWallet(version, response));
+        try {
+            redisTemplate.execute(PUT_SCRIPT, List.of(KEY_PREFIX + key), String.valueOf(version),
+                    objectMapper.writeValueAsString(response), String.valueOf(redisTtlMs));
+        } catch (Exception e) {
+            log.warn("Failed to write wallet balance to Redis: key={}", key, e);
+        }
+    }
+    
+    private void invalidate(String key, long version) {
+        storeLocal(key, new CachedWallet(version, null));
+        try {
+            redisTemplate.execute(INVALIDATE_SCRIPT, List.of(KEY_PREFIX + key), String.valueOf(version),
+                    String.valueOf(redisTtlMs));
+        } catch (Exception e) {
+            log.warn("Failed to invalidate wallet balance in Redis: key={}", key, e);
+        }
+    }
+    
+    private void storeLocal(String key, CachedWallet candidate) {
+        local.asMap().compute(key, (k, current) ->
+                current == null || candidate.version() >= current.version() ? candidate : current);
+    }
+    
+    private Optional<CachedWallet> readRemote(String key) {
+        try {
+            List<Object> fields = redisTemplate.opsForHash().multiGet(KEY_PREFIX + key, List.of("version", "body"));
+            if (fields.get(0) == null || fields.get(1) == null) {
+                return Optional.empty();
+            }
+            WalletResponse response = objectMapper.readValue((String) fields.get(1), WalletResponse.class);
+            return Optional.of(new CachedWallet(Long.parseLong((String) fields.get(0)), response));
+        } catch (Exception e) {
+            log.warn("Failed to read wallet balance from Redis: key={}", key, e);
+            return Optional.empty();
+        }
+    }
+    
+    private record CachedWallet(long version, WalletResponse response) {
+    }
+}
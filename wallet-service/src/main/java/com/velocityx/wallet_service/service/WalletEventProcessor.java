@@ -0,0 +1,618 @@
+package com.velocityx.wallet_service.service;
+
+import com.velocityx.wallet_service.dto.event.WalletEvent;
+import com.velocityx.wallet_service.entity.Wallet;
+import com.velocityx.wallet_service.entity.WalletTransaction;
+import com.velocityx.wallet_service.enums.TransactionStatus;
+import com.velocityx.wallet_service.enums.TransactionType;
+import com.velocityx.wallet_service.exception.WalletEventProcessingException;
+import com.velocityx.wallet_service.metrics.BalanceUpdate;
+import com.velocityx.wallet_service.metrics.EventStage;
+import com.velocityx.wallet_service.metrics.WalletMetric;
+import com.velocityx.wallet_service.metrics.WalletMetrics;
+import com.velocityx.wallet_service.repository.WalletRepository;
+import com.velocityx.wallet_service.repository.WalletTransactionRepository;
+import com.velocityx.wallet_service.service.GuardedBalanceUpdater.BalanceChange;
+import com.velocityx.wallet_service.util.FailureClassifier;
+import com.velocityx.wallet_service.util.MinorUnits;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class WalletEventProcessor {
+    
+    private final WalletRepository walletRepository;
+    private final WalletTransactionRepository transactionRepository;
+    private final LedgerService ledgerService;
+    private final ContraAccountService contraAccountService;
+    private final TransactionTemplate transactionTemplate;
+    private final GuardedBalanceUpdater guardedBalanceUpdater;
+    private final CreditNettingService creditNettingService;
+    private final WalletMetrics walletMetrics;
+    
+    @Value("${wallet.processor.guarded-updates:false}")
+    private boolean guardedUpdates;
+    
+    @Value("${wallet.processor.conflict-max-attempts:3}")
+    private int conflictMaxAttempts;
+    
+    @Value("${wallet.processor.conflict-backoff-ms:20}")
+    private long conflictBackoffMs;
+    
+    private final ThreadLocal<BatchContext> batchContext = new ThreadLocal<>();
+    private final ThreadLocal<Boolean> reserved = new ThreadLocal<>();
+    
+    // Deadlocks and serialization failures roll the whole transaction back, so the event is simply
+    // applied again after a short jittered pause; only a conflict that persists reaches the retry topics.
+    public void process(WalletEvent event) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                processOnce(event);
+                return;
+            } catch (RuntimeException e) {
+                if (attempt >= conflictMaxAttempts || !FailureClassifier.isConflict(e)) {
+                    throw e;
+                }
+                walletMetrics.increment(WalletMetric.EVENT_CONFLICT_RETRIED);
+                log.warn("Lock conflict applying wallet event, retrying: txnId={}, attempt={}",
+                        event.getTransactionId(), attempt);
+                backOff(attempt);
+            }
+        }
+    }
+    
+    // For events whose funds the partition balance engine has already checked: debits and holds go
+    // through the guarded single-statement update instead of locking the wallet row first.
+    public void processReserved(WalletEvent event) {
+        reserved.set(Boolean.TRUE);
+        try {
+            process(event);
+        } finally {
+            reserved.remove();
+        }
+    }
+    
+    private void processOnce(WalletEvent event) {
+        Exception[] applyFailure = new Exception[1];
+        long[] appliedAt = new long[1];
+        Exception failure;
+        try {
+            failure = transactionTemplate.execute(status -> {
+                try {
+                    apply(event);
+                    appliedAt[0] = System.nanoTime();
+                    return null;
+                } catch (Exception e) {
+                    applyFailure[0] = e;
+                    return e;
+                }
+            });
+        } catch (TransactionException e) {
+            // A database error inside apply aborts the transaction, so the commit fails too; report the
+            // original error, which is what tells a lock timeout or deadlock apart from a bad request.
+            if (applyFailure[0] == null) {
+                throw e;
+            }
+            applyFailure[0].addSuppressed(e);
+            failure = applyFailure[0];
+        }
+        
+        if (failure != null) {
+            throw new WalletEventProcessingException(failure.getMessage(), failure);
+        }
+        walletMetrics.recordSince(EventStage.COMMIT, appliedAt[0]);
+        walletMetrics.recordSince(EventStage.END_TO_END, event.getTimestamp());
+    }
+    
+    private void backOff(int attempt) {
+        long ceiling = conflictBackoffMs << Math.min(attempt - 1, 10);
+        try {
+            TimeUnit.MILLISECONDS.sleep(ThreadLocalRandom.current().nextLong(ceiling / 2, ceiling + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    // Must run inside the caller's transaction. Loads every referenced transaction with one query and
+    // locks every touched wallet with two more, then applies the events in order. Like every other
+    // path, user wallets are locked before contra stripes, each group in walletId order.
+    // A failing event is reported back instead of aborting the rest of the batch.
+    public Map<WalletEvent, Exception> applyAll(List<WalletEvent> events) {
+        Set<String> transactionIds = new HashSet<>();
+        Set<String> walletIds = new TreeSet<>();
+        Set<String> contraWalletIds = new TreeSet<>();
+        for (WalletEvent event : events) {
+            addIfPresent(transactionIds, event.getTransactionId());
+            addIfPresent(transactionIds, event.getHoldTransactionId());
+            addIfPresent(walletIds, event.getWalletId());
+            addIfPresent(walletIds, event.getCounterpartyWalletId());
+            if (event.getWalletId() != null && event.getEventType() != null) {
+                switch (event.getEventType()) {
+                    case CREDIT_REQUESTED, DEBIT_REQUESTED ->
+                            contraWalletIds.add(contraAccountService.systemWalletIdFor(event.getWalletId()));
+                    case CAPTURE_REQUESTED ->
+                            contraWalletIds.add(contraAccountService.platformWalletIdFor(event.getWalletId()));
+                    default -> { }
+                }
+            }
+        }
+        
+        BatchContext context = new BatchContext(new HashMap<>(), new HashMap<>());
+        transactionRepository.findByTransactionIdIn(transactionIds)
+                .forEach(transaction -> context.transactions().put(transaction.getTransactionId(), transaction));
+        for (Set<String> ids : List.of(walletIds, contraWalletIds)) {
+            if (!ids.isEmpty()) {
+                walletRepository.findByWalletIdInForUpdate(ids)
+                .forEach(wallet -> context.wallets().put(wallet.getWalletId(), wallet));
+            }
+        }
+        
+        Map<WalletEvent, Exception> failures = new IdentityHashMap<>();
+        batchContext.set(context);
+        try {
+            for (WalletEvent event : events) {
+                try {
+                    apply(event);
+                } catch (Exception e) {
+                    failures.put(event, e);
+                }
+            }
+        } finally {
+            batchContext.remove();
+        }
+        return failures;
+    }
+    
+    public void apply(WalletEvent event) {
+        switch (event.getEventType()) {
+            case CREDIT_REQUESTED -> processCredit(event);
+            case DEBIT_REQUESTED -> processDebit(event);
+            case HOLD_REQUESTED -> processHold(event);
+            case CAPTURE_REQUESTED -> processCapture(event);
+            case RELEASE_REQUESTED -> processRelease(event);
+            case TRANSFER_REQUESTED -> processTransfer(event);
+            // Outcome events of requests that were applied synchronously, for downstream consumers only
+            case CREDIT_COMPLETED, CREDIT_FAILED, DEBIT_COMPLETED, DEBIT_FAILED ->
+                    log.debug("Skipping outcome event: type={}, txnId={}", event.getEventType(), event.getTransactionId());
+            default -> log.warn("Unknown event type: {}", event.getEventType());
+        }
+    }
+    
+    private void processCredit(WalletEvent event) {
+        WalletTransaction transaction = getTransaction(event.getTransactionId());
+        
+        if (transaction.getStatus() != TransactionStatus.INIT) {
+            log.warn("Transaction already processed: {}", transaction.getTransactionId());
+            return;
+        }
+        
+        try {
+            if (creditNettingService.isHot(event.getWalletId())) {
+                requireWallet(event.getWalletId(), "Wallet not found");
+                Wallet systemWallet = lockSystemWallet(event.getWalletId());
+                
+                transaction.setStatus(TransactionStatus.PENDING);
+                transactionRepository.save(transaction);
+                
+                long writeStart = System.nanoTime();
+                ledgerService.createNettedCreditEntries(transaction, event.getWalletId(), systemWallet);
+                walletMetrics.recordSince(EventStage.LEDGER_WRITE, writeStart);
+                
+                walletMetrics.increment(WalletMetric.CREDIT_NETTED);
+                log.info("Credit staged for netting: txnId={}, amount={}", transaction.getTransactionId(), transaction.getAmount());
+                return;
+            }
+            
+            Wallet wallet = lockWallet(event.getWalletId())
+                    .orElseThrow(() -> new RuntimeException("Wallet not found"));
+            
+            Wallet systemWallet = lockSystemWallet(wallet.getWalletId());
+            
+            transaction.setStatus(TransactionStatus.PENDING);
+            transactionRepository.save(transaction);
+            
+            long writeStart = System.nanoTime();
+            ledgerService.createCreditEntries(transaction, wallet, systemWallet);
+            walletMetrics.recordSince(EventStage.LEDGER_WRITE, writeStart);
+            
+            transaction.complete();
+            transactionRepository.save(transaction);
+            
+            walletMetrics.increment(WalletMetric.CREDIT_COMPLETED);
+            log.info("Credit completed: txnId={}, amount={}", transaction.getTransactionId(), transaction.getAmount());
+            
+        } catch (Exception e) {
+            transaction.fail(e.getMessage());
+            transactionRepository.save(transaction);
+            walletMetrics.increment(WalletMetric.CREDIT_FAILED);
+            throw e;
+        }
+    }
+    
+    private void processDebit(WalletEvent event) {
+        WalletTransaction transaction = getTransaction(event.getTransactionId());
+        
+        if (transaction.getStatus() != TransactionStatus.INIT) {
+            log.warn("Transaction already processed: {}", transaction.getTransactionId());
+            return;
+        }
+        
+        try {
+            long updateStart = System.nanoTime();
+            boolean guarded = useGuardedUpdates();
+            if (guarded) {
+                transaction.setStatus(TransactionStatus.PENDING);
+                transactionRepository.save(transaction);
+                
+                applyGuardedDebit(transaction, event);
+            } else {
+                Wallet wallet = lockWallet(event.getWalletId())
+                        .orElseThrow(() -> new RuntimeException("Wallet not found"));
+                
+                if (!wallet.hasAvailableBalance(event.getAmount())) {
+                    throw new RuntimeException("Insufficient funds");
+                }
+                
+                Wallet systemWallet = lockSystemWallet(wallet.getWalletId());
+                
+                transaction.setStatus(TransactionStatus.PENDING);
+                transactionRepository.save(transaction);
+                
+                long writeStart = System.nanoTime();
+                ledgerService.createDebitEntries(transaction, wallet, systemWallet);
+                walletMetrics.recordSince(EventStage.LEDGER_WRITE, writeStart);
+            }
+            walletMetrics.recordBalanceUpdate(BalanceUpdate.DEBIT, guarded, updateStart);
+            
+            transaction.complete();
+            transactionRepository.save(transaction);
+            
+            walletMetrics.increment(WalletMetric.DEBIT_COMPLETED);
+            log.info("Debit completed: txnId={}, amount={}", transaction.getTransactionId(), transaction.getAmount());
+            
+        } catch (Exception e) {
+            transaction.fail(e.getMessage());
+            transactionRepository.save(transaction);
+            walletMetrics.increment(WalletMetric.DEBIT_FAILED);
+            throw e;
+        }
+    }
+    
+    private void processHold(WalletEvent event) {
+        WalletTransaction transaction = getTransaction(event.getTransactionId());
+        
+        if (transaction.getStatus() != TransactionStatus.INIT) {
+            log.warn("Transaction already processed: {}", transaction.getTransactionId());
+            return;
+        }
+        
+        try {
+            long updateStart = System.nanoTime();
+            boolean guarded = useGuardedUpdates();
+            if (guarded) {
+                transaction.setStatus(TransactionStatus.PENDING);
+                transactionRepository.save(transaction);
+                
+                BalanceChange wallet = guardedBalanceUpdater.hold(event.getWalletId(), MinorUnits.of(event.getAmount()))
+                        .orElseThrow(() -> guardRejected(event.getWalletId(), "Insufficient funds for hold"));
+                long writeStart = System.nanoTime();
+                ledgerService.createGuardedHoldEntries(transaction, wallet);
+                walletMetrics.recordSince(EventStage.LEDGER_WRITE, writeStart);
+            } else {
+                Wallet wallet = lockWallet(event.getWalletId())
+                        .orElseThrow(() -> new RuntimeException("Wallet not found"));
+                
+                if (!wallet.hasAvailableBalance(event.getAmount())) {
+                    throw new RuntimeException("Insufficient funds for hold");
+                }
+                
+                transaction.setStatus(TransactionStatus.PENDING);
+                transactionRepository.save(transaction);
+                
+                long writeStart = System.nanoTime();
+                ledgerService.createHoldEntries(transaction, wallet);
+                walletMetrics.recordSince(EventStage.LEDGER_WRITE, writeStart);
+            }
+            walletMetrics.recordBalanceUpdate(BalanceUpdate.HOLD, guarded, updateStart);
+            
+            transaction.setStatus(TransactionStatus.HELD);
+            transactionRepository.save(transaction);
+            
+            walletMetrics.increment(WalletMetric.HOLD_COMPLETED);
+            log.info("Hold completed: txnId={}, amount={}", transaction.getTransactionId(), transaction.getAmount());
+            
+        } catch (Exception e) {
+            transaction.fail(e.getMessage());
+            transactionRepository.save(transaction);
+            walletMetrics.increment(WalletMetric.HOLD_FAILED);
+            throw e;
+        }
+    }
+    
+    private void processCapture(WalletEvent event) {
+        WalletTransaction transaction = getTransaction(event.getTransactionId());
+        
+        if (transaction.getStatus() != TransactionStatus.INIT) {
+            log.warn("Transaction already processed: {}", transaction.getTransactionId());
+            return;
+        }
+        
+        try {
+            WalletTransaction holdTxn = findTransaction(event.getHoldTransactionId())
+                    .orElseThrow(() -> new RuntimeException("Hold transaction not found"));
+            
+            Wallet wallet = lockWallet(event.getWalletId())
+                    .orElseThrow(() -> new RuntimeException("Wallet not found"));
+            
+            Wallet platformWallet = lockPlatformWallet(wallet.getWalletId());
+            
+            transaction.setStatus(TransactionStatus.PENDING);
+            transactionRepository.save(transaction);
+            
+            long writeStart = System.nanoTime();
+            ledgerService.createCaptureEntries(transaction, wallet, platformWallet);
+            walletMetrics.recordSince(EventStage.LEDGER_WRITE, writeStart);
+            
+            transaction.complete();
+            holdTxn.setStatus(TransactionStatus.CAPTURED);
+            
+            transactionRepository.save(transaction);
+            transactionRepository.save(holdTxn);
+            
+            walletMetrics.increment(WalletMetric.CAPTURE_COMPLETED);
+            log.info("Capture completed: txnId={}", transaction.getTransactionId());
+            
+        } catch (Exception e) {
+            transaction.fail(e.getMessage());
+            transactionRepository.save(transaction);
+            walletMetrics.increment(WalletMetric.CAPTURE_FAILED);
+            throw e;
+        }
+    }
+    
+    private void processRelease(WalletEvent event) {
+        WalletTransaction transaction = getTransaction(event.getTransactionId());
+        
+        if (transaction.getStatus() != TransactionStatus.INIT) {
+            log.warn("Transaction already processed: {}", transaction.getTransactionId());
+            return;
+        }
+        
+        try {
+            WalletTransaction holdTxn = findTransaction(event.getHoldTransactionId())
+                    .orElseThrow(() -> new RuntimeException("Hold transaction not found"));
+            
+            Wallet wallet = lockWallet(event.getWalletId())
+                    .orElseThrow(() -> new RuntimeException("Wallet not found"));
+            
+            transaction.setStatus(TransactionStatus.PENDING);
+            transactionRepository.save(transaction);
+            
+            long writeStart = System.nanoTime();
+            ledgerService.createReleaseEntries(transaction, wallet);
+            walletMetrics.recordSince(EventStage.LEDGER_WRITE, writeStart);
+            
+            transaction.complete();
+            holdTxn.setStatus(TransactionStatus.RELEASED);
+            
+            transactionRepository.save(transaction);
+            transactionRepository.save(holdTxn);
+            
+            walletMetrics.increment(WalletMetric.RELEASE_COMPLETED);
+            log.info("Release completed: txnId={}", transaction.getTransactionId());
+            
+        } catch (Exception e) {
+            transaction.fail(e.getMessage());
+            transactionRepository.save(transaction);
+            walletMetrics.increment(WalletMetric.RELEASE_FAILED);
+            throw e;
+        }
+    }
+    
+    private void processTransfer(WalletEvent event) {
+        WalletTransaction senderTxn = getTransaction(event.getTransactionId());
+        
+        if (senderTxn.getStatus() != TransactionStatus.INIT) {
+            log.warn("Transaction already processed: {}", senderTxn.getTransactionId());
+            return;
+        }
+        
+        try {
+            // A hot receiver is not locked; its credit is staged and applied by the netting job
+            String receiverWalletId = event.getCounterpartyWalletId();
+            boolean netted = creditNettingService.isHot(receiverWalletId);
+            Map<String, Wallet> locked = netted
+                    ? lockWallets(event.getWalletId())
+                    : lockWallets(event.getWalletId(), receiverWalletId);
+            
+            Wallet senderWallet = locked.get(event.getWalletId());
+            if (senderWallet == null) {
+                throw new RuntimeException("Sender wallet not found");
+            }
+            Wallet receiverWallet = null;
+            if (netted) {
+                requireWallet(receiverWalletId, "Receiver wallet not found");
+            } else {
+                receiverWallet = locked.get(receiverWalletId);
+                if (receiverWallet == null) {
+                    throw new RuntimeException("Receiver wallet not found");
+                }
+            }
+            
+            if (!senderWallet.hasAvailableBalance(event.getAmount())) {
+                throw new RuntimeException("Insufficient funds for transfer");
+            }
+            
+            WalletTransaction receiverTxn = WalletTransaction.builder()
+                    .transactionId("TXN-" + UUID.randomUUID().toString().toUpperCase().substring(0, 16))
+                    .idempotencyKey("TRANSFER-IN-" + senderTxn.getIdempotencyKey())
+                    .walletId(receiverWalletId)
+                    .userId(event.getCounterpartyUserId())
+                    .transactionType(TransactionType.TRANSFER_IN)
+                    .status(TransactionStatus.PENDING)
+                    .amount(event.getAmount())
+                    .currency(event.getCurrency())
+                    .description("Transfer from: " + senderWallet.getWalletId())
+                    .counterpartyWalletId(senderWallet.getWalletId())
+                    .build();
+            
+            receiverTxn = transactionRepository.save(receiverTxn);
+            
+            senderTxn.setStatus(TransactionStatus.PENDING);
+            transactionRepository.save(senderTxn);
+            
+            if (netted) {
+                long writeStart = System.nanoTime();
+                ledgerService.createNettedTransferEntries(senderTxn, receiverTxn, senderWallet, receiverWalletId);
+                walletMetrics.recordSince(EventStage.LEDGER_WRITE, writeStart);
+            } else {
+                long writeStart = System.nanoTime();
+                ledgerService.createTransferEntries(senderTxn, receiverTxn, senderWallet, receiverWallet);
+                walletMetrics.recordSince(EventStage.LEDGER_WRITE, writeStart);
+                receiverTxn.complete();
+            }
+            
+            senderTxn.complete();
+            
+            transactionRepository.save(senderTxn);
+            transactionRepository.save(receiverTxn);
+            
+            walletMetrics.increment(WalletMetric.TRANSFER_COMPLETED);
+            log.info("Transfer completed: sender={}, receiver={}", 
+                    senderTxn.getTransactionId(), receiverTxn.getTransactionId());
+            
+        } catch (Exception e) {
+            senderTxn.fail(e.getMessage());
+            transactionRepository.save(senderTxn);
+            walletMetrics.increment(WalletMetric.TRANSFER_FAILED);
+            throw e;
+        }
+    }
+    
+    // The contra stripe is credited with the same kind of statement; it only has to be created
+    // through the locking path the first time it is used.
+    private void applyGuardedDebit(WalletTransaction transaction, WalletEvent event) {
+        long amount = MinorUnits.of(event.getAmount());
+        BalanceChange wallet = guardedBalanceUpdater.debit(event.getWalletId(), amount)
+                .orElseThrow(() -> guardRejected(event.getWalletId(), "Insufficient funds"));
+        
+        String systemWalletId = contraAccountService.systemWalletIdFor(event.getWalletId());
+        BalanceChange systemWallet = guardedBalanceUpdater.credit(systemWalletId, amount)
+                .orElseGet(() -> {
+                    contraAccountService.lockSystemWallet(event.getWalletId());
+                    return guardedBalanceUpdater.credit(systemWalletId, amount)
+                            .orElseThrow(() -> new RuntimeException("System wallet not found: " + systemWalletId));
+                });
+        
+        long writeStart = System.nanoTime();
+        ledgerService.createGuardedDebitEntries(transaction, wallet, systemWallet);
+        walletMetrics.recordSince(EventStage.LEDGER_WRITE, writeStart);
+    }
+    
+    // Batches lock and load their wallets up front; a guarded update underneath those entities
+    // would be overwritten when they are saved.
+    private boolean useGuardedUpdates() {
+        return (guardedUpdates || reserved.get() != null) && batchContext.get() == null;
+    }
+    
+    // The statement matched no row: either the wallet is missing or the funds check failed
+    private RuntimeException guardRejected(String walletId, String message) {
+        return walletRepository.existsByWalletId(walletId)
+                ? new RuntimeException(message)
+                : new RuntimeException("Wallet not found");
+    }
+    
+    private void requireWallet(String walletId, String message) {
+        BatchContext context = batchContext.get();
+        if ((context == null || !context.wallets().containsKey(walletId)) && !walletRepository.existsByWalletId(walletId)) {
+            throw new RuntimeException(message);
+        }
+    }
+    
+    private WalletTransaction getTransaction(String transactionId) {
+        return findTransaction(transactionId)
+                .orElseThrow(() -> new RuntimeException("Transaction not found: " + transactionId));
+    }
+    
+    private Optional<WalletTransaction> findTransaction(String transactionId) {
+        BatchContext context = batchContext.get();
+        if (context != null && context.transactions().containsKey(transactionId)) {
+            return Optional.of(context.transactions().get(transactionId));
+        }
+        return transactionRepository.findByTransactionId(transactionId);
+    }
+    
+    private Optional<Wallet> lockWallet(String walletId) {
+        BatchContext context = batchContext.get();
+        if (context != null && context.wallets().containsKey(walletId)) {
+            return Optional.of(context.wallets().get(walletId));
+        }
+        return walletMetrics.time(EventStage.LOCK_WAIT, () -> walletRepository.findByWalletIdForUpdate(walletId));
+    }
+    
+    // One statement locking the rows in walletId order, so two transfers in opposite directions
+    // between the same wallets queue behind each other instead of deadlocking. Only user wallets
+    // go through here; contra stripes are always locked after them.
+    private Map<String, Wallet> lockWallets(String... walletIds) {
+        BatchContext context = batchContext.get();
+        Map<String, Wallet> wallets = new HashMap<>();
+        Set<String> toLock = new TreeSet<>();
+        for (String walletId : walletIds) {
+            if (walletId == null) {
+                continue;
+            }
+            if (context != null && context.wallets().containsKey(walletId)) {
+                wallets.put(walletId, context.wallets().get(walletId));
+            } else {
+                toLock.add(walletId);
+            }
+        }
+        
+        if (!toLock.isEmpty()) {
+            walletMetrics.time(EventStage.LOCK_WAIT, () -> walletRepository.findByWalletIdInForUpdate(toLock))
+                    .forEach(wallet -> wallets.put(wallet.getWalletId(), wallet));
+        }
+        return wallets;
+    }
+    
+    private Wallet lockSystemWallet(String walletId) {
+        BatchContext context = batchContext.get();
+        Wallet locked = context == null ? null : context.wallets().get(contraAccountService.systemWalletIdFor(walletId));
+        return locked != null ? locked
+                : walletMetrics.time(EventStage.LOCK_WAIT, () -> contraAccountService.lockSystemWallet(walletId));
+    }
+    
+    private Wallet lockPlatformWallet(String walletId) {
+        BatchContext context = batchContext.get();
+        Wallet locked = context == null ? null : context.wallets().get(contraAccountService.platformWalletIdFor(walletId));
+        return locked != null ? locked
+                : walletMetrics.time(EventStage.LOCK_WAIT, () -> contraAccountService.lockPlatformWallet(walletId));
+    }
+    
+    private static void addIfPresent(Set<String> ids, String id) {
+        if (id != null) {
+            ids.add(id);
+        }
+    }
+    
+    private record BatchContext(Map<String, WalletTransaction> transactions, Map<String, Wallet> wallets) {
+    }
+}
@@ -10,8 +10,12 @@ public interface WalletService {
     
     TransactionResponse credit(CreditRequest request);
     
+    TransactionResponse credit(CreditRequest request, boolean synchronous);
+    
     TransactionResponse debit(DebitRequest request);
     
+    TransactionResponse debit(DebitRequest request, boolean synchronous);
+    
     TransactionResponse hold(HoldRequest request);
     
     TransactionResponse capture(CaptureRequest request);
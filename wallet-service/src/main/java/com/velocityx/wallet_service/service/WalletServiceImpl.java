@@ -9,21 +9,29 @@ import com.velocityx.wallet_service.entity.WalletTransaction;
 import com.velocityx.wallet_service.enums.*;
 import com.velocityx.wallet_service.exception.InsufficientFundsException;
 import com.velocityx.wallet_service.exception.WalletNotFoundException;
+import com.velocityx.wallet_service.metrics.EventStage;
+import com.velocityx.wallet_service.metrics.WalletMetric;
+import com.velocityx.wallet_service.metrics.WalletMetrics;
 import com.velocityx.wallet_service.repository.WalletRepository;
 import com.velocityx.wallet_service.repository.WalletTransactionRepository;
-import io.micrometer.core.instrument.Counter;
-import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.math.BigDecimal;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Supplier;
 
 @Service
 @Transactional
@@ -34,7 +42,14 @@ public class WalletServiceImpl implements WalletService {
     private final WalletRepository walletRepository;
     private final WalletTransactionRepository transactionRepository;
     private final KafkaTemplate<String, Object> kafkaTemplate;
-    private final MeterRegistry meterRegistry;
+    private final OutboxService outboxService;
+    private final WalletBalanceCache balanceCache;
+    private final IdempotencyFilter idempotencyFilter;
+    private final SyncFastPath syncFastPath;
+    private final TransferLimiter transferLimiter;
+    private final WalletEventProcessor eventProcessor;
+    private final WalletMetrics walletMetrics;
+    private final PlatformTransactionManager transactionManager;
     
     @Value("${kafka.topics.wallet-events}")
     private String walletEventsTopic;
@@ -56,93 +71,87 @@ public class WalletServiceImpl implements WalletService {
                 .walletId(generateWalletId())
                 .userId(request.getUserId())
                 .currency(request.getCurrency())
-                .balance(BigDecimal.ZERO)
-                .availableBalance(BigDecimal.ZERO)
-                .heldBalance(BigDecimal.ZERO)
                 .status(WalletStatus.ACTIVE)
                 .build();
         
         wallet = walletRepository.save(wallet);
-        incrementMetric("wallet.created");
+        walletMetrics.increment(WalletMetric.WALLET_CREATED);
         
         log.info("Created wallet: walletId={}, userId={}", wallet.getWalletId(), wallet.getUserId());
         return toWalletResponse(wallet);
     }
     
     @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public TransactionResponse credit(CreditRequest request) {
+        return credit(request, false);
+    }
+    
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public TransactionResponse credit(CreditRequest request, boolean synchronous) {
         log.info("Processing credit: userId={}, amount={}", request.getUserId(), request.getAmount());
         
-        if (transactionRepository.existsByIdempotencyKey(request.getIdempotencyKey())) {
-            return getExistingTransaction(request.getIdempotencyKey());
-        }
-        
-        Wallet wallet = getOrCreateWallet(request.getUserId(), request.getCurrency());
-        
-        WalletTransaction transaction = WalletTransaction.builder()
-                .transactionId(generateTransactionId())
-                .idempotencyKey(request.getIdempotencyKey())
-                .walletId(wallet.getWalletId())
-                .userId(request.getUserId())
-                .transactionType(TransactionType.CREDIT)
-                .status(TransactionStatus.INIT)
-                .amount(request.getAmount())
-                .currency(request.getCurrency())
-                .description(request.getDescription())
-                .referenceId(request.getReferenceId())
-                .metadata(request.getMetadata())
-                .build();
-        
-        transaction = transactionRepository.save(transaction);
-        
-        publishEvent(WalletEventType.CREDIT_REQUESTED, transaction, null, null);
-        incrementMetric("wallet.credit.requested");
-        
-        return toTransactionResponse(transaction);
+        return submit(request.getIdempotencyKey(), WalletEventType.CREDIT_REQUESTED, synchronous, () -> {
+            Wallet wallet = getOrCreateWallet(request.getUserId(), request.getCurrency());
+            
+            return WalletTransaction.builder()
+                    .transactionId(generateTransactionId())
+                    .idempotencyKey(request.getIdempotencyKey())
+                    .walletId(wallet.getWalletId())
+                    .userId(request.getUserId())
+                    .transactionType(TransactionType.CREDIT)
+                    .status(TransactionStatus.INIT)
+                    .amount(request.getAmount())
+                    .currency(request.getCurrency())
+                    .description(request.getDescription())
+                    .referenceId(request.getReferenceId())
+                    .metadata(request.getMetadata())
+                    .build();
+        });
     }
     
     @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public TransactionResponse debit(DebitRequest request) {
+        return debit(request, false);
+    }
+    
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public TransactionResponse debit(DebitRequest request, boolean synchronous) {
         log.info("Processing debit: userId={}, amount={}", request.getUserId(), request.getAmount());
         
-        if (transactionRepository.existsByIdempotencyKey(request.getIdempotencyKey())) {
-            return getExistingTransaction(request.getIdempotencyKey());
-        }
-        
-        Wallet wallet = walletRepository.findByUserIdAndCurrency(request.getUserId(), request.getCurrency())
-                .orElseThrow(() -> new WalletNotFoundException("Wallet not found for user: " + request.getUserId()));
-        
-        if (!wallet.hasAvailableBalance(request.getAmount())) {
-            throw new InsufficientFundsException("Insufficient funds: available=" + wallet.getAvailableBalance());
-        }
-        
-        WalletTransaction transaction = WalletTransaction.builder()
-                .transactionId(generateTransactionId())
-                .idempotencyKey(request.getIdempotencyKey())
-                .walletId(wallet.getWalletId())
-                .userId(request.getUserId())
-                .transactionType(TransactionType.DEBIT)
-                .status(TransactionStatus.INIT)
-                .amount(request.getAmount())
-                .currency(request.getCurrency())
-                .description(request.getDescription())
-                .referenceId(request.getReferenceId())
-                .build();
-        
-        transaction = transactionRepository.save(transaction);
-        
-        publishEvent(WalletEventType.DEBIT_REQUESTED, transaction, null, null);
-        incrementMetric("wallet.debit.requested");
-        
-        return toTransactionResponse(transaction);
+        return submit(request.getIdempotencyKey(), WalletEventType.DEBIT_REQUESTED, synchronous, () -> {
+            Wallet wallet = walletRepository.findByUserIdAndCurrency(request.getUserId(), request.getCurrency())
+                    .orElseThrow(() -> new WalletNotFoundException("Wallet not found for user: " + request.getUserId()));
+            
+            if (!wallet.hasAvailableBalance(request.getAmount())) {
+                throw new InsufficientFundsException("Insufficient funds: available=" + wallet.getAvailableBalance());
+            }
+            
+            return WalletTransaction.builder()
+                    .transactionId(generateTransactionId())
+                    .idempotencyKey(request.getIdempotencyKey())
+                    .walletId(wallet.getWalletId())
+                    .userId(request.getUserId())
+                    .transactionType(TransactionType.DEBIT)
+                    .status(TransactionStatus.INIT)
+                    .amount(request.getAmount())
+                    .currency(request.getCurrency())
+                    .description(request.getDescription())
+                    .referenceId(request.getReferenceId())
+                    .build();
+        });
     }
     
     @Override
     public TransactionResponse hold(HoldRequest request) {
         log.info("Processing hold: userId={}, amount={}", request.getUserId(), request.getAmount());
         
-        if (transactionRepository.existsByIdempotencyKey(request.getIdempotencyKey())) {
-            return getExistingTransaction(request.getIdempotencyKey());
+        Optional<TransactionResponse> existing = findExistingTransaction(request.getIdempotencyKey());
+        if (existing.isPresent()) {
+            return existing.get();
         }
         
         Wallet wallet = walletRepository.findByUserIdAndCurrencyForUpdate(request.getUserId(), request.getCurrency())
@@ -165,10 +174,13 @@ public class WalletServiceImpl implements WalletService {
                 .holdExpiresAt(Instant.now().plus(holdExpiryHours, ChronoUnit.HOURS))
                 .build();
         
-        transaction = transactionRepository.save(transaction);
+        Optional<TransactionResponse> duplicate = saveTransaction(transaction);
+        if (duplicate.isPresent()) {
+            return duplicate.get();
+        }
         
         publishEvent(WalletEventType.HOLD_REQUESTED, transaction, null, null);
-        incrementMetric("wallet.hold.requested");
+        walletMetrics.increment(WalletMetric.HOLD_REQUESTED);
         
         return toTransactionResponse(transaction);
     }
@@ -177,8 +189,9 @@ public class WalletServiceImpl implements WalletService {
     public TransactionResponse capture(CaptureRequest request) {
         log.info("Processing capture: holdTxnId={}", request.getHoldTransactionId());
         
-        if (transactionRepository.existsByIdempotencyKey(request.getIdempotencyKey())) {
-            return getExistingTransaction(request.getIdempotencyKey());
+        Optional<TransactionResponse> existing = findExistingTransaction(request.getIdempotencyKey());
+        if (existing.isPresent()) {
+            return existing.get();
         }
         
         WalletTransaction holdTxn = transactionRepository.findByTransactionId(request.getHoldTransactionId())
@@ -205,10 +218,13 @@ public class WalletServiceImpl implements WalletService {
                 .holdTransactionId(holdTxn.getTransactionId())
                 .build();
         
-        transaction = transactionRepository.save(transaction);
+        Optional<TransactionResponse> duplicate = saveTransaction(transaction);
+        if (duplicate.isPresent()) {
+            return duplicate.get();
+        }
         
         publishEvent(WalletEventType.CAPTURE_REQUESTED, transaction, null, null);
-        incrementMetric("wallet.capture.requested");
+        walletMetrics.increment(WalletMetric.CAPTURE_REQUESTED);
         
         return toTransactionResponse(transaction);
     }
@@ -237,10 +253,13 @@ public class WalletServiceImpl implements WalletService {
                 .holdTransactionId(holdTxn.getTransactionId())
                 .build();
         
-        transaction = transactionRepository.save(transaction);
+        Optional<TransactionResponse> duplicate = saveTransaction(transaction);
+        if (duplicate.isPresent()) {
+            return duplicate.get();
+        }
         
         publishEvent(WalletEventType.RELEASE_REQUESTED, transaction, null, null);
-        incrementMetric("wallet.release.requested");
+        walletMetrics.increment(WalletMetric.RELEASE_REQUESTED);
         
         return toTransactionResponse(transaction);
     }
@@ -250,8 +269,9 @@ public class WalletServiceImpl implements WalletService {
         log.info("Processing transfer: from={}, to={}, amount={}", 
                 request.getFromUserId(), request.getToUserId(), request.getAmount());
         
-        if (transactionRepository.existsByIdempotencyKey(request.getIdempotencyKey())) {
-            return getExistingTransaction(request.getIdempotencyKey());
+        Optional<TransactionResponse> existing = findExistingTransaction(request.getIdempotencyKey());
+        if (existing.isPresent()) {
+            return existing.get();
         }
         
         Wallet senderWallet = walletRepository.findByUserIdAndCurrency(request.getFromUserId(), request.getCurrency())
@@ -264,6 +284,8 @@ public class WalletServiceImpl implements WalletService {
             throw new InsufficientFundsException("Insufficient funds for transfer");
         }
         
+        transferLimiter.reserve(senderWallet.getWalletId(), request.getAmount());
+        
         WalletTransaction transaction = WalletTransaction.builder()
                 .transactionId(generateTransactionId())
                 .idempotencyKey(request.getIdempotencyKey())
@@ -277,29 +299,33 @@ public class WalletServiceImpl implements WalletService {
                 .counterpartyWalletId(receiverWallet.getWalletId())
                 .build();
         
-        transaction = transactionRepository.save(transaction);
+        Optional<TransactionResponse> duplicate = saveTransaction(transaction);
+        if (duplicate.isPresent()) {
+            return duplicate.get();
+        }
         
         publishEvent(WalletEventType.TRANSFER_REQUESTED, transaction, 
                 receiverWallet.getWalletId(), request.getToUserId());
-        incrementMetric("wallet.transfer.requested");
+        walletMetrics.increment(WalletMetric.TRANSFER_REQUESTED);
         
         return toTransactionResponse(transaction);
     }
     
+    // No surrounding transaction: a cache hit should not check out a connection
     @Override
-    @Transactional(readOnly = true)
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public WalletResponse getWallet(Long userId) {
-        Wallet wallet = walletRepository.findByUserId(userId)
-                .orElseThrow(() -> new WalletNotFoundException("Wallet not found for user: " + userId));
-        return toWalletResponse(wallet);
+        return balanceCache.getByUserId(userId, () -> walletRepository.findByUserId(userId)
+                .map(this::toWalletResponse)
+                .orElseThrow(() -> new WalletNotFoundException("Wallet not found for user: " + userId)));
     }
     
     @Override
-    @Transactional(readOnly = true)
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public WalletResponse getWalletByWalletId(String walletId) {
-        Wallet wallet = walletRepository.findByWalletId(walletId)
-                .orElseThrow(() -> new WalletNotFoundException("Wallet not found: " + walletId));
-        return toWalletResponse(wallet);
+        return balanceCache.getByWalletId(walletId, () -> walletRepository.findByWalletId(walletId)
+                .map(this::toWalletResponse)
+                .orElseThrow(() -> new WalletNotFoundException("Wallet not found: " + walletId)));
     }
     
     @Override
@@ -317,24 +343,149 @@ public class WalletServiceImpl implements WalletService {
                             .walletId(generateWalletId())
                             .userId(userId)
                             .currency(currency)
-                            .balance(BigDecimal.ZERO)
-                            .availableBalance(BigDecimal.ZERO)
-                            .heldBalance(BigDecimal.ZERO)
                             .status(WalletStatus.ACTIVE)
                             .build();
                     return walletRepository.save(newWallet);
                 });
     }
     
-    private TransactionResponse getExistingTransaction(String idempotencyKey) {
-        WalletTransaction transaction = transactionRepository.findByIdempotencyKey(idempotencyKey)
-                .orElseThrow(() -> new RuntimeException("Transaction not found"));
-        return toTransactionResponse(transaction);
+    // Nearly every key is new, so the filter's "definitely new" skips the index probe entirely and
+    // a possible hit costs one lookup instead of an exists check followed by a fetch.
+    private Optional<TransactionResponse> findExistingTransaction(String idempotencyKey) {
+        if (!idempotencyFilter.mightContain(idempotencyKey)) {
+            return Optional.empty();
+        }
+        return transactionRepository.findByIdempotencyKey(idempotencyKey).map(this::toTransactionResponse);
+    }
+    
+    // The filter can miss a key that was used (older than its window, written on another replica
+    // since the last refresh, lost in the Redis mirror), so the unique index is the final check. A
+    // duplicate rolls this request back, which also releases any transfer limit reservation, and
+    // returns the stored transaction the way the lookup above would have.
+    private Optional<TransactionResponse> saveTransaction(WalletTransaction transaction) {
+        return saveTransaction(transaction, TransactionAspectSupport.currentTransactionStatus());
+    }
+    
+    private Optional<TransactionResponse> saveTransaction(WalletTransaction transaction,
+                                                          org.springframework.transaction.TransactionStatus status) {
+        try {
+            transactionRepository.saveAndFlush(transaction);
+            idempotencyFilter.put(transaction.getIdempotencyKey());
+            return Optional.empty();
+        } catch (DataIntegrityViolationException e) {
+            TransactionResponse existing = findCommittedTransaction(transaction.getIdempotencyKey())
+                    .orElseThrow(() -> e);
+            status.setRollbackOnly();
+            idempotencyFilter.put(transaction.getIdempotencyKey());
+            log.info("Duplicate idempotency key, returning existing transaction: txnId={}", existing.getTransactionId());
+            return Optional.of(existing);
+        }
+    }
+    
+    // The failed insert has aborted the request's own transaction, so the read needs another one
+    private Optional<TransactionResponse> findCommittedTransaction(String idempotencyKey) {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        template.setReadOnly(true);
+        return template.execute(status -> transactionRepository.findByIdempotencyKey(idempotencyKey)
+                .map(this::toTransactionResponse));
+    }
+    
+    // Credits and debits manage their own transactions. The INIT row commits without touching the
+    // wallet row, so a hot wallet falls back to the Kafka path before anything waits on its lock.
+    // With a permit, the processor applies the event in a transaction of its own and the outcome is
+    // published in a third.
+    private TransactionResponse submit(String idempotencyKey, WalletEventType requestedType, boolean synchronous,
+                                       Supplier<WalletTransaction> newTransaction) {
+        WalletTransaction[] accepted = new WalletTransaction[1];
+        boolean[] permit = new boolean[1];
+        TransactionResponse response;
+        try {
+            response = new TransactionTemplate(transactionManager).execute(status -> {
+                Optional<TransactionResponse> existing = findExistingTransaction(idempotencyKey);
+                if (existing.isPresent()) {
+                    return existing.get();
+                }
+                
+                WalletTransaction transaction = newTransaction.get();
+                Optional<TransactionResponse> duplicate = saveTransaction(transaction, status);
+                if (duplicate.isPresent()) {
+                    return duplicate.get();
+                }
+                
+                accepted[0] = transaction;
+                permit[0] = synchronous && syncFastPath.tryAcquire(transaction.getWalletId(), transaction.getAmount());
+                if (!permit[0]) {
+                    publishRequested(requestedType, transaction);
+                }
+                return toTransactionResponse(transaction);
+            });
+        } catch (RuntimeException e) {
+            if (permit[0]) {
+                syncFastPath.release(accepted[0].getWalletId());
+            }
+            throw e;
+        }
+        return permit[0] ? applySynchronously(requestedType, accepted[0]) : response;
+    }
+    
+    // Runs the same processor step the consumer would. A failed apply rolls its own transaction back
+    // and leaves the row INIT, so it is handed to the Kafka path like any other request.
+    private TransactionResponse applySynchronously(WalletEventType requestedType, WalletTransaction transaction) {
+        try {
+            eventProcessor.process(buildEvent(requestedType, transaction, null, null));
+        } catch (Exception e) {
+            log.warn("Synchronous {} failed, handing over to the consumer: txnId={}, reason={}",
+                    requestedType, transaction.getTransactionId(), e.getMessage());
+        } finally {
+            syncFastPath.release(transaction.getWalletId());
+        }
+        
+        boolean credit = requestedType == WalletEventType.CREDIT_REQUESTED;
+        return new TransactionTemplate(transactionManager).execute(status -> {
+            WalletTransaction current = transactionRepository.findByTransactionId(transaction.getTransactionId())
+                    .orElseThrow();
+            if (current.getStatus() == TransactionStatus.INIT) {
+                publishRequested(requestedType, current);
+            } else if (credit) {
+                publishEvent(current.getStatus() == TransactionStatus.COMPLETED
+                        ? WalletEventType.CREDIT_COMPLETED : WalletEventType.CREDIT_FAILED, current, null, null);
+                walletMetrics.increment(WalletMetric.CREDIT_SYNC);
+            } else {
+                publishEvent(current.getStatus() == TransactionStatus.COMPLETED
+                        ? WalletEventType.DEBIT_COMPLETED : WalletEventType.DEBIT_FAILED, current, null, null);
+                walletMetrics.increment(WalletMetric.DEBIT_SYNC);
+            }
+            return toTransactionResponse(current);
+        });
+    }
+    
+    private void publishRequested(WalletEventType requestedType, WalletTransaction transaction) {
+        publishEvent(requestedType, transaction, null, null);
+        walletMetrics.increment(requestedType == WalletEventType.CREDIT_REQUESTED
+                ? WalletMetric.CREDIT_REQUESTED : WalletMetric.DEBIT_REQUESTED);
     }
     
     private void publishEvent(WalletEventType eventType, WalletTransaction transaction,
                               String counterpartyWalletId, Long counterpartyUserId) {
-        WalletEvent event = WalletEvent.builder()
+        WalletEvent event = buildEvent(eventType, transaction, counterpartyWalletId, counterpartyUserId);
+        
+        if (outboxService.isEnabled()) {
+            outboxService.append(walletEventsTopic, transaction.getUserId().toString(), event);
+        } else {
+            kafkaTemplate.send(walletEventsTopic, transaction.getUserId().toString(), event)
+                    .whenComplete((result, failure) -> {
+                        if (failure == null) {
+                            walletMetrics.recordSince(EventStage.ACCEPT_TO_PUBLISH, event.getTimestamp());
+                        }
+                    });
+        }
+        log.info("Published event: type={}, txnId={}", eventType, transaction.getTransactionId());
+    }
+    
+    private WalletEvent buildEvent(WalletEventType eventType, WalletTransaction transaction,
+                                   String counterpartyWalletId, Long counterpartyUserId) {
+        return WalletEvent.builder()
                 .eventId(UUID.randomUUID().toString())
                 .eventType(eventType)
                 .transactionId(transaction.getTransactionId())
@@ -351,9 +502,6 @@ public class WalletServiceImpl implements WalletService {
                 .metadata(transaction.getMetadata())
                 .timestamp(Instant.now())
                 .build();
-        
-        kafkaTemplate.send(walletEventsTopic, transaction.getUserId().toString(), event);
-        log.info("Published event: type={}, txnId={}", eventType, transaction.getTransactionId());
     }
     
     private String generateWalletId() {
@@ -364,10 +512,6 @@ public class WalletServiceImpl implements WalletService {
         return "TXN-" + UUID.randomUUID().toString().toUpperCase().replace("-", "").substring(0, 16);
     }
     
-    private void incrementMetric(String name) {
-        Counter.builder(name).register(meterRegistry).increment();
-    }
-    
     private WalletResponse toWalletResponse(Wallet wallet) {
         return WalletResponse.builder()
                 .id(wallet.getId())
@@ -379,6 +523,7 @@ public class WalletServiceImpl implements WalletService {
                 .heldBalance(wallet.getHeldBalance())
                 .status(wallet.getStatus())
                 .createdAt(wallet.getCreatedAt())
+                .version(wallet.getVersion())
                 .build();
     }
     
@@ -0,0 +1,73 @@
+package com.velocityx.wallet_service.util;
+
+import jakarta.persistence.LockTimeoutException;
+import jakarta.persistence.PessimisticLockException;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.transaction.CannotCreateTransactionException;
+
+import java.sql.SQLException;
+import java.sql.SQLTransientException;
+import java.util.Set;
+
+/**
+ * Separates failures worth retrying - lock contention, serialization conflicts, timeouts, lost
+ * connections - from business and data errors that would fail the same way on every attempt.
+ */
+public final class FailureClassifier {
+    
+    // serialization_failure, deadlock_detected, lock_not_available, query_canceled
+    private static final Set<String> TRANSIENT_SQL_STATES = Set.of("40001", "40P01", "55P03", "57014");
+    
+    // serialization_failure, deadlock_detected
+    private static final Set<String> CONFLICT_SQL_STATES = Set.of("40001", "40P01");
+    
+    private FailureClassifier() {
+    }
+    
+    public static boolean isTransient(Throwable failure) {
+        for (Throwable t = failure; t != null; t = t.getCause() == t ? null : t.getCause()) {
+            if (t instanceof TransientDataAccessException
+                    || t instanceof PessimisticLockingFailureException
+                    || t instanceof QueryTimeoutException
+                    || t instanceof CannotCreateTransactionException
+                    || t instanceof PessimisticLockException
+                    || t instanceof LockTimeoutException
+                    || t instanceof SQLTransientException) {
+                return true;
+            }
+            if (t instanceof SQLException sql && sql.getSQLState() != null
+                    && (TRANSIENT_SQL_STATES.contains(sql.getSQLState()) || sql.getSQLState().startsWith("08"))) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    // Deadlock victims and serialization failures: the transaction was rolled back and an immediate
+    // retry usually succeeds, unlike a lock timeout that points at a long-running holder
+    public static boolean isConflict(Throwable failure) {
+        for (Throwable t = failure; t != null; t = t.getCause() == t ? null : t.getCause()) {
+            if (t instanceof SQLException sql && sql.getSQLState() != null
+                    && CONFLICT_SQL_STATES.contains(sql.getSQLState())) {
+                return true;
+            }
+            for (Throwable suppressed : t.getSuppressed()) {
+                if (isConflict(suppressed)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+    
+    // Simple name of the innermost cause, which is stable across the wrappers added along the way
+    public static String errorClass(Throwable failure) {
+        Throwable root = failure;
+        while (root.getCause() != null && root.getCause() != root) {
+            root = root.getCause();
+        }
+        return root.getClass().getSimpleName();
+    }
+}
@@ -0,0 +1,56 @@
+package com.velocityx.wallet_service.util;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Currency;
+
+/**
+ * Fixed-point money held in a primitive long, scaled to the 4 decimal places of the
+ * numeric(19,4) balance and ledger columns. Arithmetic is overflow-checked and allocation-free;
+ * conversion to and from BigDecimal only happens at the API and JDBC boundaries.
+ */
+public final class MinorUnits {
+    
+    public static final int SCALE = 4;
+    
+    private MinorUnits() {
+    }
+    
+    public static long of(BigDecimal amount) {
+        // HALF_UP matches how Postgres rounds values written to numeric(19,4)
+        return amount.setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+    
+    public static BigDecimal toDecimal(long units) {
+        return BigDecimal.valueOf(units, SCALE);
+    }
+    
+    public static long add(long a, long b) {
+        return Math.addExact(a, b);
+    }
+    
+    public static long subtract(long a, long b) {
+        return Math.subtractExact(a, b);
+    }
+    
+    public static long negate(long units) {
+        return Math.negateExact(units);
+    }
+    
+    /**
+     * Fraction digits the currency is actually settled in (2 for INR, 0 for JPY), which is
+     * always at most the storage scale.
+     */
+    public static int currencyScale(String currencyCode) {
+        int digits = Currency.getInstance(currencyCode).getDefaultFractionDigits();
+        return digits < 0 ? SCALE : Math.min(digits, SCALE);
+    }
+    
+    public static boolean isValidFor(long units, String currencyCode) {
+        long step = 1L;
+        for (int i = currencyScale(currencyCode); i < SCALE; i++) {
+            step *= 10;
+        }
+        return units % step == 0;
+    }
+}
@@ -0,0 +1,10 @@
+package com.velocityx.wallet_service.validation;
+
+import java.math.BigDecimal;
+
+public interface MonetaryRequest {
+    
+    BigDecimal getAmount();
+    
+    String getCurrency();
+}
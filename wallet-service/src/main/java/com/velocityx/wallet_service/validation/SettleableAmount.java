@@ -0,0 +1,25 @@
+package com.velocityx.wallet_service.validation;
+
+import jakarta.validation.Constraint;
+import jakarta.validation.Payload;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * The request amount must be a whole number of the currency's smallest unit (paise for INR,
+ * yen for JPY); finer amounts would otherwise be rounded away when stored.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+@Constraint(validatedBy = SettleableAmountValidator.class)
+public @interface SettleableAmount {
+    
+    String message() default "Amount has more decimal places than the currency allows";
+    
+    Class<?>[] groups() default {};
+    
+    Class<? extends Payload>[] payload() default {};
+}
@@ -0,0 +1,37 @@
+package com.velocityx.wallet_service.validation;
+
+import com.velocityx.wallet_service.util.MinorUnits;
+import jakarta.validation.ConstraintValidator;
+import jakarta.validation.ConstraintValidatorContext;
+
+import java.math.BigDecimal;
+
+public class SettleableAmountValidator implements ConstraintValidator<SettleableAmount, MonetaryRequest> {
+    
+    @Override
+    public boolean isValid(MonetaryRequest request, ConstraintValidatorContext context) {
+        BigDecimal amount = request.getAmount();
+        if (amount == null || request.getCurrency() == null || isSettleable(amount, request.getCurrency())) {
+            return true;
+        }
+        
+        // Reported against the amount so it shows up with the other field errors
+        context.disableDefaultConstraintViolation();
+        context.buildConstraintViolationWithTemplate(context.getDefaultConstraintMessageTemplate())
+                .addPropertyNode("amount")
+                .addConstraintViolation();
+        return false;
+    }
+    
+    private boolean isSettleable(BigDecimal amount, String currency) {
+        if (amount.stripTrailingZeros().scale() > MinorUnits.SCALE) {
+            return false;
+        }
+        try {
+            return MinorUnits.isValidFor(MinorUnits.of(amount), currency);
+        } catch (IllegalArgumentException | ArithmeticException e) {
+            // Unknown currency code, or an amount that does not fit the balance columns
+            return false;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+-- One-off migration: post the opening ledger entry for a SYSTEM_ACCOUNT seeded before the seed
+-- balance was written to the ledger. Without it, reconciliation reports the whole seed as drift.
+--
+-- Safe to run more than once: the opening transaction's idempotency key is unique per wallet.
+-- The entry is dated now, so it lands in the current ledger partition and the next
+-- reconciliation run picks it up after the wallet's checkpoint.
+--
+-- Run db/wallet_transactions_type_check.sql first; on a table created before OPENING_BALANCE
+-- existed, the transaction type constraint rejects the opening transaction.
+
+BEGIN;
+
+WITH seeded AS (
+    SELECT w.wallet_id, w.user_id, w.currency, 1000000000.0000 AS amount
+    FROM wallets w
+    WHERE w.wallet_id = 'SYSTEM_ACCOUNT'
+      AND NOT EXISTS (
+          SELECT 1 FROM wallet_transactions t WHERE t.idempotency_key = 'OPENING-' || w.wallet_id
+      )
+), opened AS (
+    INSERT INTO wallet_transactions (transaction_id, idempotency_key, wallet_id, user_id, transaction_type,
+                                     status, amount, currency, balance_before, balance_after, description,
+                                     completed_at, created_at, updated_at, version)
+    SELECT 'TXN-' || upper(substr(md5(random()::text), 1, 16)), 'OPENING-' || wallet_id, wallet_id, user_id,
+           'OPENING_BALANCE', 'COMPLETED', amount, currency, 0, amount, 'Opening balance', now(), now(), now(), 0
+    FROM seeded
+    RETURNING id, wallet_id, amount
+)
+INSERT INTO ledger_entries (entry_id, transaction_id, wallet_id, entry_type, entry_side, amount,
+                            balance_before, balance_after, description, created_at)
+SELECT 'LED-' || upper(substr(md5(random()::text), 1, 16)), id, wallet_id, 'CREDIT', 'CR', amount,
+       0, amount, 'Opening balance', now()
+FROM opened;
+
+COMMIT;
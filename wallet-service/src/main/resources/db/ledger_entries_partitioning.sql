@@ -0,0 +1,77 @@
+-- One-off migration: turn ledger_entries into a table range-partitioned by month on created_at.
+--
+-- Run during a maintenance window with the wallet consumers stopped. Afterwards set
+-- wallet.ledger.partitioning.enabled=true; LedgerPartitionManager then creates upcoming monthly
+-- partitions and archives the ones older than wallet.ledger.archive.horizon-months.
+--
+-- wallet_transactions stays unpartitioned: its transaction_id and idempotency_key unique keys
+-- would have to include created_at, which would let duplicate requests through.
+
+BEGIN;
+
+-- Partition bounds are whole UTC months
+SET LOCAL TimeZone = 'UTC';
+
+ALTER TABLE ledger_entries RENAME TO ledger_entries_legacy;
+ALTER INDEX IF EXISTS idx_ledger_transaction_id RENAME TO idx_ledger_legacy_transaction_id;
+ALTER INDEX IF EXISTS idx_ledger_wallet_entry RENAME TO idx_ledger_legacy_wallet_entry;
+ALTER INDEX IF EXISTS idx_ledger_wallet_id RENAME TO idx_ledger_legacy_wallet_id;
+ALTER INDEX IF EXISTS idx_ledger_entry_type RENAME TO idx_ledger_legacy_entry_type;
+ALTER INDEX IF EXISTS idx_ledger_created_at RENAME TO idx_ledger_legacy_created_at;
+ALTER INDEX IF EXISTS idx_ledger_wallet_created RENAME TO idx_ledger_legacy_wallet_created;
+ALTER TABLE ledger_entries_legacy RENAME CONSTRAINT uk_ledger_entry TO uk_ledger_legacy_entry;
+
+-- Identity columns are not supported on partitioned tables before Postgres 17, so ids come from
+-- a plain sequence continuing after the legacy ids.
+CREATE SEQUENCE ledger_entries_id_seq;
+SELECT setval('ledger_entries_id_seq', COALESCE((SELECT MAX(id) FROM ledger_entries_legacy), 0) + 1, false);
+
+CREATE TABLE ledger_entries (
+    id              BIGINT                      NOT NULL DEFAULT nextval('ledger_entries_id_seq'),
+    entry_id        VARCHAR(50)                 NOT NULL,
+    transaction_id  BIGINT                      NOT NULL REFERENCES wallet_transactions (id),
+    wallet_id       VARCHAR(50)                 NOT NULL,
+    entry_type      VARCHAR(10)                 NOT NULL,
+    entry_side      VARCHAR(10)                 NOT NULL,
+    amount          NUMERIC(19, 4)              NOT NULL,
+    balance_before  NUMERIC(19, 4)              NOT NULL,
+    balance_after   NUMERIC(19, 4)              NOT NULL,
+    description     VARCHAR(500),
+    created_at      TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    PRIMARY KEY (id, created_at),
+    CONSTRAINT uk_ledger_entry UNIQUE (transaction_id, entry_side, wallet_id, created_at)
+) PARTITION BY RANGE (created_at);
+
+ALTER SEQUENCE ledger_entries_id_seq OWNED BY ledger_entries.id;
+
+CREATE INDEX idx_ledger_transaction_id ON ledger_entries (transaction_id);
+CREATE INDEX idx_ledger_wallet_entry ON ledger_entries (wallet_id, id);
+CREATE INDEX idx_ledger_wallet_created ON ledger_entries (wallet_id, created_at, id);
+
+-- Catches rows outside every monthly partition; the partition manager keeps it empty by
+-- creating partitions ahead of time.
+CREATE TABLE ledger_entries_default PARTITION OF ledger_entries DEFAULT;
+
+-- Monthly partitions covering the legacy history and the next three months
+DO $$
+DECLARE
+    month_start TIMESTAMPTZ := date_trunc('month', COALESCE((SELECT MIN(created_at) FROM ledger_entries_legacy), now()));
+    last_month  TIMESTAMPTZ := date_trunc('month', now()) + INTERVAL '3 months';
+BEGIN
+    WHILE month_start <= last_month LOOP
+        EXECUTE format('CREATE TABLE ledger_entries_p%s PARTITION OF ledger_entries FOR VALUES FROM (%L) TO (%L)',
+                to_char(month_start, 'YYYYMM'), month_start, month_start + INTERVAL '1 month');
+        month_start := month_start + INTERVAL '1 month';
+    END LOOP;
+END $$;
+
+-- On very large ledgers this copy can be split into created_at ranges and run in separate batches
+INSERT INTO ledger_entries (id, entry_id, transaction_id, wallet_id, entry_type, entry_side, amount,
+                            balance_before, balance_after, description, created_at)
+SELECT id, entry_id, transaction_id, wallet_id, entry_type, entry_side, amount,
+       balance_before, balance_after, description, created_at
+FROM ledger_entries_legacy;
+
+DROP TABLE ledger_entries_legacy;
+
+COMMIT;
@@ -0,0 +1,32 @@
+-- Migration: let an existing wallet_transactions table store every TransactionType value.
+--
+-- Hibernate adds a check constraint listing the enum values when it creates the table, and
+-- ddl-auto=update never changes it afterwards, so on a database created before a value was added
+-- inserts of that type fail. Run this before deploying a version that adds a TransactionType
+-- value, and add the value here in the same change. Safe to run more than once.
+--
+-- CONSOLIDATION: stripe balances rolled into the base contra accounts (wallet.ledger.contra-stripes)
+-- OPENING_BALANCE: the seed balance of a contra account (run before db/contra_opening_balance.sql)
+-- FEE, INTEREST: postings from the fee and interest jobs (PostingJobService)
+
+BEGIN;
+
+ALTER TABLE wallet_transactions DROP CONSTRAINT IF EXISTS wallet_transactions_transaction_type_check;
+ALTER TABLE wallet_transactions ADD CONSTRAINT wallet_transactions_transaction_type_check CHECK (
+    transaction_type IN (
+        'CREDIT',
+        'DEBIT',
+        'HOLD',
+        'CAPTURE',
+        'RELEASE',
+        'TRANSFER_OUT',
+        'TRANSFER_IN',
+        'REFUND',
+        'CONSOLIDATION',
+        'OPENING_BALANCE',
+        'FEE',
+        'INTEREST'
+    )
+);
+
+COMMIT;
@@ -0,0 +1,8 @@
+-- One-off migration: index wallets.updated_at for the nightly balance snapshot, which selects the
+-- wallets modified since the start of the day.
+--
+-- Run before deploying on an existing database. Hibernate would otherwise create the index at
+-- startup with a plain CREATE INDEX, blocking writes to wallets while it builds. CONCURRENTLY
+-- cannot run inside a transaction block.
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_wallet_updated_at ON wallets (updated_at);
@@ -1,12 +1,9 @@
 package com.velocityx.wallet_service;
 
+import com.velocityx.wallet_service.support.IntegrationTestSupport;
 import org.junit.jupiter.api.Test;
-import org.springframework.boot.test.context.SpringBootTest;
-import org.springframework.test.context.ActiveProfiles;
 
-@SpringBootTest
-@ActiveProfiles("test")
-class WalletServiceApplicationTests {
+class WalletServiceApplicationTests extends IntegrationTestSupport {
 
     @Test
     void contextLoads() {
@@ -0,0 +1,93 @@
+package com.velocityx.wallet_service.benchmark;
+
+import com.velocityx.wallet_service.util.MinorUnits;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The balance arithmetic of one debit-and-credit round (funds check, debit, hold, capture, credit)
+ * on the BigDecimal fields the wallet used to keep against the long minor units it keeps now.
+ * Run with {@code main}; not picked up by surefire.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoneyArithmeticBenchmark {
+
+    private BigDecimal balance;
+    private BigDecimal availableBalance;
+    private BigDecimal heldBalance;
+    private BigDecimal amount;
+
+    private long balanceMinor;
+    private long availableBalanceMinor;
+    private long heldBalanceMinor;
+    private long amountMinor;
+
+    @Setup
+    public void setUp() {
+        balance = new BigDecimal("1000000.0000");
+        availableBalance = balance;
+        heldBalance = BigDecimal.ZERO.setScale(MinorUnits.SCALE);
+        amount = new BigDecimal("12.3400");
+
+        balanceMinor = MinorUnits.of(balance);
+        availableBalanceMinor = balanceMinor;
+        heldBalanceMinor = 0L;
+        amountMinor = MinorUnits.of(amount);
+    }
+
+    @Benchmark
+    public void bigDecimal(Blackhole blackhole) {
+        if (availableBalance.compareTo(amount) >= 0) {
+            availableBalance = availableBalance.subtract(amount);
+            heldBalance = heldBalance.add(amount);
+            heldBalance = heldBalance.subtract(amount);
+            balance = balance.subtract(amount);
+        }
+        balance = balance.add(amount);
+        availableBalance = availableBalance.add(amount);
+        blackhole.consume(balance);
+        blackhole.consume(availableBalance);
+        blackhole.consume(heldBalance);
+    }
+
+    @Benchmark
+    public void minorUnits(Blackhole blackhole) {
+        if (availableBalanceMinor >= amountMinor) {
+            availableBalanceMinor = MinorUnits.subtract(availableBalanceMinor, amountMinor);
+            heldBalanceMinor = MinorUnits.add(heldBalanceMinor, amountMinor);
+            heldBalanceMinor = MinorUnits.subtract(heldBalanceMinor, amountMinor);
+            balanceMinor = MinorUnits.subtract(balanceMinor, amountMinor);
+        }
+        balanceMinor = MinorUnits.add(balanceMinor, amountMinor);
+        availableBalanceMinor = MinorUnits.add(availableBalanceMinor, amountMinor);
+        blackhole.consume(balanceMinor);
+        blackhole.consume(availableBalanceMinor);
+        blackhole.consume(heldBalanceMinor);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(MoneyArithmeticBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,116 @@
+package com.velocityx.wallet_service.kafka.consumer;
+
+import com.velocityx.wallet_service.dto.event.WalletEvent;
+import com.velocityx.wallet_service.entity.Wallet;
+import com.velocityx.wallet_service.enums.WalletEventType;
+import com.velocityx.wallet_service.kafka.producer.WalletRetryProducer;
+import com.velocityx.wallet_service.repository.WalletRepository;
+import com.velocityx.wallet_service.service.WalletEventProcessor;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class PartitionBalanceEngineTests {
+
+    private static final String WALLET_ID = "WLT-ENGINE1";
+    private static final TopicPartition PARTITION = new TopicPartition("wallet-events", 0);
+    private static final long TIMEOUT_MS = 5_000L;
+
+    @Mock
+    private WalletRepository walletRepository;
+
+    @Mock
+    private WalletEventProcessor eventProcessor;
+
+    @Mock
+    private GroupCommitBuffer groupCommitBuffer;
+
+    @Mock
+    private WalletRetryProducer retryProducer;
+
+    private PartitionBalanceEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        engine = new PartitionBalanceEngine(walletRepository, eventProcessor, groupCommitBuffer, retryProducer);
+        ReflectionTestUtils.setField(engine, "enabled", true);
+        ReflectionTestUtils.setField(engine, "drainTimeoutMs", 1_000L);
+        ReflectionTestUtils.setField(engine, "maxCachedWallets", 100);
+    }
+
+    @AfterEach
+    void tearDown() {
+        engine.onPartitionsLost(null, List.of(PARTITION));
+    }
+
+    // The wallet is empty until the buffered credit commits, so applying the debit earlier would fail it
+    @Test
+    @SuppressWarnings("unchecked")
+    void checkedDebitWaitsForTheCreditBufferedBeforeIt() {
+        when(groupCommitBuffer.isEnabled()).thenReturn(true);
+        when(walletRepository.findByWalletId(WALLET_ID)).thenReturn(Optional.of(Wallet.builder()
+                .walletId(WALLET_ID)
+                .userId(1L)
+                .availableBalanceMinor(0L)
+                .build()));
+        WalletEvent credit = event(WalletEventType.CREDIT_REQUESTED);
+        WalletEvent debit = event(WalletEventType.DEBIT_REQUESTED);
+        Acknowledgment creditAck = mock(Acknowledgment.class);
+        Acknowledgment debitAck = mock(Acknowledgment.class);
+
+        engine.submit(PARTITION, credit, Map.of(), creditAck);
+        engine.submit(PARTITION, debit, Map.of(), debitAck);
+
+        ArgumentCaptor<Consumer<Exception>> completion = ArgumentCaptor.forClass(Consumer.class);
+        verify(groupCommitBuffer, timeout(TIMEOUT_MS)).submit(eq(credit), any(), eq(creditAck), completion.capture());
+        verify(groupCommitBuffer, timeout(TIMEOUT_MS)).flushNow();
+        verify(eventProcessor, after(200).never()).processReserved(any());
+
+        // As the group commit does once the batch has committed
+        creditAck.acknowledge();
+        completion.getValue().accept(null);
+
+        verify(debitAck, timeout(TIMEOUT_MS)).acknowledge();
+        InOrder order = inOrder(creditAck, eventProcessor, debitAck);
+        order.verify(creditAck).acknowledge();
+        order.verify(eventProcessor).processReserved(debit);
+        order.verify(debitAck).acknowledge();
+    }
+
+    private static WalletEvent event(WalletEventType type) {
+        return WalletEvent.builder()
+                .eventId(UUID.randomUUID().toString())
+                .eventType(type)
+                .transactionId("TXN-" + type)
+                .walletId(WALLET_ID)
+                .userId(1L)
+                .amount(BigDecimal.TEN)
+                .build();
+    }
+}
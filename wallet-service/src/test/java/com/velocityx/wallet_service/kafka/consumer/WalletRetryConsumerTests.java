@@ -0,0 +1,124 @@
+package com.velocityx.wallet_service.kafka.consumer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.velocityx.wallet_service.dto.event.WalletEvent;
+import com.velocityx.wallet_service.entity.Wallet;
+import com.velocityx.wallet_service.entity.WalletTransaction;
+import com.velocityx.wallet_service.enums.TransactionStatus;
+import com.velocityx.wallet_service.enums.TransactionType;
+import com.velocityx.wallet_service.enums.WalletEventType;
+import com.velocityx.wallet_service.kafka.producer.WalletRetryProducer;
+import com.velocityx.wallet_service.repository.WalletRepository;
+import com.velocityx.wallet_service.repository.WalletTransactionRepository;
+import com.velocityx.wallet_service.support.IntegrationTestSupport;
+import com.velocityx.wallet_service.util.MinorUnits;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.QueryTimeoutException;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+// The test profile runs two tiers, 1s and 3s
+class WalletRetryConsumerTests extends IntegrationTestSupport {
+
+    private static final long TIMEOUT_MS = 30_000L;
+
+    @Autowired
+    private WalletRepository walletRepository;
+
+    @Autowired
+    private WalletTransactionRepository transactionRepository;
+
+    @Autowired
+    private WalletRetryProducer retryProducer;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void transientFailureIsReplayedAfterTheTierDelay() throws Exception {
+        Wallet wallet = walletRepository.save(Wallet.builder().walletId("WLT-RETRY1").userId(9_000L).build());
+        WalletEvent event = credit(wallet, BigDecimal.valueOf(20));
+
+        long sentAt = System.currentTimeMillis();
+        retryProducer.handleFailure(payload(event, 0), new QueryTimeoutException("canceling statement"));
+
+        long waited = awaitCompleted(event.getTransactionId()) - sentAt;
+        assertTrue(waited >= 1_000L, "replayed after " + waited + "ms, before the tier delay");
+        assertEquals(MinorUnits.of(BigDecimal.valueOf(20)),
+                walletRepository.findByWalletId(wallet.getWalletId()).orElseThrow().getBalanceMinor());
+    }
+
+    // Each tier has its own container, so a record paused on the slow tier does not hold up the fast one
+    @Test
+    void slowTierDoesNotBlockFastTier() throws Exception {
+        Wallet wallet = walletRepository.save(Wallet.builder().walletId("WLT-RETRY2").userId(9_001L).build());
+        WalletEvent slow = credit(wallet, BigDecimal.valueOf(5));
+        WalletEvent fast = credit(wallet, BigDecimal.valueOf(7));
+
+        long sentAt = System.currentTimeMillis();
+        retryProducer.handleFailure(payload(slow, 1), new QueryTimeoutException("canceling statement"));
+        retryProducer.handleFailure(payload(fast, 0), new QueryTimeoutException("canceling statement"));
+
+        long fastDone = awaitCompleted(fast.getTransactionId());
+        long slowDone = awaitCompleted(slow.getTransactionId());
+        assertTrue(fastDone < slowDone, "the 1s tier finished after the 3s tier");
+        assertTrue(slowDone - sentAt >= 3_000L, "the 3s tier replayed early");
+        assertEquals(MinorUnits.of(BigDecimal.valueOf(12)),
+                walletRepository.findByWalletId(wallet.getWalletId()).orElseThrow().getBalanceMinor());
+    }
+
+    private long awaitCompleted(String transactionId) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (System.currentTimeMillis() < deadline) {
+            WalletTransaction transaction = transactionRepository.findByTransactionId(transactionId).orElseThrow();
+            if (transaction.getStatus() == TransactionStatus.COMPLETED) {
+                return System.currentTimeMillis();
+            }
+            Thread.sleep(50);
+        }
+        return fail("retry of " + transactionId + " did not complete");
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> payload(WalletEvent event, int attempt) {
+        Map<String, Object> payload = new HashMap<>(objectMapper.convertValue(event, Map.class));
+        if (attempt > 0) {
+            payload.put(WalletRetryProducer.RETRY_ATTEMPT, attempt);
+        }
+        return payload;
+    }
+
+    private WalletEvent credit(Wallet wallet, BigDecimal amount) {
+        WalletTransaction transaction = transactionRepository.save(WalletTransaction.builder()
+                .transactionId("TXN-" + UUID.randomUUID().toString().toUpperCase().replace("-", "").substring(0, 16))
+                .idempotencyKey(UUID.randomUUID().toString())
+                .walletId(wallet.getWalletId())
+                .userId(wallet.getUserId())
+                .transactionType(TransactionType.CREDIT)
+                .status(TransactionStatus.INIT)
+                .amount(amount)
+                .build());
+
+        return WalletEvent.builder()
+                .eventId(UUID.randomUUID().toString())
+                .eventType(WalletEventType.CREDIT_REQUESTED)
+                .transactionId(transaction.getTransactionId())
+                .idempotencyKey(transaction.getIdempotencyKey())
+                .userId(wallet.getUserId())
+                .walletId(wallet.getWalletId())
+                .transactionType(TransactionType.CREDIT)
+                .amount(amount)
+                .currency(transaction.getCurrency())
+                .timestamp(Instant.now())
+                .build();
+    }
+}
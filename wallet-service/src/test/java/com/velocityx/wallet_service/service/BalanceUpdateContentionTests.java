@@ -0,0 +1,163 @@
+package com.velocityx.wallet_service.service;
+
+import com.velocityx.wallet_service.dto.event.WalletEvent;
+import com.velocityx.wallet_service.entity.Wallet;
+import com.velocityx.wallet_service.entity.WalletTransaction;
+import com.velocityx.wallet_service.enums.TransactionStatus;
+import com.velocityx.wallet_service.enums.TransactionType;
+import com.velocityx.wallet_service.enums.WalletEventType;
+import com.velocityx.wallet_service.repository.WalletRepository;
+import com.velocityx.wallet_service.repository.WalletTransactionRepository;
+import com.velocityx.wallet_service.support.IntegrationTestSupport;
+import com.velocityx.wallet_service.util.MinorUnits;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Contention benchmark for the two debit and hold execution modes: many threads debit one hot
+ * wallet, first with the row lock taken up front, then with the single guarded UPDATE. Both runs
+ * must leave the same balance; the timings are printed for comparison.
+ */
+class BalanceUpdateContentionTests extends IntegrationTestSupport {
+
+    private static final int THREADS = 16;
+    private static final int DEBITS = 1600;
+    private static final BigDecimal AMOUNT = BigDecimal.valueOf(5);
+    private static final long OPENING_BALANCE = MinorUnits.of(BigDecimal.valueOf(1_000_000));
+
+    @Autowired
+    private WalletRepository walletRepository;
+
+    @Autowired
+    private WalletTransactionRepository transactionRepository;
+
+    @Autowired
+    private WalletEventProcessor eventProcessor;
+
+    @Test
+    void hotWalletDebitsLockingVersusGuarded() throws Exception {
+        Result locking = run(false, 8_000L);
+        Result guarded = run(true, 8_001L);
+
+        System.out.printf("Hot wallet, %d threads, %d debits%n", THREADS, DEBITS);
+        System.out.println("  locking: " + locking);
+        System.out.println("  guarded: " + guarded);
+    }
+
+    private Result run(boolean guardedUpdates, long userId) throws Exception {
+        Wallet wallet = walletRepository.save(Wallet.builder()
+                .walletId("WLT-HOT" + userId)
+                .userId(userId)
+                .balanceMinor(OPENING_BALANCE)
+                .availableBalanceMinor(OPENING_BALANCE)
+                .build());
+
+        ConcurrentLinkedQueue<WalletEvent> queue = new ConcurrentLinkedQueue<>();
+        for (int i = 0; i < DEBITS; i++) {
+            queue.add(debit(wallet));
+        }
+
+        boolean previous = (boolean) ReflectionTestUtils.getField(eventProcessor, "guardedUpdates");
+        ReflectionTestUtils.setField(eventProcessor, "guardedUpdates", guardedUpdates);
+        long[] latencies = new long[DEBITS];
+        AtomicInteger completed = new AtomicInteger();
+        ConcurrentLinkedQueue<Exception> failures = new ConcurrentLinkedQueue<>();
+        long elapsed;
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+            for (int i = 0; i < THREADS; i++) {
+                pool.execute(() -> {
+                    try {
+                        start.await();
+                        WalletEvent event;
+                        while ((event = queue.poll()) != null) {
+                            long began = System.nanoTime();
+                            try {
+                                eventProcessor.process(event);
+                            } catch (Exception e) {
+                                failures.add(e);
+                            }
+                            latencies[completed.getAndIncrement()] = System.nanoTime() - began;
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+            }
+            long began = System.nanoTime();
+            start.countDown();
+            pool.shutdown();
+            assertTrue(pool.awaitTermination(5, TimeUnit.MINUTES), "debits did not finish");
+            elapsed = System.nanoTime() - began;
+        } finally {
+            ReflectionTestUtils.setField(eventProcessor, "guardedUpdates", previous);
+        }
+
+        assertTrue(failures.isEmpty(), () -> "debits failed: " + failures.peek());
+        Wallet after = walletRepository.findByWalletId(wallet.getWalletId()).orElseThrow();
+        assertEquals(OPENING_BALANCE - DEBITS * MinorUnits.of(AMOUNT), after.getBalanceMinor());
+        assertEquals(after.getBalanceMinor(), after.getAvailableBalanceMinor());
+        assertEquals(DEBITS, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM wallet_transactions WHERE wallet_id = ? AND status = ?",
+                Integer.class, wallet.getWalletId(), TransactionStatus.COMPLETED.name()));
+
+        Arrays.sort(latencies);
+        return new Result(elapsed, latencies);
+    }
+
+    private WalletEvent debit(Wallet wallet) {
+        WalletTransaction transaction = transactionRepository.save(WalletTransaction.builder()
+                .transactionId("TXN-" + UUID.randomUUID().toString().toUpperCase().replace("-", "").substring(0, 16))
+                .idempotencyKey(UUID.randomUUID().toString())
+                .walletId(wallet.getWalletId())
+                .userId(wallet.getUserId())
+                .transactionType(TransactionType.DEBIT)
+                .status(TransactionStatus.INIT)
+                .amount(AMOUNT)
+                .build());
+
+        return WalletEvent.builder()
+                .eventId(UUID.randomUUID().toString())
+                .eventType(WalletEventType.DEBIT_REQUESTED)
+                .transactionId(transaction.getTransactionId())
+                .idempotencyKey(transaction.getIdempotencyKey())
+                .userId(wallet.getUserId())
+                .walletId(wallet.getWalletId())
+                .transactionType(TransactionType.DEBIT)
+                .amount(AMOUNT)
+                .currency(transaction.getCurrency())
+                .timestamp(Instant.now())
+                .build();
+    }
+
+    private record Result(long elapsedNanos, long[] sortedLatencies) {
+
+        private long percentileMicros(double percentile) {
+            int index = (int) Math.ceil(percentile * sortedLatencies.length) - 1;
+            return sortedLatencies[Math.max(0, index)] / 1_000;
+        }
+
+        @Override
+        public String toString() {
+            double seconds = elapsedNanos / 1e9;
+            return String.format("%.0f debits/s, p50=%dus, p99=%dus, max=%dus", DEBITS / seconds,
+                    percentileMicros(0.50), percentileMicros(0.99), percentileMicros(1.0));
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.velocityx.wallet_service.service;
+
+import com.velocityx.wallet_service.dto.event.WalletEvent;
+import com.velocityx.wallet_service.entity.Wallet;
+import com.velocityx.wallet_service.entity.WalletTransaction;
+import com.velocityx.wallet_service.enums.TransactionStatus;
+import com.velocityx.wallet_service.enums.TransactionType;
+import com.velocityx.wallet_service.enums.WalletEventType;
+import com.velocityx.wallet_service.repository.WalletRepository;
+import com.velocityx.wallet_service.repository.WalletTransactionRepository;
+import com.velocityx.wallet_service.support.IntegrationTestSupport;
+import com.velocityx.wallet_service.util.MinorUnits;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ContraStripeConsolidationTests extends IntegrationTestSupport {
+
+    private static final long SYSTEM_SEED = MinorUnits.of(BigDecimal.valueOf(1_000_000_000L));
+
+    @Autowired
+    private WalletRepository walletRepository;
+
+    @Autowired
+    private WalletTransactionRepository transactionRepository;
+
+    @Autowired
+    private WalletEventProcessor eventProcessor;
+
+    @Autowired
+    private ContraAccountService contraAccountService;
+
+    @Autowired
+    private LedgerReconciliationService reconciliationService;
+
+    @Test
+    void consolidationDrainsEveryStripeIntoTheBaseAccount() {
+        assertTrue(contraAccountService.isStriped());
+
+        long credited = 0;
+        for (int i = 0; i < 40; i++) {
+            Wallet wallet = walletRepository.save(Wallet.builder()
+                    .walletId("WLT-STRIPE" + i)
+                    .userId(5_000L + i)
+                    .build());
+            BigDecimal amount = BigDecimal.valueOf(10 + i);
+            eventProcessor.process(credit(wallet, amount));
+            credited += MinorUnits.of(amount);
+        }
+        assertTrue(systemStripes().anyMatch(stripe -> stripe.getBalanceMinor() != 0));
+
+        contraAccountService.consolidateStripes();
+
+        assertTrue(systemStripes().allMatch(stripe -> stripe.getBalanceMinor() == 0),
+                "every stripe drains into the base account");
+        Wallet systemAccount = walletRepository.findByWalletId("SYSTEM_ACCOUNT").orElseThrow();
+        assertEquals(SYSTEM_SEED - credited, systemAccount.getBalanceMinor());
+    }
+
+    // The seed is posted as an opening entry, so the system account reconciles like any other wallet
+    @Test
+    void seededSystemAccountReconcilesWithoutDrift() {
+        Wallet wallet = walletRepository.save(Wallet.builder().walletId("WLT-RECON").userId(6_000L).build());
+        eventProcessor.process(credit(wallet, BigDecimal.valueOf(25)));
+        contraAccountService.consolidateStripes();
+
+        assertEquals(0, reconciliationService.reconcile().driftCount());
+    }
+
+    private Stream<Wallet> systemStripes() {
+        return walletRepository.findAll().stream()
+                .filter(wallet -> wallet.getWalletId().startsWith("SYSTEM_ACCOUNT-"));
+    }
+
+    private WalletEvent credit(Wallet wallet, BigDecimal amount) {
+        WalletTransaction transaction = transactionRepository.save(WalletTransaction.builder()
+                .transactionId("TXN-" + UUID.randomUUID().toString().toUpperCase().replace("-", "").substring(0, 16))
+                .idempotencyKey(UUID.randomUUID().toString())
+                .walletId(wallet.getWalletId())
+                .userId(wallet.getUserId())
+                .transactionType(TransactionType.CREDIT)
+                .status(TransactionStatus.INIT)
+                .amount(amount)
+                .build());
+
+        return WalletEvent.builder()
+                .eventId(UUID.randomUUID().toString())
+                .eventType(WalletEventType.CREDIT_REQUESTED)
+                .transactionId(transaction.getTransactionId())
+                .idempotencyKey(transaction.getIdempotencyKey())
+                .userId(wallet.getUserId())
+                .walletId(wallet.getWalletId())
+                .transactionType(TransactionType.CREDIT)
+                .amount(amount)
+                .currency(transaction.getCurrency())
+                .timestamp(Instant.now())
+                .build();
+    }
+}
@@ -0,0 +1,152 @@
+package com.velocityx.wallet_service.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.velocityx.wallet_service.dto.event.WalletEvent;
+import com.velocityx.wallet_service.entity.Wallet;
+import com.velocityx.wallet_service.entity.WalletTransaction;
+import com.velocityx.wallet_service.enums.TransactionStatus;
+import com.velocityx.wallet_service.enums.TransactionType;
+import com.velocityx.wallet_service.enums.WalletEventType;
+import com.velocityx.wallet_service.kafka.producer.WalletDlqProducer;
+import com.velocityx.wallet_service.repository.WalletRepository;
+import com.velocityx.wallet_service.repository.WalletTransactionRepository;
+import com.velocityx.wallet_service.service.DlqReplayService.ReplayFilter;
+import com.velocityx.wallet_service.service.DlqReplayService.ReplayProgress;
+import com.velocityx.wallet_service.support.IntegrationTestSupport;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.fail;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@AutoConfigureMockMvc
+class DlqReplayServiceTests extends IntegrationTestSupport {
+
+    private static final long TIMEOUT_MS = 30_000L;
+
+    @Autowired
+    private DlqReplayService replayService;
+
+    @Autowired
+    private WalletDlqProducer dlqProducer;
+
+    @Autowired
+    private KafkaTemplate<String, Object> kafkaTemplate;
+
+    @Autowired
+    private WalletRepository walletRepository;
+
+    @Autowired
+    private WalletTransactionRepository transactionRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void settledTransactionsAreSkippedAndTheRestReplayed() throws Exception {
+        Wallet wallet = walletRepository.save(Wallet.builder().walletId("WLT-DLQ1").userId(9_100L).build());
+        WalletEvent pending = credit(wallet, BigDecimal.valueOf(10), TransactionStatus.INIT);
+        WalletEvent settled = credit(wallet, BigDecimal.valueOf(20), TransactionStatus.COMPLETED);
+
+        Instant from = Instant.now();
+        dlqProducer.send(payload(pending), new IllegalStateException("consumer crashed"));
+        dlqProducer.send(payload(settled), new IllegalStateException("consumer crashed"));
+        kafkaTemplate.flush();
+
+        replayService.start(new ReplayFilter(null, IllegalStateException.class.getSimpleName(), from, null), null);
+        ReplayProgress progress = awaitFinished();
+
+        assertEquals("COMPLETED", progress.status());
+        assertEquals(2, progress.matched());
+        assertEquals(1, progress.skipped());
+        assertEquals(1, progress.replayed());
+        awaitStatus(pending.getTransactionId(), TransactionStatus.COMPLETED);
+    }
+
+    @Test
+    void anonymousCallerCannotStartOrCancelAReplay() throws Exception {
+        mockMvc.perform(post("/actuator/dlqreplay")).andExpect(status().isForbidden());
+        mockMvc.perform(delete("/actuator/dlqreplay")).andExpect(status().isForbidden());
+        mockMvc.perform(post("/actuator/reconciliation")).andExpect(status().isForbidden());
+    }
+
+    @Test
+    @WithMockUser(roles = "USER")
+    void userRoleCannotStartOrCancelAReplay() throws Exception {
+        mockMvc.perform(post("/actuator/dlqreplay")).andExpect(status().isForbidden());
+        mockMvc.perform(delete("/actuator/dlqreplay")).andExpect(status().isForbidden());
+        mockMvc.perform(post("/actuator/reconciliation")).andExpect(status().isForbidden());
+    }
+
+    private ReplayProgress awaitFinished() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (System.currentTimeMillis() < deadline) {
+            ReplayProgress progress = replayService.getProgress();
+            assertNotNull(progress);
+            if (progress.finishedAt() != null && progress.replayed() + progress.failed() + progress.skipped()
+                    >= progress.matched() - progress.duplicates()) {
+                return progress;
+            }
+            Thread.sleep(50);
+        }
+        return fail("DLQ replay did not finish");
+    }
+
+    private void awaitStatus(String transactionId, TransactionStatus status) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (System.currentTimeMillis() < deadline) {
+            if (transactionRepository.findByTransactionId(transactionId).orElseThrow().getStatus() == status) {
+                return;
+            }
+            Thread.sleep(50);
+        }
+        fail("transaction " + transactionId + " did not reach " + status);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> payload(WalletEvent event) {
+        return new HashMap<>(objectMapper.convertValue(event, Map.class));
+    }
+
+    private WalletEvent credit(Wallet wallet, BigDecimal amount, TransactionStatus status) {
+        WalletTransaction transaction = transactionRepository.save(WalletTransaction.builder()
+                .transactionId("TXN-" + UUID.randomUUID().toString().toUpperCase().replace("-", "").substring(0, 16))
+                .idempotencyKey(UUID.randomUUID().toString())
+                .walletId(wallet.getWalletId())
+                .userId(wallet.getUserId())
+                .transactionType(TransactionType.CREDIT)
+                .status(status)
+                .amount(amount)
+                .build());
+
+        return WalletEvent.builder()
+                .eventId(UUID.randomUUID().toString())
+                .eventType(WalletEventType.CREDIT_REQUESTED)
+                .transactionId(transaction.getTransactionId())
+                .idempotencyKey(transaction.getIdempotencyKey())
+                .userId(wallet.getUserId())
+                .walletId(wallet.getWalletId())
+                .transactionType(TransactionType.CREDIT)
+                .amount(amount)
+                .currency(transaction.getCurrency())
+                .timestamp(Instant.now())
+                .build();
+    }
+}
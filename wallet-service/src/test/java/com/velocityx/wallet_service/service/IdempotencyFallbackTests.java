@@ -0,0 +1,61 @@
+package com.velocityx.wallet_service.service;
+
+import com.velocityx.wallet_service.dto.request.CreditRequest;
+import com.velocityx.wallet_service.dto.response.TransactionResponse;
+import com.velocityx.wallet_service.support.IntegrationTestSupport;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+// The mocked filter reports every key as new, the false negative a stale or partly warmed filter gives
+class IdempotencyFallbackTests extends IntegrationTestSupport {
+
+    @MockBean
+    private IdempotencyFilter idempotencyFilter;
+
+    @Autowired
+    private WalletService walletService;
+
+    @Test
+    void retryMissedByTheFilterReturnsTheOriginalTransaction() {
+        CreditRequest request = credit(7_000L, UUID.randomUUID().toString());
+
+        TransactionResponse first = walletService.credit(request);
+        TransactionResponse retry = walletService.credit(request);
+
+        assertEquals(first.getTransactionId(), retry.getTransactionId());
+        assertEquals(1, countTransactions(request.getIdempotencyKey()));
+    }
+
+    @Test
+    void duplicateDoesNotAbortLaterRequests() {
+        CreditRequest request = credit(7_001L, UUID.randomUUID().toString());
+        walletService.credit(request);
+        walletService.credit(request);
+
+        TransactionResponse next = walletService.credit(credit(7_001L, UUID.randomUUID().toString()));
+
+        assertNotNull(next.getTransactionId());
+        assertEquals(2, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM wallet_transactions WHERE user_id = ?", Integer.class, 7_001L));
+    }
+
+    private int countTransactions(String idempotencyKey) {
+        return jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM wallet_transactions WHERE idempotency_key = ?", Integer.class, idempotencyKey);
+    }
+
+    private static CreditRequest credit(long userId, String idempotencyKey) {
+        return CreditRequest.builder()
+                .userId(userId)
+                .amount(BigDecimal.valueOf(15))
+                .idempotencyKey(idempotencyKey)
+                .build();
+    }
+}
@@ -0,0 +1,143 @@
+package com.velocityx.wallet_service.service;
+
+import com.velocityx.wallet_service.dto.event.WalletEvent;
+import com.velocityx.wallet_service.entity.Wallet;
+import com.velocityx.wallet_service.entity.WalletTransaction;
+import com.velocityx.wallet_service.enums.TransactionStatus;
+import com.velocityx.wallet_service.enums.TransactionType;
+import com.velocityx.wallet_service.enums.WalletEventType;
+import com.velocityx.wallet_service.repository.WalletRepository;
+import com.velocityx.wallet_service.repository.WalletTransactionRepository;
+import com.velocityx.wallet_service.support.IntegrationTestSupport;
+import com.velocityx.wallet_service.util.MinorUnits;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WalletTransferConcurrencyTests extends IntegrationTestSupport {
+
+    private static final int WALLETS = 6;
+    private static final int THREADS = 16;
+    private static final int TRANSFERS = 2000;
+    private static final long OPENING_BALANCE = MinorUnits.of(BigDecimal.valueOf(1_000_000));
+
+    @Autowired
+    private WalletRepository walletRepository;
+
+    @Autowired
+    private WalletTransactionRepository transactionRepository;
+
+    @Autowired
+    private WalletEventProcessor eventProcessor;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // Few wallets and many threads, so most transfers collide with one going the other way
+    @Test
+    void randomBidirectionalTransfersNeverDeadlock() throws Exception {
+        List<Wallet> wallets = new ArrayList<>();
+        for (int i = 0; i < WALLETS; i++) {
+            wallets.add(walletRepository.save(Wallet.builder()
+                    .walletId("WLT-TEST" + UUID.randomUUID().toString().substring(0, 8).toUpperCase())
+                    .userId(1_000L + i)
+                    .balanceMinor(OPENING_BALANCE)
+                    .availableBalanceMinor(OPENING_BALANCE)
+                    .build()));
+        }
+
+        List<WalletEvent> events = new ArrayList<>();
+        for (int i = 0; i < TRANSFERS; i++) {
+            int from = ThreadLocalRandom.current().nextInt(WALLETS);
+            int to = (from + 1 + ThreadLocalRandom.current().nextInt(WALLETS - 1)) % WALLETS;
+            events.add(transfer(wallets.get(from), wallets.get(to)));
+        }
+        Collections.shuffle(events);
+
+        double conflictsBefore = conflictRetries();
+        ConcurrentLinkedQueue<WalletEvent> queue = new ConcurrentLinkedQueue<>(events);
+        ConcurrentLinkedQueue<Exception> failures = new ConcurrentLinkedQueue<>();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        for (int i = 0; i < THREADS; i++) {
+            pool.execute(() -> {
+                try {
+                    start.await();
+                    WalletEvent event;
+                    while ((event = queue.poll()) != null) {
+                        try {
+                            eventProcessor.process(event);
+                        } catch (Exception e) {
+                            failures.add(e);
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        start.countDown();
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(5, TimeUnit.MINUTES), "transfers did not finish");
+
+        assertTrue(failures.isEmpty(), () -> "transfers failed: " + failures.peek());
+        assertEquals(conflictsBefore, conflictRetries(), "transfers hit deadlocks or serialization failures");
+
+        long total = 0;
+        for (Wallet wallet : wallets) {
+            total += walletRepository.findByWalletId(wallet.getWalletId()).orElseThrow().getBalanceMinor();
+        }
+        assertEquals(OPENING_BALANCE * WALLETS, total);
+    }
+
+    private WalletEvent transfer(Wallet sender, Wallet receiver) {
+        BigDecimal amount = BigDecimal.valueOf(ThreadLocalRandom.current().nextInt(1, 100));
+        WalletTransaction transaction = transactionRepository.save(WalletTransaction.builder()
+                .transactionId("TXN-" + UUID.randomUUID().toString().toUpperCase().replace("-", "").substring(0, 16))
+                .idempotencyKey(UUID.randomUUID().toString())
+                .walletId(sender.getWalletId())
+                .userId(sender.getUserId())
+                .transactionType(TransactionType.TRANSFER_OUT)
+                .status(TransactionStatus.INIT)
+                .amount(amount)
+                .counterpartyWalletId(receiver.getWalletId())
+                .build());
+
+        return WalletEvent.builder()
+                .eventId(UUID.randomUUID().toString())
+                .eventType(WalletEventType.TRANSFER_REQUESTED)
+                .transactionId(transaction.getTransactionId())
+                .idempotencyKey(transaction.getIdempotencyKey())
+                .userId(sender.getUserId())
+                .walletId(sender.getWalletId())
+                .transactionType(TransactionType.TRANSFER_OUT)
+                .amount(amount)
+                .currency(transaction.getCurrency())
+                .counterpartyWalletId(receiver.getWalletId())
+                .counterpartyUserId(receiver.getUserId())
+                .timestamp(Instant.now())
+                .build();
+    }
+
+    private double conflictRetries() {
+        Counter counter = meterRegistry.find("wallet.event.conflict.retried").counter();
+        return counter == null ? 0 : counter.count();
+    }
+}
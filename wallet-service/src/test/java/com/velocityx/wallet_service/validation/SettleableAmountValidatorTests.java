@@ -0,0 +1,49 @@
+package com.velocityx.wallet_service.validation;
+
+import com.velocityx.wallet_service.dto.request.DebitRequest;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SettleableAmountValidatorTests {
+
+    private final Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+
+    @Test
+    void acceptsWholeMinorUnitsOfTheCurrency() {
+        assertTrue(validate("10.25", "INR").isEmpty());
+        assertTrue(validate("10.2500", "INR").isEmpty());
+        assertTrue(validate("1500", "JPY").isEmpty());
+    }
+
+    @Test
+    void rejectsFractionsSmallerThanTheCurrencyUnit() {
+        Set<ConstraintViolation<DebitRequest>> violations = validate("10.255", "INR");
+        assertEquals(1, violations.size());
+        assertEquals("amount", violations.iterator().next().getPropertyPath().toString());
+
+        assertEquals(1, validate("1500.5", "JPY").size());
+        assertEquals(1, validate("0.00001", "INR").size());
+    }
+
+    @Test
+    void rejectsUnknownCurrencies() {
+        assertEquals(1, validate("10", "XYZ").size());
+    }
+
+    private Set<ConstraintViolation<DebitRequest>> validate(String amount, String currency) {
+        return validator.validate(DebitRequest.builder()
+                .userId(1L)
+                .amount(new BigDecimal(amount))
+                .currency(currency)
+                .idempotencyKey("key-1")
+                .build());
+    }
+}